@@ -54,16 +54,19 @@ public class Application extends AbstractDescribableImpl<Application> {
     private String      applicationReleaseNotes;
     private String      applicationDescription;
 
+    private boolean     publishAll;
+
     /**
      * These constructor will be executed every time when the save/submit button will be triggered in the Jenkins. 
      * @param apiEndpointURL URL to which the app should communicate.
      * @param applicationFile String representation of the File which should be uploaded.
      * @param applicationIcon String Representation of the Icon which should be used for the uploaded app.
      * @param apiReleaseStatus String Representation of the ReleaseState to the app will be published.
+     * @param publishAll Publish every file that matches the application file mask, not only the first.
      */
     @DataBoundConstructor
     public Application(final String apiEndpoint, final String applicationFile, final String applicationIcon, final String apiReleaseStatus,
-            final String applicationName, final String applicationReleaseNotes, final String applicationDescription) {
+            final String applicationName, final String applicationReleaseNotes, final String applicationDescription, final boolean publishAll) {
 
         this.setApiEndpoint(apiEndpoint);
         this.setApplicationFile(applicationFile);
@@ -72,6 +75,7 @@ public class Application extends AbstractDescribableImpl<Application> {
         this.setApplicationName(applicationName);
         this.setApplicationReleaseNotes(applicationReleaseNotes);
         this.setApplicationDescription(applicationDescription);
+        this.setPublishAll(publishAll);
 
         System.out.println("Initialized application " + this.toString());
     }
@@ -181,6 +185,21 @@ public class Application extends AbstractDescribableImpl<Application> {
         this.applicationDescription = applicationDescription;
     }
 
+    /**
+     * @return <code>true</code> if every file that matches the application file mask is
+     * published, <code>false</code> if only the first one is published.
+     */
+    public boolean isPublishAll() {
+        return this.publishAll;
+    }
+
+    /**
+     * @param publishAll Publish every file that matches the application file mask.
+     */
+    public void setPublishAll(final boolean publishAll) {
+        this.publishAll = publishAll;
+    }
+
     @Override
     public String toString() {
 
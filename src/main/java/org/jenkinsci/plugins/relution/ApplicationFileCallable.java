@@ -26,7 +26,6 @@
 package org.jenkinsci.plugins.relution;
 
 import hudson.FilePath.FileCallable;
-import hudson.Util;
 import hudson.model.BuildListener;
 import hudson.model.Result;
 import hudson.model.AbstractBuild;
@@ -35,32 +34,88 @@ import hudson.remoting.VirtualChannel;
 import org.apache.commons.lang.StringUtils;
 import org.apache.http.ParseException;
 import org.apache.http.client.ClientProtocolException;
-import org.apache.tools.ant.types.FileSet;
+import org.jenkinsci.plugins.relution.cache.AppIndex;
+import org.jenkinsci.plugins.relution.cache.PublishLedger;
+import org.jenkinsci.plugins.relution.entities.ApiEndpoint;
 import org.jenkinsci.plugins.relution.entities.ApplicationInformation;
+import org.jenkinsci.plugins.relution.entities.ReleaseStatus;
+import org.jenkinsci.plugins.relution.entities.RetentionPolicy;
 import org.jenkinsci.plugins.relution.entities.ShortApplicationInformation;
 import org.jenkinsci.plugins.relution.json.ApiApp;
 import org.jenkinsci.plugins.relution.json.ApiFile;
 import org.jenkinsci.plugins.relution.json.ApiResponse;
 import org.jenkinsci.plugins.relution.json.ApiVersion;
 import org.jenkinsci.plugins.relution.json.UploadResponse;
+import org.jenkinsci.plugins.relution.metadata.ApplicationMetadata;
+import org.jenkinsci.plugins.relution.net.CatalogIterator;
+import org.jenkinsci.plugins.relution.net.CatalogQuery;
+import org.jenkinsci.plugins.relution.net.ChunkedUpload;
 import org.jenkinsci.plugins.relution.net.Request;
 import org.jenkinsci.plugins.relution.net.RequestFactory;
+import org.jenkinsci.plugins.relution.net.ResponseCache;
+import org.jenkinsci.plugins.relution.net.ResponseFuture;
+import org.jenkinsci.plugins.relution.net.ResponseParser;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.Reader;
 import java.net.URISyntaxException;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 
 @SuppressWarnings("serial")
 public class ApplicationFileCallable implements FileCallable<Boolean> {
 
+    private final static ResponseParser<ApiResponse>    API_RESPONSE_PARSER    = new ResponseParser<ApiResponse>() {
+
+        @Override
+        public ApiResponse parse(final Reader reader) {
+            return ApiResponse.fromJson(reader);
+        }
+    };
+
+    private final static ResponseParser<UploadResponse> UPLOAD_RESPONSE_PARSER = new ResponseParser<UploadResponse>() {
+
+        @Override
+        public UploadResponse parse(final Reader reader) {
+            return UploadResponse.fromJson(reader);
+        }
+    };
+
+    /**
+     * The maximum number of files that are published at the same time if all matching files are
+     * published.
+     */
+    private final static int                            MAX_PARALLEL_FILES     = 4;
+
     @SuppressWarnings("rawtypes")
     private final AbstractBuild              build;
     private final BuildListener              listener;
     private final Application                application;
     private final List<RelutionCommunicator> communicators;
+    private final WorkspaceScan              scan;
+
+    private final PublishLedger              ledger;
+    private final boolean                    skipDuplicates;
+    private final RetentionPolicy            retention;
+
+    private final Set<String>                publishedApps = Collections.synchronizedSet(new LinkedHashSet<String>());
+
+    private transient ResponseFuture<UploadResponse> iconUpload;
 
     /**
      * Constructor.
@@ -68,15 +123,26 @@ public class ApplicationFileCallable implements FileCallable<Boolean> {
      * @param listener Receives events that happen during a build.
      * @param communicators List of all global specified communicators.
      * @param application Job that will be build.
+     * @param scan The files of the workspace that match the patterns of the application.
+     * @param ledger Ledger of already uploaded content, <code>null</code> to always upload.
+     * @param skipDuplicates Skip the publication if the content has already been published.
+     * @param retention The policy applied to the published applications, <code>null</code> to
+     * keep all versions.
      */
     @SuppressWarnings("rawtypes")
     public ApplicationFileCallable(final AbstractBuild build, final BuildListener listener, final List<RelutionCommunicator> communicators,
-            final Application application) {
+            final Application application, final WorkspaceScan scan, final PublishLedger ledger, final boolean skipDuplicates,
+            final RetentionPolicy retention) {
 
         this.build = build;
         this.listener = listener;
         this.application = application;
         this.communicators = communicators;
+        this.scan = scan;
+
+        this.ledger = ledger;
+        this.skipDuplicates = skipDuplicates;
+        this.retention = retention;
     }
 
     /**
@@ -103,17 +169,15 @@ public class ApplicationFileCallable implements FileCallable<Boolean> {
     public Boolean invoke(final File f, final VirtualChannel channel) throws IOException, InterruptedException {
 
         try {
-            final FileSet fileSet = Util.createFileSet(f, this.application.getApplicationFile());
+            final List<String> applicationFiles = this.scan.getIncludedFiles(this.application.getApplicationFile());
 
             // If the file does not exist, consider the build as "not built" 
-            if (fileSet.getDirectoryScanner().getIncludedFilesCount() < 1) {
+            if (applicationFiles.isEmpty()) {
                 this.log("The configured application file does not exist, no files to deploy");
                 this.build.setResult(Result.NOT_BUILT);
                 return false;
             }
 
-            final File applicationFile = this.getApplicationFile(fileSet);
-
             this.log("Retrieving communicator for endpoint '%s'...", this.application.getEndpoint().toString());
             final RelutionCommunicator communicator = this.getCommunicator(this.application);
 
@@ -127,106 +191,518 @@ public class ApplicationFileCallable implements FileCallable<Boolean> {
 
             this.log("Communicator retrieved, will upload to %s", requestFactory.getRelutionApiUrl());
 
-            this.log("Preparing to deploy '%s', retrieving application UUID...", applicationFile.getName());
-            final ShortApplicationInformation info = new ShortApplicationInformation(UUID.randomUUID().toString());
+            final boolean success;
 
-            if (info == null || info.getUUID() == null) {
-                this.log("Failed to obtain application UUID");
-                this.build.setResult(Result.FAILURE);
-                return false;
+            if (!this.application.isPublishAll() || applicationFiles.size() == 1) {
+                success = this.publish(requestFactory, f, new File(f, applicationFiles.get(0)));
+            } else {
+                success = this.publishAll(requestFactory, f, applicationFiles);
             }
-            this.log("Obtained application UUID {%s}", info.getUUID());
 
-            this.log("Upload application asset and retrieve token...");
-            final ApiFile file = this.uploadApplicationAsset(requestFactory, "", applicationFile);
+            this.applyRetention(requestFactory);
+            return success;
 
-            if (file == null || StringUtils.isBlank(file.uuid)) {
-                this.log("Upload failed, returned token is empty");
-                this.build.setResult(Result.FAILURE);
-                return false;
+        } catch (final Exception e) {
+            this.build.setResult(Result.FAILURE);
+            this.log(e.toString());
+            e.printStackTrace();
+
+        } finally {
+            if (this.iconUpload != null) {
+                this.iconUpload.cancel(true);
             }
-            this.log("Token {%s} for application asset acquired", file.uuid);
+        }
+        return false;
+    }
+
+    /**
+     * Publishes all files at the same time, at most {@link #MAX_PARALLEL_FILES} at once, over the
+     * pooled connections of the endpoint. The result of each file is logged once all of them have
+     * been processed.
+     */
+    private boolean publishAll(final RequestFactory requestFactory, final File baseDir, final List<String> applicationFiles)
+            throws InterruptedException {
 
-            this.log("Retrieving application object...");
-            final Request request = requestFactory.createAnalyzeUploadedApplication(file.uuid, info.getUUID());
+        final int threads = Math.min(applicationFiles.size(), MAX_PARALLEL_FILES);
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        final Map<String, Future<Boolean>> futures = new LinkedHashMap<String, Future<Boolean>>();
+        final Map<String, Long> durations = new ConcurrentHashMap<String, Long>();
 
-            final String json = requestFactory.send(request);
-            final ApiResponse response = ApiResponse.fromJson(json);
+        this.log("Publishing %d files, %d at a time", applicationFiles.size(), threads);
 
-            if (response.status != 0) {
-                this.log("Error retrieving application object: %s", response.message);
-                this.build.setResult(Result.FAILURE);
-                return false;
+        try {
+            for (final String path : applicationFiles) {
+                futures.put(path, executor.submit(new Callable<Boolean>() {
+
+                    @Override
+                    public Boolean call() throws Exception {
+                        final long start = System.currentTimeMillis();
+
+                        try {
+                            return ApplicationFileCallable.this.publish(requestFactory, baseDir, new File(baseDir, path));
+                        } finally {
+                            durations.put(path, System.currentTimeMillis() - start);
+                        }
+                    }
+                }));
             }
 
-            final ApiApp app = this.getApp(response, file.uuid);
+            int published = 0;
+            final StringBuilder report = new StringBuilder();
 
-            if (app == null) {
-                this.log("Failed to retrieve application object.");
+            for (final String path : futures.keySet()) {
+                final boolean success = this.await(futures.get(path));
+                final Long duration = durations.get(path);
+
+                report.append(String.format(
+                        Locale.ENGLISH,
+                        "%n    %-9s %s (%.1f s)",
+                        success ? "Published" : "Failed",
+                        path,
+                        duration != null ? duration / 1000f : 0f));
+
+                if (success) {
+                    published++;
+                }
+            }
+
+            this.log("Published %d of %d files:%s", published, futures.size(), report);
+
+            if (published < futures.size()) {
                 this.build.setResult(Result.FAILURE);
                 return false;
             }
+            return true;
 
-            final ApiVersion version = this.getVersion(app, file.uuid);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
 
-            if (version == null) {
-                this.log("Failed to retrieve version object.");
+    /**
+     * Deletes the expired versions of the applications that have been published. Failures are
+     * logged, they do not fail the build since the publication itself was successful.
+     */
+    private void applyRetention(final RequestFactory requestFactory) throws InterruptedException {
+
+        if (this.retention == null || this.publishedApps.isEmpty()) {
+            return;
+        }
+
+        final VersionRetention retention = new VersionRetention(requestFactory, this.listener.getLogger(), this.retention, this.ledger);
+
+        for (final String appUuid : this.publishedApps) {
+            try {
+                retention.apply(appUuid);
+
+            } catch (final IOException e) {
+                this.log("Failed to apply retention policy to {%s}: %s", appUuid, e);
+            }
+        }
+    }
+
+    private boolean await(final Future<Boolean> future) throws InterruptedException {
+
+        try {
+            return Boolean.TRUE.equals(future.get());
+
+        } catch (final ExecutionException e) {
+            this.log(e.getCause().toString());
+            return false;
+        }
+    }
+
+    /**
+     * Publishes a single file. Failures are logged and reported through the build result.
+     */
+    private boolean publish(final RequestFactory requestFactory, final File f, final File applicationFile) {
+
+        try {
+            this.log("Preparing to deploy '%s', retrieving application UUID...", applicationFile.getName());
+            final ShortApplicationInformation info = new ShortApplicationInformation(UUID.randomUUID().toString());
+
+            if (info == null || info.getUUID() == null) {
+                this.log("Failed to obtain application UUID");
                 this.build.setResult(Result.FAILURE);
                 return false;
             }
+            this.log("Obtained application UUID {%s}", info.getUUID());
 
-            if (!StringUtils.isBlank(this.application.getApplicationName())) {
-                for (final String key : version.name.keySet()) {
-                    version.name.put(key, this.application.getApplicationName());
+            final ApiEndpoint endpoint = requestFactory.getEndpoint();
+            String digest = null;
+            String token = null;
+
+            if (this.ledger != null) {
+                digest = PublishLedger.digest(applicationFile);
+                final PublishLedger.Entry entry = this.ledger.get(endpoint, digest);
+
+                if (entry != null && entry.published && this.skipDuplicates) {
+                    this.log("'%s' has already been published as version %s (%d), skipping", applicationFile.getName(), entry.versionName,
+                            entry.versionCode);
+                    this.build.setResult(Result.SUCCESS);
+                    return true;
                 }
-            }
 
-            if (!StringUtils.isBlank(this.application.getApiReleaseStatus())) {
-                version.releaseStatus = this.application.getApiReleaseStatus();
+                if (entry != null && !StringUtils.isBlank(entry.fileUuid)) {
+                    this.log("Content of '%s' already uploaded, reusing token {%s}", applicationFile.getName(), entry.fileUuid);
+                    token = entry.fileUuid;
+                }
             }
 
-            if (!StringUtils.isBlank(this.application.getApplicationIcon())) {
-                final ApiFile icon = this.upload(requestFactory, f, this.application.getApplicationIcon());
-                version.icon = icon;
+            ResponseFuture<UploadResponse> iconUpload = null;
+            ApiResponse response = null;
+            ApiVersion version = null;
+
+            if (token != null) {
+                this.log("Retrieving application object...");
+                response = this.analyze(requestFactory, token, info);
+
+                if (response.status != 0) {
+                    this.log("Server no longer holds token {%s}: %s", token, response.message);
+                    this.ledger.remove(endpoint, digest);
+                    token = null;
+                } else {
+                    // The icon does not depend on the application, upload it while the application is processed
+                    iconUpload = this.startIconUpload(requestFactory, f);
+                }
             }
 
-            this.log("Application object retrieved:\n%s", version.toString());
+            ApplicationMetadata metadata = null;
+
+            if (token == null) {
+                metadata = this.readMetadata(applicationFile);
+                final AppIndex index = this.getIndex(requestFactory, metadata, digest);
+                final boolean complete = metadata != null && metadata.isComplete();
+                final AppIndex.Entry existing = (index != null && complete) ? index.get(metadata.internalName, metadata.platform) : null;
+                final AppIndex.Entry published = (index != null && digest != null) ? index.getPublished(digest) : null;
+                boolean duplicate = false;
+
+                if (existing != null && existing.hasVersion(metadata.versionCode)) {
+                    this.log("Version %s (%d) of %s already exists in the store", metadata.versionName, metadata.versionCode,
+                            metadata.internalName);
+                    duplicate = true;
+
+                } else if (existing == null && published != null) {
+                    this.log("Content of '%s' has already been published as version %d", applicationFile.getName(),
+                            published.getLatestVersionCode());
+                    duplicate = true;
+                }
+
+                if (duplicate) {
+                    if (this.skipDuplicates) {
+                        this.build.setResult(Result.SUCCESS);
+                        return true;
+                    }
+                    this.build.setResult(Result.FAILURE);
+                    return false;
+                }
 
-            this.log("Saving application information...");
-            ApplicationInformation information;
+                // The icon does not depend on the application, upload it while the application is processed
+                iconUpload = this.startIconUpload(requestFactory, f);
 
-            if (app.uuid == null) {
-                information = this.saveApplicationInformation(requestFactory, app);
-            } else {
-                version.appUuid = app.uuid;
-                information = this.saveVersionInformation(requestFactory, version);
+                this.log("Upload application asset and retrieve token...");
+                final ApiFile file = this.uploadApplicationAsset(requestFactory, "", applicationFile);
+
+                if (file == null || StringUtils.isBlank(file.uuid)) {
+                    this.log("Upload failed, returned token is empty");
+                    this.build.setResult(Result.FAILURE);
+                    return false;
+                }
+                token = file.uuid;
+                this.log("Token {%s} for application asset acquired", token);
+
+                if (digest != null) {
+                    this.ledger.putFile(endpoint, digest, token);
+                }
+
+                version = this.getSuccessor(requestFactory, existing, metadata, file);
             }
 
-            if (information == null || !information.getPublished()) {
-                this.log("Failed to save application information.");
-                this.build.setResult(Result.FAILURE);
-                return false;
+            if (version != null) {
+                this.log("Application object resolved locally: %s %s (%d)", metadata.internalName, version.versionName, version.versionCode);
+
+                if (!this.save(requestFactory, null, version, iconUpload)) {
+                    this.log("Locally resolved version rejected, falling back to the server's analysis");
+                    version = null;
+                }
+            }
+
+            String internalName = (metadata != null) ? metadata.internalName : null;
+            String platform = (metadata != null) ? metadata.platform : null;
+
+            if (version == null) {
+                if (response == null || response.status != 0) {
+                    this.log("Retrieving application object...");
+                    response = this.analyze(requestFactory, token, info);
+                }
+
+                if (response.status != 0) {
+                    this.log("Error retrieving application object: %s", response.message);
+                    this.build.setResult(Result.FAILURE);
+                    return false;
+                }
+
+                final ApiApp app = this.getApp(response, token);
+
+                if (app == null) {
+                    this.log("Failed to retrieve application object.");
+                    this.build.setResult(Result.FAILURE);
+                    return false;
+                }
+
+                version = this.getVersion(app, token);
+
+                if (version == null) {
+                    this.log("Failed to retrieve version object.");
+                    this.build.setResult(Result.FAILURE);
+                    return false;
+                }
+
+                this.log("Application object retrieved: %s %s (%d)", app.internalName, version.versionName, version.versionCode);
+                this.verify(metadata, app, version);
+
+                internalName = app.internalName;
+                platform = (platform == null && !app.platforms.isEmpty()) ? app.platforms.get(0) : platform;
+
+                if (!this.save(requestFactory, app, version, iconUpload)) {
+                    this.log("Failed to save application information.");
+                    this.build.setResult(Result.FAILURE);
+                    return false;
+                }
             }
 
             this.log("Application information saved");
+            AppIndex.put(endpoint, internalName, platform, digest, version);
+            this.log("Transfer statistics for %s: %s", endpoint, requestFactory.getStatistics());
+
+            if (digest != null) {
+                this.ledger.putVersion(endpoint, digest, version.appUuid, version.versionCode, version.versionName);
+            }
+
+            // The UUID of a new application is assigned by the server, it cannot be promoted from the build page
+            if (version.appUuid != null) {
+                PromotionAction.record(this.build, endpoint, internalName, version);
+                this.publishedApps.add(version.appUuid);
+            }
             this.build.setResult(Result.SUCCESS);
             return true;
 
         } catch (final Exception e) {
             this.build.setResult(Result.FAILURE);
-            this.log(e.toString());
+            this.log("%s: %s", applicationFile.getName(), e.toString());
             e.printStackTrace();
         }
         return false;
     }
 
-    private File getApplicationFile(final FileSet fileSet) {
+    /**
+     * Applies the configured name, release status and icon to the version and saves it, either
+     * as a new application or, if the application already exists, as a new version of it.
+     * @param app The analyzed application, or <code>null</code> if the version belongs to an
+     * existing application.
+     */
+    private boolean save(final RequestFactory requestFactory, final ApiApp app, final ApiVersion version,
+            final ResponseFuture<UploadResponse> iconUpload) throws URISyntaxException, ParseException, ClientProtocolException, IOException {
+
+        if (!StringUtils.isBlank(this.application.getApplicationName())) {
+            for (final String key : version.name.keySet()) {
+                version.name.put(key, this.application.getApplicationName());
+            }
+        }
+
+        if (!StringUtils.isBlank(this.application.getApiReleaseStatus())) {
+            version.releaseStatus = this.application.getApiReleaseStatus();
+        }
+
+        if (iconUpload != null) {
+            final UploadResponse icon = iconUpload.await();
+            version.icon = (icon.status == 0) ? icon.results.get(0) : null;
+        }
+
+        this.log("Saving application information...");
+        ApplicationInformation information;
+
+        if (app != null && app.uuid == null) {
+            information = this.saveApplicationInformation(requestFactory, app);
+        } else {
+            if (app != null) {
+                version.appUuid = app.uuid;
+            }
+            information = this.saveVersionInformation(requestFactory, version);
+        }
+
+        return information != null && information.getPublished();
+    }
+
+    private ApplicationMetadata readMetadata(final File applicationFile) {
+
+        try {
+            final ApplicationMetadata metadata = ApplicationMetadata.read(applicationFile);
+
+            if (metadata != null) {
+                this.log("Package metadata of '%s': %s", applicationFile.getName(), metadata);
+            }
+            return metadata;
+
+        } catch (final IOException e) {
+            this.log("Failed to read package metadata of '%s': %s", applicationFile.getName(), e.toString());
+            return null;
+
+        } catch (final RuntimeException e) {
+            // A corrupt or unusual package is analyzed by the server instead
+            this.log("Failed to read package metadata of '%s': %s", applicationFile.getName(), e.toString());
+            return null;
+        }
+    }
+
+    /**
+     * Returns the index of the store, which is built on first use and then shared by all
+     * publications to the endpoint.
+     * @return The index, or <code>null</code> if neither the metadata nor the digest of the
+     * package is known or the store could not be listed.
+     */
+    private AppIndex getIndex(final RequestFactory requestFactory, final ApplicationMetadata metadata, final String digest) {
+
+        if ((metadata == null || !metadata.isComplete()) && digest == null) {
+            return null;
+        }
+
+        try {
+            final AppIndex index = AppIndex.get(requestFactory.getEndpoint(), new AppIndex.Loader() {
+
+                @Override
+                public Iterator<ApiApp> load(final CatalogQuery query) {
+                    return new CatalogIterator(requestFactory, query);
+                }
+            });
+            this.log("Catalog cache: %s", ResponseCache.getInstance());
+            return index;
+
+        } catch (final IOException e) {
+            this.log("Failed to look up application: %s", e.toString());
+            return null;
+        }
+    }
+
+    /**
+     * Creates the new version of an existing application from the package metadata, so the
+     * uploaded file does not have to be analyzed by the server. The index only holds the version
+     * codes, the complete latest version is retrieved for this application alone.
+     * @return The new version, or <code>null</code> if the application does not exist yet, has
+     * no versions or could not be retrieved.
+     */
+    private ApiVersion getSuccessor(final RequestFactory requestFactory, final AppIndex.Entry existing, final ApplicationMetadata metadata,
+            final ApiFile file) {
+
+        if (existing == null || !existing.hasVersions()) {
+            return null;
+        }
+
+        final ApiVersion latest = this.fetchVersion(requestFactory, existing.getAppUuid(), existing.getLatestVersionCode());
+
+        if (latest == null) {
+            return null;
+        }
+
+        final ApiVersion successor = ApiVersion.successorOf(latest, file, metadata.versionName, metadata.versionCode,
+                this.getReleaseStatus(requestFactory.getEndpoint()));
+        successor.appUuid = existing.getAppUuid();
+        return successor;
+    }
+
+    /**
+     * Returns the release status of new versions: the status configured for the job, or the
+     * default status of the endpoint if the job does not configure one.
+     */
+    private String getReleaseStatus(final ApiEndpoint endpoint) {
+
+        if (!StringUtils.isBlank(this.application.getApiReleaseStatus())) {
+            return this.application.getApiReleaseStatus();
+        }
+
+        if (!StringUtils.isBlank(endpoint.getReleaseStatus())) {
+            return endpoint.getReleaseStatus();
+        }
+        return ReleaseStatus.STATUSES[0].key;
+    }
+
+    private ApiVersion fetchVersion(final RequestFactory requestFactory, final String appUuid, final int versionCode) {
+
+        final CatalogQuery query = new CatalogQuery().filter(CatalogQuery.FIELD_UUID, appUuid);
+
+        try {
+            final Request request = requestFactory.createAppStoreItemsRequest(query, 0, 1);
+            final ApiResponse response = requestFactory.send(request, API_RESPONSE_PARSER);
+
+            if (response == null || response.status != 0) {
+                return null;
+            }
+
+            // A store that ignores the filter returns some other application
+            for (final ApiApp app : response.results) {
+                if (!appUuid.equals(app.uuid)) {
+                    this.log("Store returned application %s instead of %s, resolving the version on the server", app.uuid, appUuid);
+                    continue;
+                }
+
+                for (final ApiVersion version : app.versions) {
+                    if (version.versionCode == versionCode) {
+                        return version;
+                    }
+                }
+            }
+
+        } catch (final URISyntaxException e) {
+            this.log("Failed to retrieve application %s: %s", appUuid, e.toString());
+
+        } catch (final IOException e) {
+            this.log("Failed to retrieve application %s: %s", appUuid, e.toString());
+        }
+        return null;
+    }
+
+    private void verify(final ApplicationMetadata metadata, final ApiApp app, final ApiVersion version) {
+
+        if (metadata == null || !metadata.isComplete()) {
+            return;
+        }
+
+        if (!metadata.internalName.equals(app.internalName) || metadata.versionCode != version.versionCode) {
+            this.log("Warning: package metadata (%s) differs from the server's analysis (%s %s (%d))", metadata, app.internalName,
+                    version.versionName, version.versionCode);
+        }
+    }
 
-        final String dir = fileSet.getDirectoryScanner().getBasedir().getAbsolutePath();
-        final String name = fileSet.getDirectoryScanner().getIncludedFiles()[0];
-        final String path = String.format("%s%s%s", dir, File.separator, name);
+    /**
+     * Starts the upload of the application icon, if one is configured. The icon is uploaded only
+     * once and shared by all files that are published.
+     */
+    private synchronized ResponseFuture<UploadResponse> startIconUpload(final RequestFactory requestFactory, final File baseDir) {
 
-        return new File(path);
+        if (this.iconUpload == null && !StringUtils.isBlank(this.application.getApplicationIcon())) {
+            this.iconUpload = this.uploadAsync(requestFactory, baseDir, this.application.getApplicationIcon());
+        }
+        return this.iconUpload;
+    }
+
+    private ApiResponse analyze(final RequestFactory requestFactory, final String token, final ShortApplicationInformation info)
+            throws URISyntaxException, ParseException, ClientProtocolException, IOException {
+
+        final Request request = requestFactory.createAnalyzeUploadedApplication(token, info.getUUID());
+
+        return requestFactory.send(request, new ResponseParser<ApiResponse>() {
+
+            @Override
+            public ApiResponse parse(final Reader reader) throws IOException {
+                return ApiResponse.fromJson(reader, new ApiResponse.Filter() {
+
+                    @Override
+                    public boolean accept(final ApiApp app) {
+                        return ApplicationFileCallable.this.getVersion(app, token) != null;
+                    }
+                }, 1);
+            }
+        });
     }
 
     private RelutionCommunicator getCommunicator(final Application application) {
@@ -263,28 +739,38 @@ public class ApplicationFileCallable implements FileCallable<Boolean> {
         return null;
     }
 
-    private ApiFile upload(final RequestFactory requestFactory, final File baseDir, final String path)
-            throws ParseException, ClientProtocolException, URISyntaxException, IOException {
+    private ResponseFuture<UploadResponse> uploadAsync(final RequestFactory requestFactory, final File baseDir, final String path) {
 
-        final FileSet fileSet = Util.createFileSet(baseDir, path);
+        final File file = this.scan.getFile(baseDir, path);
 
         // If the file does not exist, consider the build as "not built" 
-        if (fileSet.getDirectoryScanner().getIncludedFilesCount() < 1) {
+        if (file == null) {
             this.log("The configured application file does not exist, no files to deploy");
             this.build.setResult(Result.NOT_BUILT);
             return null;
         }
 
-        final File file = this.getApplicationFile(fileSet);
-        return this.uploadApplicationAsset(requestFactory, "", file);
+        final Request request = requestFactory.createUploadRequest("", file);
+        return requestFactory.sendAsync(request, UPLOAD_RESPONSE_PARSER);
     }
 
     private ApiFile uploadApplicationAsset(final RequestFactory requestFactory, final String uploadToken, final File file)
-            throws URISyntaxException, ParseException, ClientProtocolException, IOException {
+            throws URISyntaxException, ParseException, ClientProtocolException, IOException, InterruptedException {
+
+        if (ChunkedUpload.isEligible(requestFactory.getEndpoint(), file)) {
+            final ChunkedUpload upload = new ChunkedUpload(requestFactory, file);
+            this.log("Uploading '%s' in %d parts...", file.getName(), upload.getPartCount());
+
+            final UploadResponse response = upload.upload();
+
+            if (response != null) {
+                return response.status == 0 ? response.results.get(0) : null;
+            }
+            this.log("Partial uploads are not supported by the server, uploading '%s' at once...", file.getName());
+        }
 
         final Request request = requestFactory.createUploadRequest(uploadToken, file);
-        final String json = requestFactory.send(request);
-        final UploadResponse response = UploadResponse.fromJson(json);
+        final UploadResponse response = requestFactory.send(request, UPLOAD_RESPONSE_PARSER);
 
         if (response.status != 0) {
             return null;
@@ -297,8 +783,7 @@ public class ApplicationFileCallable implements FileCallable<Boolean> {
             throws URISyntaxException, ParseException, ClientProtocolException, IOException {
 
         final Request request = requestFactory.createUploadedApplicationInformationRequest(app);
-        final String json = requestFactory.send(request);
-        final ApiResponse response = ApiResponse.fromJson(json);
+        final ApiResponse response = requestFactory.send(request, API_RESPONSE_PARSER);
 
         System.out.println("[uploadedApplicationInformation] " + response.toString());
 
@@ -311,8 +796,7 @@ public class ApplicationFileCallable implements FileCallable<Boolean> {
             throws URISyntaxException, ParseException, ClientProtocolException, IOException {
 
         final Request request = requestFactory.createUploadedVersionInformationRequest(version);
-        final String json = requestFactory.send(request);
-        final ApiResponse response = ApiResponse.fromJson(json);
+        final ApiResponse response = requestFactory.send(request, API_RESPONSE_PARSER);
 
         System.out.println("[uploadedApplicationInformation] " + response.toString());
 
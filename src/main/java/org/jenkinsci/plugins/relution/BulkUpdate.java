@@ -0,0 +1,222 @@
+package org.jenkinsci.plugins.relution;
+
+import org.jenkinsci.plugins.relution.json.ApiVersion;
+import org.jenkinsci.plugins.relution.net.ClientPool;
+import org.jenkinsci.plugins.relution.net.RequestFactory;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+
+/**
+ * Changes the release status and change log of many published versions of an endpoint at once.
+ * <p/>
+ * The versions are updated at the same time, at most as many at once as the endpoint has
+ * connections (see the connection settings of the global configuration), since additional
+ * threads would only wait for a connection. Progress is logged as each version completes, the
+ * outcome of every version is logged as a table once all of them have been processed.
+ */
+public class BulkUpdate {
+
+    private final RequestFactory mRequestFactory;
+    private final PrintStream    mLogger;
+
+    /**
+     * Creates a bulk update that sends its requests through the specified factory.
+     * @param requestFactory The factory of the endpoint the versions have been published to.
+     * @param logger The stream progress is logged to.
+     */
+    public BulkUpdate(final RequestFactory requestFactory, final PrintStream logger) {
+        this.mRequestFactory = requestFactory;
+        this.mLogger = logger;
+    }
+
+    /**
+     * Applies the specified changes.
+     * @param changes The changes to apply.
+     * @return The outcome of each change, in the order of the changes.
+     * @throws InterruptedException The thread was interrupted while waiting for the changes to
+     * complete, changes that have not been applied yet are abandoned.
+     */
+    public List<Outcome> apply(final List<Change> changes) throws InterruptedException {
+
+        if (changes.isEmpty()) {
+            this.log("No versions to update");
+            return Collections.emptyList();
+        }
+
+        final int threads = Math.min(changes.size(), ClientPool.get(this.mRequestFactory.getEndpoint()).getMaxConnections());
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        final CompletionService<Outcome> completion = new ExecutorCompletionService<Outcome>(executor);
+        final ReleasePromotion promotion = new ReleasePromotion(this.mRequestFactory, null);
+        final List<Future<Outcome>> futures = new ArrayList<Future<Outcome>>();
+
+        this.log("Updating %d versions, %d at a time", changes.size(), threads);
+
+        try {
+            for (final Change change : changes) {
+                futures.add(completion.submit(new Callable<Outcome>() {
+
+                    @Override
+                    public Outcome call() {
+                        return BulkUpdate.this.apply(promotion, change);
+                    }
+                }));
+            }
+
+            for (int index = 1; index <= changes.size(); index++) {
+                final Outcome outcome = this.await(completion.take());
+                this.log("[%d/%d] %s: %s", index, changes.size(), outcome.change, outcome.message);
+            }
+
+            final List<Outcome> outcomes = new ArrayList<Outcome>();
+            for (final Future<Outcome> future : futures) {
+                outcomes.add(this.await(future));
+            }
+
+            this.report(outcomes);
+            return outcomes;
+
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private Outcome await(final Future<Outcome> future) throws InterruptedException {
+
+        try {
+            return future.get();
+
+        } catch (final ExecutionException e) {
+            // apply(ReleasePromotion, Change) does not throw
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private Outcome apply(final ReleasePromotion promotion, final Change change) {
+
+        try {
+            final List<ApiVersion> versions = promotion.find(change.internalName, change.versionCode);
+
+            if (versions.isEmpty()) {
+                return new Outcome(change, Status.NOT_FOUND, "Version does not exist");
+            }
+
+            int updated = 0;
+            for (final ApiVersion version : versions) {
+                if (promotion.update(version, change.releaseStatus, change.changelog)) {
+                    updated++;
+                }
+            }
+
+            if (updated == 0) {
+                return new Outcome(change, Status.UNCHANGED, "Up to date");
+            }
+            return new Outcome(change, Status.UPDATED, String.format("Updated %d of %d applications", updated, versions.size()));
+
+        } catch (final IOException e) {
+            return new Outcome(change, Status.FAILED, e.getMessage());
+
+        } catch (final RuntimeException e) {
+            return new Outcome(change, Status.FAILED, e.toString());
+        }
+    }
+
+    private void report(final List<Outcome> outcomes) {
+
+        final StringBuilder report = new StringBuilder();
+        int failed = 0;
+
+        for (final Outcome outcome : outcomes) {
+            report.append(String.format(Locale.ENGLISH, "%n    %-9s %-50s %s", outcome.status, outcome.change, outcome.message));
+
+            if (!outcome.isSuccess()) {
+                failed++;
+            }
+        }
+
+        this.log("Updated %d of %d versions, %d failed:%s", outcomes.size() - failed, outcomes.size(), failed, report);
+    }
+
+    private void log(final String format, final Object... args) {
+
+        final String text = String.format(format, args);
+        final String message = String.format("[Relution Publisher] %s", text);
+        this.mLogger.println(message);
+    }
+
+    /**
+     * A change of the version of an application.
+     */
+    public static class Change {
+
+        public final String internalName;
+        public final int    versionCode;
+
+        public final String releaseStatus;
+        public final String changelog;
+
+        /**
+         * Constructor.
+         * @param internalName The package name or bundle identifier of the application.
+         * @param versionCode The version code of the version.
+         * @param releaseStatus The new release status, or <code>null</code> to keep the status.
+         * @param changelog The new change log, or <code>null</code> to keep the change log.
+         */
+        public Change(final String internalName, final int versionCode, final String releaseStatus, final String changelog) {
+            this.internalName = internalName;
+            this.versionCode = versionCode;
+            this.releaseStatus = releaseStatus;
+            this.changelog = changelog;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s (%d)", this.internalName, this.versionCode);
+        }
+    }
+
+    /**
+     * The result of a change.
+     */
+    public enum Status {
+        UPDATED,
+        UNCHANGED,
+        NOT_FOUND,
+        FAILED
+    }
+
+    /**
+     * The outcome of a change.
+     */
+    public static class Outcome {
+
+        public final Change change;
+        public final Status status;
+        public final String message;
+
+        Outcome(final Change change, final Status status, final String message) {
+            this.change = change;
+            this.status = status;
+            this.message = message;
+        }
+
+        /**
+         * @return <code>true</code> if the version has been updated or was up to date.
+         */
+        public boolean isSuccess() {
+            return this.status == Status.UPDATED || this.status == Status.UNCHANGED;
+        }
+    }
+}
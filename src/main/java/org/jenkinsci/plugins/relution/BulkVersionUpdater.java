@@ -0,0 +1,237 @@
+package org.jenkinsci.plugins.relution;
+
+import hudson.AbortException;
+import hudson.EnvVars;
+import hudson.Extension;
+import hudson.FilePath;
+import hudson.Launcher;
+import hudson.model.BuildListener;
+import hudson.model.Result;
+import hudson.model.AbstractBuild;
+import hudson.model.AbstractProject;
+import hudson.tasks.BuildStepDescriptor;
+import hudson.tasks.Builder;
+import hudson.util.FormValidation;
+import hudson.util.ListBoxModel;
+
+import org.apache.commons.lang.StringUtils;
+import org.jenkinsci.plugins.relution.entities.ApiEndpoint;
+import org.jenkinsci.plugins.relution.entities.ReleaseStatus;
+import org.jenkinsci.plugins.relution.net.RequestFactory;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.QueryParameter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.inject.Inject;
+
+
+/**
+ * Build step that changes the release status and change log of many published versions of an
+ * endpoint at once, e.g. to release all applications of a release train.
+ * <p/>
+ * The versions are listed one per line as <code>internalName versionCode [changelogFile]</code>.
+ * The optional change log file is read from the workspace. Empty lines and lines that start with
+ * <code>#</code> are ignored, build variables are replaced with their values.
+ */
+public class BulkVersionUpdater extends Builder {
+
+    private String            apiEndpointJson;
+
+    private final String      versions;
+    private final String      releaseStatus;
+
+    /**
+     * Constructor.
+     * @param apiEndpoint Reference to the endpoint the versions have been published to.
+     * @param versions The versions to update, one per line.
+     * @param releaseStatus The release status the versions are promoted to, empty to keep their
+     * status.
+     */
+    @DataBoundConstructor
+    public BulkVersionUpdater(final String apiEndpoint, final String versions, final String releaseStatus) {
+        this.apiEndpointJson = ApiEndpoint.toReference(apiEndpoint);
+
+        this.versions = versions;
+        this.releaseStatus = releaseStatus;
+    }
+
+    /**
+     * @return Reference to the endpoint the versions have been published to.
+     */
+    public String getApiEndpoint() {
+        return this.apiEndpointJson;
+    }
+
+    /**
+     * Drops the password from the endpoint of a job that was saved by an earlier version.
+     */
+    protected Object readResolve() {
+        this.apiEndpointJson = ApiEndpoint.toReference(this.apiEndpointJson);
+        return this;
+    }
+
+    /**
+     * @return The versions to update, one per line.
+     */
+    public String getVersions() {
+        return this.versions;
+    }
+
+    /**
+     * @return The release status the versions are promoted to, empty to keep their status.
+     */
+    public String getReleaseStatus() {
+        return this.releaseStatus;
+    }
+
+    @Override
+    @SuppressWarnings("rawtypes")
+    public boolean perform(final AbstractBuild build, final Launcher launcher, final BuildListener listener) throws IOException,
+            InterruptedException {
+
+        final GlobalConfigurationImpl config = this.getDescriptor().getGlobalConfiguration();
+        final ApiEndpoint apiEndpoint = config.findEndpoint(this.apiEndpointJson);
+
+        if (apiEndpoint == null) {
+            listener.getLogger().println("[Relution Publisher]: ERROR - No store selected or the store is no longer configured");
+            build.setResult(Result.FAILURE);
+            return false;
+        }
+
+        final EnvVars env = build.getEnvironment(listener);
+        final List<BulkUpdate.Change> changes;
+
+        try {
+            changes = this.parse(env.expand(this.versions), build.getWorkspace());
+
+        } catch (final AbortException e) {
+            listener.getLogger().println("[Relution Publisher]: ERROR - " + e.getMessage());
+            build.setResult(Result.FAILURE);
+            return false;
+        }
+
+        final RelutionCommunicator communicator = new RelutionCommunicator(
+                apiEndpoint,
+                config.getProxyHost(),
+                config.getProxyPort(),
+                new RequestFactory());
+
+        final List<BulkUpdate.Outcome> outcomes = new BulkUpdate(communicator.getRequestFactory(), listener.getLogger()).apply(changes);
+
+        for (final BulkUpdate.Outcome outcome : outcomes) {
+            if (!outcome.isSuccess()) {
+                build.setResult(Result.FAILURE);
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private List<BulkUpdate.Change> parse(final String text, final FilePath workspace) throws IOException, InterruptedException {
+
+        final List<BulkUpdate.Change> changes = new ArrayList<BulkUpdate.Change>();
+        final String status = StringUtils.isBlank(this.releaseStatus) ? null : this.releaseStatus;
+
+        if (text == null) {
+            return changes;
+        }
+
+        for (final String line : text.split("\r?\n")) {
+            final String trimmed = line.trim();
+
+            if (trimmed.length() == 0 || trimmed.startsWith("#")) {
+                continue;
+            }
+
+            final String[] columns = trimmed.split("\\s+");
+
+            if (columns.length < 2 || columns.length > 3 || !columns[1].matches("\\d+")) {
+                throw new AbortException("Expected 'internalName versionCode [changelogFile]': " + trimmed);
+            }
+
+            String changelog = null;
+
+            if (columns.length == 3) {
+                final FilePath file = workspace != null ? workspace.child(columns[2]) : null;
+
+                if (file == null || !file.exists()) {
+                    throw new AbortException("Change log file does not exist: " + columns[2]);
+                }
+                changelog = file.readToString();
+            }
+
+            changes.add(new BulkUpdate.Change(columns[0], Integer.parseInt(columns[1]), status, changelog));
+        }
+        return changes;
+    }
+
+    @Override
+    public DescriptorImpl getDescriptor() {
+        return (DescriptorImpl) super.getDescriptor();
+    }
+
+    /**
+     * Descriptor for {@link BulkVersionUpdater}. Used as a singleton.
+     */
+    @Extension
+    public static final class DescriptorImpl extends BuildStepDescriptor<Builder> {
+
+        /**
+         * Necessary Object to read the values entered in the GlobalConfigurationScreen.
+         */
+        @Inject
+        GlobalConfigurationImpl globalConfiguration;
+
+        @Override
+        @SuppressWarnings("rawtypes")
+        public boolean isApplicable(final Class<? extends AbstractProject> aClass) {
+            return true;
+        }
+
+        @Override
+        public String getDisplayName() {
+            return Messages.Relution_bulkDisplayName();
+        }
+
+        /**
+         * @return Actual GlobalConfiguration that contributes to the system configuration page.
+         */
+        public GlobalConfigurationImpl getGlobalConfiguration() {
+            return this.globalConfiguration;
+        }
+
+        public FormValidation doCheckVersions(@QueryParameter final String value) {
+
+            if (StringUtils.isBlank(value)) {
+                return FormValidation.error("Please enter at least one version");
+            }
+            return FormValidation.ok();
+        }
+
+        /**
+         * @return List of URLs which are entered in the GlobalConfigurationScreen
+         */
+        public ListBoxModel doFillApiEndpointItems() {
+            final List<ApiEndpoint> endpoints = this.globalConfiguration.getEndpoints();
+            final ListBoxModel items = new ListBoxModel();
+
+            for (final ApiEndpoint endpoint : endpoints) {
+                items.add(endpoint.toString(), endpoint.toReference());
+            }
+            return items;
+        }
+
+        /**
+         * @return List of ReleaseStatuses the versions can be promoted to.
+         */
+        public ListBoxModel doFillReleaseStatusItems() {
+            final ListBoxModel items = new ListBoxModel();
+            items.add("Unchanged", "");
+            ReleaseStatus.fill(items);
+            return items;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package org.jenkinsci.plugins.relution;
+
+import hudson.Extension;
+import hudson.model.AsyncPeriodicWork;
+import hudson.model.TaskListener;
+
+import org.jenkinsci.plugins.relution.cache.AppIndex;
+import org.jenkinsci.plugins.relution.entities.ApiEndpoint;
+import org.jenkinsci.plugins.relution.json.ApiApp;
+import org.jenkinsci.plugins.relution.net.CatalogIterator;
+import org.jenkinsci.plugins.relution.net.CatalogQuery;
+import org.jenkinsci.plugins.relution.net.RequestFactory;
+
+import java.io.IOException;
+import java.util.Iterator;
+
+import javax.inject.Inject;
+
+
+/**
+ * Periodically merges the changes of the stores of the configured endpoints into their
+ * {@link AppIndex}, so publications find an index that is up to date. Only endpoints that have
+ * already been indexed are synchronized.
+ */
+@Extension
+public class CatalogSync extends AsyncPeriodicWork {
+
+    /**
+     * Necessary Object to read the values entered in the GlobalConfigurationScreen.
+     */
+    @Inject
+    GlobalConfigurationImpl globalConfiguration;
+
+    public CatalogSync() {
+        super("Relution catalog synchronization");
+    }
+
+    @Override
+    public long getRecurrencePeriod() {
+        return AppIndex.SYNC_INTERVAL;
+    }
+
+    @Override
+    protected void execute(final TaskListener listener) throws IOException, InterruptedException {
+
+        if (this.globalConfiguration == null) {
+            return;
+        }
+
+        for (final ApiEndpoint endpoint : this.globalConfiguration.getEndpoints()) {
+            final RelutionCommunicator communicator = new RelutionCommunicator(
+                    endpoint,
+                    this.globalConfiguration.getProxyHost(),
+                    this.globalConfiguration.getProxyPort(),
+                    new RequestFactory());
+
+            final RequestFactory requestFactory = communicator.getRequestFactory();
+
+            try {
+                final int merged = AppIndex.sync(endpoint, new AppIndex.Loader() {
+
+                    @Override
+                    public Iterator<ApiApp> load(final CatalogQuery query) {
+                        return new CatalogIterator(requestFactory, query);
+                    }
+                });
+
+                if (merged >= 0) {
+                    listener.getLogger().println(String.format("[Relution Publisher]: Merged %d modified applications of %s", merged, endpoint.getUrl()));
+                }
+
+            } catch (final IOException e) {
+                listener.getLogger().println(String.format("[Relution Publisher]: Failed to synchronize %s: %s", endpoint.getUrl(), e));
+            }
+        }
+    }
+}
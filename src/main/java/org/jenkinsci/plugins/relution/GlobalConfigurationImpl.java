@@ -34,7 +34,11 @@ import net.sf.json.JSONArray;
 import net.sf.json.JSONObject;
 
 import org.apache.commons.validator.routines.UrlValidator;
+import org.jenkinsci.plugins.relution.cache.AppIndex;
 import org.jenkinsci.plugins.relution.entities.ApiEndpoint;
+import org.jenkinsci.plugins.relution.entities.RetentionPolicy;
+import org.jenkinsci.plugins.relution.net.ClientPool;
+import org.jenkinsci.plugins.relution.net.ResponseCache;
 import org.kohsuke.stapler.AncestorInPath;
 import org.kohsuke.stapler.QueryParameter;
 import org.kohsuke.stapler.StaplerRequest;
@@ -46,27 +50,51 @@ import java.util.List;
 import javax.servlet.ServletException;
 
 import jenkins.model.GlobalConfiguration;
+import jenkins.model.Jenkins;
 
 
 @Extension
 public class GlobalConfigurationImpl extends GlobalConfiguration {
 
-    public final static String  KEY_ENDPOINT   = "endpoints";
-    public final static String  KEY_PROXY_URL  = "proxyHost";
-    public final static String  KEY_PROXY_PORT = "proxyPort";
+    public final static String  KEY_ENDPOINT        = "endpoints";
+    public final static String  KEY_PROXY_URL       = "proxyHost";
+    public final static String  KEY_PROXY_PORT      = "proxyPort";
 
-    private static final String UUIDPattern    = "^[0-9a-fA-F]{8}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{12}$";
+    public final static String  KEY_MAX_CONNECTIONS = "maxConnections";
+    public final static String  KEY_KEEP_ALIVE      = "keepAlive";
+    public final static String  KEY_COMPRESS        = "compressRequests";
 
-    private List<ApiEndpoint>   endpoints      = new ArrayList<ApiEndpoint>();
+    public final static String  KEY_KEEP_PER_STATUS = "keepPerStatus";
+    public final static String  KEY_KEEP_DAYS       = "keepDays";
+    public final static String  KEY_DELETE_EXPIRED  = "deleteExpired";
+    public final static String  KEY_RETAIN_PUBLISH  = "retainAfterPublish";
+    public final static String  KEY_RETAIN_PERIODIC = "retainPeriodically";
+
+    private static final String UUIDPattern         = "^[0-9a-fA-F]{8}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{12}$";
+
+    private List<ApiEndpoint>   endpoints           = new ArrayList<ApiEndpoint>();
 
     private String              proxyHost;
     private int                 proxyPort;
 
+    private int                 maxConnections      = ClientPool.DEFAULT_MAX_CONNECTIONS;
+    private int                 keepAlive           = ClientPool.DEFAULT_KEEP_ALIVE;
+    private boolean             compressRequests;
+
+    private int                 keepPerStatus;
+    private int                 keepDays;
+    private boolean             deleteExpired;
+    private boolean             retainAfterPublish;
+    private boolean             retainPeriodically;
+
     /**
      * Initializes a new instance of the {@link GlobalConfigurationImpl} class.
      */
     public GlobalConfigurationImpl() {
         this.load();
+        ClientPool.configure(this.maxConnections, this.keepAlive, this.compressRequests);
+        ResponseCache.configure(Jenkins.getInstance().getRootDir());
+        AppIndex.configure(Jenkins.getInstance().getRootDir());
     }
 
     /**
@@ -137,6 +165,26 @@ public class GlobalConfigurationImpl extends GlobalConfiguration {
         return this.endpoints;
     }
 
+    /**
+     * Finds the configured endpoint a job refers to.
+     * @param reference The {@link ApiEndpoint#toReference() reference} to the endpoint.
+     * @return The configured {@link ApiEndpoint}, or {@code null} if it is no longer configured.
+     */
+    public ApiEndpoint findEndpoint(final String reference) {
+        final ApiEndpoint key = ApiEndpoint.fromReference(reference);
+
+        if (key == null) {
+            return null;
+        }
+
+        for (final ApiEndpoint endpoint : this.endpoints) {
+            if (key.equals(endpoint)) {
+                return endpoint;
+            }
+        }
+        return null;
+    }
+
     public void setEndpoints(final List<ApiEndpoint> endpoints) {
         this.endpoints = endpoints;
     }
@@ -186,6 +234,18 @@ public class GlobalConfigurationImpl extends GlobalConfiguration {
         this.proxyHost = json.getString(KEY_PROXY_URL);
         this.proxyPort = json.optInt(KEY_PROXY_PORT, 0);
 
+        this.maxConnections = json.optInt(KEY_MAX_CONNECTIONS, ClientPool.DEFAULT_MAX_CONNECTIONS);
+        this.keepAlive = json.optInt(KEY_KEEP_ALIVE, ClientPool.DEFAULT_KEEP_ALIVE);
+        this.compressRequests = json.optBoolean(KEY_COMPRESS, false);
+        ClientPool.configure(this.maxConnections, this.keepAlive, this.compressRequests);
+        ClientPool.retain(this.endpoints);
+
+        this.keepPerStatus = json.optInt(KEY_KEEP_PER_STATUS, 0);
+        this.keepDays = json.optInt(KEY_KEEP_DAYS, 0);
+        this.deleteExpired = json.optBoolean(KEY_DELETE_EXPIRED, false);
+        this.retainAfterPublish = json.optBoolean(KEY_RETAIN_PUBLISH, false);
+        this.retainPeriodically = json.optBoolean(KEY_RETAIN_PERIODIC, false);
+
         this.save();
         return false;
     }
@@ -222,4 +282,124 @@ public class GlobalConfigurationImpl extends GlobalConfiguration {
     public void setProxyPort(final int proxyPort) {
         this.proxyPort = proxyPort;
     }
+
+    /**
+     * @return Maximum number of concurrent connections to a single Relution store.
+     */
+    public int getMaxConnections() {
+        return this.maxConnections;
+    }
+
+    /**
+     * @param maxConnections Sets entry of  the textfield maxConnections.
+     */
+    public void setMaxConnections(final int maxConnections) {
+        this.maxConnections = maxConnections;
+    }
+
+    /**
+     * @return Time, in seconds, an idle connection to a Relution store is kept open.
+     */
+    public int getKeepAlive() {
+        return this.keepAlive;
+    }
+
+    /**
+     * @param keepAlive Sets entry of  the textfield keepAlive.
+     */
+    public void setKeepAlive(final int keepAlive) {
+        this.keepAlive = keepAlive;
+    }
+
+    /**
+     * @return Whether JSON request bodies sent to Relution stores are gzip compressed.
+     */
+    public boolean isCompressRequests() {
+        return this.compressRequests;
+    }
+
+    /**
+     * @param compressRequests Sets entry of  the checkbox compressRequests.
+     */
+    public void setCompressRequests(final boolean compressRequests) {
+        this.compressRequests = compressRequests;
+    }
+
+    /**
+     * @return Number of versions per release status that are kept by the retention policy.
+     */
+    public int getKeepPerStatus() {
+        return this.keepPerStatus;
+    }
+
+    /**
+     * @param keepPerStatus Sets entry of  the textfield keepPerStatus.
+     */
+    public void setKeepPerStatus(final int keepPerStatus) {
+        this.keepPerStatus = keepPerStatus;
+    }
+
+    /**
+     * @return Number of days a version is kept by the retention policy.
+     */
+    public int getKeepDays() {
+        return this.keepDays;
+    }
+
+    /**
+     * @param keepDays Sets entry of  the textfield keepDays.
+     */
+    public void setKeepDays(final int keepDays) {
+        this.keepDays = keepDays;
+    }
+
+    /**
+     * @return Whether expired versions are deleted, otherwise they are only reported.
+     */
+    public boolean isDeleteExpired() {
+        return this.deleteExpired;
+    }
+
+    /**
+     * @param deleteExpired Sets entry of  the checkbox deleteExpired.
+     */
+    public void setDeleteExpired(final boolean deleteExpired) {
+        this.deleteExpired = deleteExpired;
+    }
+
+    /**
+     * @return Whether the retention policy is applied to an application after it was published.
+     */
+    public boolean isRetainAfterPublish() {
+        return this.retainAfterPublish;
+    }
+
+    /**
+     * @param retainAfterPublish Sets entry of  the checkbox retainAfterPublish.
+     */
+    public void setRetainAfterPublish(final boolean retainAfterPublish) {
+        this.retainAfterPublish = retainAfterPublish;
+    }
+
+    /**
+     * @return Whether the retention policy is applied to all applications once a day.
+     */
+    public boolean isRetainPeriodically() {
+        return this.retainPeriodically;
+    }
+
+    /**
+     * @param retainPeriodically Sets entry of  the checkbox retainPeriodically.
+     */
+    public void setRetainPeriodically(final boolean retainPeriodically) {
+        this.retainPeriodically = retainPeriodically;
+    }
+
+    /**
+     * @return The configured retention policy, or <code>null</code> if no rule is enabled.
+     */
+    public RetentionPolicy getRetentionPolicy() {
+        final RetentionPolicy policy = new RetentionPolicy(this.keepPerStatus, this.keepDays, !this.deleteExpired);
+        return policy.isEnabled() ? policy : null;
+    }
 }
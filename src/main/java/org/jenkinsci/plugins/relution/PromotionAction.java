@@ -0,0 +1,204 @@
+package org.jenkinsci.plugins.relution;
+
+import hudson.model.Action;
+import hudson.model.Item;
+import hudson.model.Run;
+
+import org.apache.commons.lang.StringUtils;
+import org.jenkinsci.plugins.relution.entities.ApiEndpoint;
+import org.jenkinsci.plugins.relution.entities.ReleaseStatus;
+import org.jenkinsci.plugins.relution.json.ApiVersion;
+import org.jenkinsci.plugins.relution.net.RequestFactory;
+import org.kohsuke.stapler.HttpResponse;
+import org.kohsuke.stapler.HttpResponses;
+import org.kohsuke.stapler.Stapler;
+import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.interceptor.RequirePOST;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import jenkins.model.Jenkins;
+
+
+/**
+ * Lists the versions a build has published on the build page and allows to change their release
+ * status without publishing them again.
+ * <p/>
+ * Only the URL, organization and user name of an endpoint are recorded with the build. The
+ * password is taken from the endpoint of the global configuration when a version is promoted.
+ */
+public class PromotionAction implements Action {
+
+    private final List<Published> versions = new ArrayList<Published>();
+
+    @SuppressWarnings("rawtypes")
+    private transient Run         build;
+
+    /**
+     * Records that the specified version has been published by the build.
+     * @param build The build that published the version.
+     * @param endpoint The endpoint the version has been published to.
+     * @param internalName The package name or bundle identifier of the application, may be
+     * <code>null</code> if unknown.
+     * @param version The published version.
+     */
+    @SuppressWarnings("rawtypes")
+    public static void record(final Run build, final ApiEndpoint endpoint, final String internalName, final ApiVersion version) {
+
+        synchronized (build) {
+            PromotionAction action = build.getAction(PromotionAction.class);
+
+            if (action == null) {
+                action = new PromotionAction();
+                build.addAction(action);
+            }
+            action.build = build;
+            action.add(new Published(endpoint, internalName, version));
+        }
+    }
+
+    private synchronized void add(final Published published) {
+        this.versions.add(published);
+    }
+
+    /**
+     * @return The versions published by the build.
+     */
+    public synchronized List<Published> getVersions() {
+        return Collections.unmodifiableList(new ArrayList<Published>(this.versions));
+    }
+
+    /**
+     * @return The release statuses a version can be promoted to.
+     */
+    public ReleaseStatus[] getStatuses() {
+        return ReleaseStatus.STATUSES;
+    }
+
+    @Override
+    public String getIconFileName() {
+        return "star.png";
+    }
+
+    @Override
+    public String getDisplayName() {
+        return "Relution Versions";
+    }
+
+    @Override
+    public String getUrlName() {
+        return "relution";
+    }
+
+    /**
+     * Sets the release status of a published version. Expects the parameters <code>index</code>,
+     * the index of the version in {@link #getVersions()}, and <code>releaseStatus</code>.
+     */
+    @RequirePOST
+    public HttpResponse doPromote(final StaplerRequest request) throws IOException {
+
+        @SuppressWarnings("rawtypes")
+        final Run build = this.getBuild();
+
+        if (build == null) {
+            throw new IOException("Build not found");
+        }
+        build.checkPermission(Item.BUILD);
+
+        final Published published = this.getVersion(request.getParameter("index"));
+        final String releaseStatus = request.getParameter("releaseStatus");
+
+        if (published == null || StringUtils.isBlank(releaseStatus)) {
+            throw new IOException("No version or release status specified");
+        }
+
+        final GlobalConfigurationImpl config = Jenkins.getInstance().getDescriptorByType(GlobalConfigurationImpl.class);
+        final ApiEndpoint endpoint = published.findEndpoint(config.getEndpoints());
+
+        if (endpoint == null) {
+            throw new IOException("The store " + published.url + " is no longer configured");
+        }
+
+        final RelutionCommunicator communicator = new RelutionCommunicator(
+                endpoint,
+                config.getProxyHost(),
+                config.getProxyPort(),
+                new RequestFactory());
+
+        new ReleasePromotion(communicator.getRequestFactory(), null).promote(published.appUuid, published.versionCode, releaseStatus);
+
+        synchronized (this) {
+            published.releaseStatus = releaseStatus;
+        }
+        build.save();
+        return HttpResponses.redirectToDot();
+    }
+
+    /**
+     * @return The build the action belongs to, or <code>null</code> if it is not known.
+     */
+    @SuppressWarnings("rawtypes")
+    public Run getBuild() {
+
+        if (this.build == null && Stapler.getCurrentRequest() != null) {
+            this.build = Stapler.getCurrentRequest().findAncestorObject(Run.class);
+        }
+        return this.build;
+    }
+
+    private synchronized Published getVersion(final String index) {
+
+        try {
+            final int i = Integer.parseInt(index);
+            return (i >= 0 && i < this.versions.size()) ? this.versions.get(i) : null;
+
+        } catch (final NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * A version published by the build.
+     */
+    public static class Published {
+
+        public final String url;
+        public final String organization;
+        public final String username;
+
+        public final String appUuid;
+        public final String internalName;
+        public final String versionName;
+        public final int    versionCode;
+
+        public String       releaseStatus;
+
+        Published(final ApiEndpoint endpoint, final String internalName, final ApiVersion version) {
+            this.url = endpoint.getUrl();
+            this.organization = endpoint.getOrganization();
+            this.username = endpoint.getUsername();
+
+            this.appUuid = version.appUuid;
+            this.internalName = internalName;
+            this.versionName = version.versionName;
+            this.versionCode = version.versionCode;
+
+            this.releaseStatus = version.releaseStatus;
+        }
+
+        ApiEndpoint findEndpoint(final List<ApiEndpoint> endpoints) {
+
+            for (final ApiEndpoint endpoint : endpoints) {
+                if (StringUtils.equals(this.url, endpoint.getUrl())
+                        && StringUtils.equals(this.organization, endpoint.getOrganization())
+                        && StringUtils.equals(this.username, endpoint.getUsername())) {
+                    return endpoint;
+                }
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,295 @@
+package org.jenkinsci.plugins.relution;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.http.HttpStatus;
+import org.jenkinsci.plugins.relution.entities.ApiEndpoint;
+import org.jenkinsci.plugins.relution.json.ApiApp;
+import org.jenkinsci.plugins.relution.json.ApiResponse;
+import org.jenkinsci.plugins.relution.json.ApiVersion;
+import org.jenkinsci.plugins.relution.net.CatalogIterator;
+import org.jenkinsci.plugins.relution.net.CatalogIterator.CatalogException;
+import org.jenkinsci.plugins.relution.net.CatalogQuery;
+import org.jenkinsci.plugins.relution.net.Request;
+import org.jenkinsci.plugins.relution.net.RequestFactory;
+import org.jenkinsci.plugins.relution.net.ResponseParser;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+
+/**
+ * Changes the release status or change log of a version that has already been published, e.g.
+ * from <code>DEVELOPMENT</code> to <code>RELEASE</code>. The version is looked up by its
+ * application and version code and updated in place, its file is not uploaded or analyzed again.
+ * Only the changed properties are sent, unless the server does not support partial updates.
+ * <p/>
+ * Instances are thread-safe, several versions may be updated at the same time.
+ */
+public class ReleasePromotion {
+
+    private final static ResponseParser<ApiResponse> PARSER          = new ResponseParser<ApiResponse>() {
+
+        @Override
+        public ApiResponse parse(final Reader reader) {
+            return ApiResponse.fromJson(reader);
+        }
+    };
+
+    /**
+     * The language of the change log of a version that has neither a name nor a change log.
+     */
+    private final static String                      DEFAULT_LOCALE  = "en";
+
+    /**
+     * Whether the endpoints support partial updates of versions, endpoints that have not been
+     * updated yet are not contained.
+     */
+    private final static Map<ApiEndpoint, Boolean>   PATCH_SUPPORTED = new ConcurrentHashMap<ApiEndpoint, Boolean>();
+
+    private final RequestFactory                     mRequestFactory;
+    private final PrintStream                        mLogger;
+
+    /**
+     * Creates a promotion that sends its requests through the specified factory.
+     * @param requestFactory The factory of the endpoint the version has been published to.
+     * @param logger The stream progress is logged to, may be <code>null</code>.
+     */
+    public ReleasePromotion(final RequestFactory requestFactory, final PrintStream logger) {
+        this.mRequestFactory = requestFactory;
+        this.mLogger = logger;
+    }
+
+    /**
+     * Sets the release status of the specified version.
+     * @param appUuid The UUID of the application.
+     * @param versionCode The version code of the version.
+     * @param releaseStatus The new release status, one of {@link
+     * org.jenkinsci.plugins.relution.entities.ReleaseStatus#STATUSES}.
+     * @return <code>true</code> if the version has been updated, <code>false</code> if it
+     * already had the release status.
+     * @throws IOException The version does not exist or could not be updated.
+     */
+    public boolean promote(final String appUuid, final int versionCode, final String releaseStatus) throws IOException {
+
+        if (StringUtils.isBlank(appUuid) || StringUtils.isBlank(releaseStatus)) {
+            throw new IllegalArgumentException("Application UUID and release status are required");
+        }
+
+        final ApiVersion version = this.getVersion(appUuid, versionCode);
+
+        if (version == null) {
+            throw new IOException(String.format("Version %d of application %s does not exist", versionCode, appUuid));
+        }
+        return this.update(version, releaseStatus, null);
+    }
+
+    /**
+     * Returns the versions with the specified version code of all applications with the
+     * specified internal name, e.g. of the Android and the iOS application.
+     * @param internalName The package name or bundle identifier of the application.
+     * @param versionCode The version code of the version.
+     * @return The versions, their <code>appUuid</code> is set. The list is empty if no
+     * application has the version.
+     * @throws IOException The applications could not be retrieved.
+     */
+    public List<ApiVersion> find(final String internalName, final int versionCode) throws IOException {
+
+        final CatalogQuery query = new CatalogQuery().internalName(internalName);
+        final CatalogIterator apps = new CatalogIterator(this.mRequestFactory, query);
+        final List<ApiVersion> versions = new ArrayList<ApiVersion>();
+
+        try {
+            while (apps.hasNext()) {
+                final ApiApp app = apps.next();
+
+                if (!internalName.equals(app.internalName)) {
+                    continue;
+                }
+
+                for (final ApiVersion version : app.versions) {
+                    if (version.versionCode == versionCode) {
+                        version.appUuid = app.uuid;
+                        version.markClean();
+                        versions.add(version);
+                    }
+                }
+            }
+
+        } catch (final CatalogException e) {
+            throw new IOException(String.format("Failed to retrieve application %s: %s", internalName, e.getMessage()),
+                    e.getCause() != null ? e.getCause() : e);
+
+        } finally {
+            apps.close();
+        }
+        return versions;
+    }
+
+    /**
+     * Sets the release status and change log of the specified version, if they differ.
+     * @param version A version retrieved from the server, its <code>appUuid</code> must be set.
+     * @param releaseStatus The new release status, or <code>null</code> to keep the status.
+     * @param changelog The new change log, or <code>null</code> to keep the change log. The
+     * change log is set for every language of the version.
+     * @return <code>true</code> if the version has been updated, <code>false</code> if it
+     * already had the release status and change log.
+     * @throws IOException The version could not be updated.
+     */
+    public boolean update(final ApiVersion version, final String releaseStatus, final String changelog) throws IOException {
+
+        final boolean promote = !StringUtils.isBlank(releaseStatus) && !releaseStatus.equals(version.releaseStatus);
+        final boolean describe = changelog != null && !this.hasChangelog(version, changelog);
+
+        if (!promote && !describe) {
+            this.log("Version %s (%d) of %s is up to date", version.versionName, version.versionCode, version.appUuid);
+            return false;
+        }
+
+        if (promote) {
+            this.log("Promoting version %s (%d) of %s from %s to %s...", version.versionName, version.versionCode, version.appUuid,
+                    version.releaseStatus, releaseStatus);
+            version.releaseStatus = releaseStatus;
+        }
+
+        if (describe) {
+            this.log("Updating change log of version %s (%d) of %s...", version.versionName, version.versionCode, version.appUuid);
+            this.setChangelog(version, changelog);
+        }
+
+        final ApiResponse response = this.save(version);
+
+        if (response == null || response.status != 0) {
+            throw new IOException(String.format("Failed to update version %d of application %s: %s", version.versionCode, version.appUuid,
+                    response != null ? response.message : "no response"));
+        }
+
+        this.log("Version %s (%d) of %s updated", version.versionName, version.versionCode, version.appUuid);
+        return true;
+    }
+
+    /**
+     * Sends only the changed properties of the version if the endpoint is not known to not support
+     * partial updates, otherwise the complete version. If the endpoint responds to the partial
+     * update with <code>405 Method Not Allowed</code> or <code>501 Not Implemented</code>, the
+     * complete version is sent instead and the endpoint is remembered as not supporting partial
+     * updates. Any other error is returned to the caller.
+     */
+    private ApiResponse save(final ApiVersion version) throws IOException {
+
+        final ApiEndpoint endpoint = this.mRequestFactory.getEndpoint();
+        final JsonObject changes = version.getChanges();
+
+        if (changes == null || Boolean.FALSE.equals(PATCH_SUPPORTED.get(endpoint))) {
+            return this.send(this.mRequestFactory.createVersionUpdateRequest(version));
+        }
+
+        final Request request = this.mRequestFactory.createVersionPatchRequest(version, changes);
+        ApiResponse response;
+
+        try {
+            response = this.send(request);
+        } catch (final JsonParseException e) {
+            response = null;
+        }
+
+        final int status = request.getStatusCode();
+
+        if (status != HttpStatus.SC_METHOD_NOT_ALLOWED && status != HttpStatus.SC_NOT_IMPLEMENTED) {
+            if (response != null && response.status == 0) {
+                PATCH_SUPPORTED.put(endpoint, Boolean.TRUE);
+            }
+            return response;
+        }
+
+        this.log("Partial updates are not supported by the server (%d), sending the complete version", status);
+        PATCH_SUPPORTED.put(endpoint, Boolean.FALSE);
+        return this.send(this.mRequestFactory.createVersionUpdateRequest(version));
+    }
+
+    private boolean hasChangelog(final ApiVersion version, final String changelog) {
+
+        if (version.changelog.isEmpty()) {
+            return false;
+        }
+
+        for (final String text : version.changelog.values()) {
+            if (!changelog.equals(text)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Sets the change log for every language the version has a change log or name in.
+     */
+    private void setChangelog(final ApiVersion version, final String changelog) {
+
+        final Set<String> locales = new HashSet<String>(version.changelog.keySet());
+        locales.addAll(version.name.keySet());
+
+        if (locales.isEmpty()) {
+            locales.add(DEFAULT_LOCALE);
+        }
+
+        for (final String locale : locales) {
+            version.changelog.put(locale, changelog);
+        }
+    }
+
+    private ApiVersion getVersion(final String appUuid, final int versionCode) throws IOException {
+
+        final CatalogQuery query = new CatalogQuery().filter(CatalogQuery.FIELD_UUID, appUuid);
+        final ApiResponse response = this.send(this.mRequestFactory.createAppStoreItemsRequest(query, 0, 1));
+
+        if (response == null || response.status != 0) {
+            throw new IOException(String.format("Failed to retrieve application %s: %s", appUuid,
+                    response != null ? response.message : "no response"));
+        }
+
+        for (final ApiApp app : response.results) {
+            if (!appUuid.equals(app.uuid)) {
+                continue;
+            }
+
+            for (final ApiVersion version : app.versions) {
+                if (version.versionCode == versionCode) {
+                    version.appUuid = appUuid;
+                    version.markClean();
+                    return version;
+                }
+            }
+        }
+        return null;
+    }
+
+    private ApiResponse send(final Request request) throws IOException {
+
+        try {
+            return this.mRequestFactory.send(request, PARSER);
+
+        } catch (final URISyntaxException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private void log(final String format, final Object... args) {
+
+        if (this.mLogger != null) {
+            final String text = String.format(format, args);
+            final String message = String.format("[Relution Publisher] %s", text);
+            this.mLogger.println(message);
+        }
+    }
+}
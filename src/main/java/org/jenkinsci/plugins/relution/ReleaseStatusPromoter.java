@@ -0,0 +1,216 @@
+package org.jenkinsci.plugins.relution;
+
+import hudson.EnvVars;
+import hudson.Extension;
+import hudson.Launcher;
+import hudson.model.BuildListener;
+import hudson.model.Result;
+import hudson.model.AbstractBuild;
+import hudson.model.AbstractProject;
+import hudson.tasks.BuildStepDescriptor;
+import hudson.tasks.Builder;
+import hudson.util.FormValidation;
+import hudson.util.ListBoxModel;
+
+import org.apache.commons.lang.StringUtils;
+import org.jenkinsci.plugins.relution.entities.ApiEndpoint;
+import org.jenkinsci.plugins.relution.entities.ReleaseStatus;
+import org.jenkinsci.plugins.relution.net.RequestFactory;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.QueryParameter;
+
+import java.io.IOException;
+import java.util.List;
+
+import javax.inject.Inject;
+
+
+/**
+ * Build step that changes the release status of a version that has already been published,
+ * without uploading its file again. The application UUID and version code may contain build
+ * variables, e.g. the parameters of a parameterized build.
+ */
+public class ReleaseStatusPromoter extends Builder {
+
+    private String            apiEndpointJson;
+
+    private final String      appUuid;
+    private final String      versionCode;
+    private final String      releaseStatus;
+
+    /**
+     * Constructor.
+     * @param apiEndpoint Reference to the endpoint the version has been published to.
+     * @param appUuid The UUID of the application.
+     * @param versionCode The version code of the version.
+     * @param releaseStatus The release status the version is promoted to.
+     */
+    @DataBoundConstructor
+    public ReleaseStatusPromoter(final String apiEndpoint, final String appUuid, final String versionCode, final String releaseStatus) {
+        this.apiEndpointJson = ApiEndpoint.toReference(apiEndpoint);
+
+        this.appUuid = appUuid;
+        this.versionCode = versionCode;
+        this.releaseStatus = releaseStatus;
+    }
+
+    /**
+     * @return Reference to the endpoint the version has been published to.
+     */
+    public String getApiEndpoint() {
+        return this.apiEndpointJson;
+    }
+
+    /**
+     * Drops the password from the endpoint of a job that was saved by an earlier version.
+     */
+    protected Object readResolve() {
+        this.apiEndpointJson = ApiEndpoint.toReference(this.apiEndpointJson);
+        return this;
+    }
+
+    /**
+     * @return The UUID of the application.
+     */
+    public String getAppUuid() {
+        return this.appUuid;
+    }
+
+    /**
+     * @return The version code of the version.
+     */
+    public String getVersionCode() {
+        return this.versionCode;
+    }
+
+    /**
+     * @return The release status the version is promoted to.
+     */
+    public String getReleaseStatus() {
+        return this.releaseStatus;
+    }
+
+    @Override
+    @SuppressWarnings("rawtypes")
+    public boolean perform(final AbstractBuild build, final Launcher launcher, final BuildListener listener) throws IOException,
+            InterruptedException {
+
+        final EnvVars env = build.getEnvironment(listener);
+        final String appUuid = env.expand(this.appUuid);
+        final String versionCode = env.expand(this.versionCode);
+        final GlobalConfigurationImpl config = this.getDescriptor().getGlobalConfiguration();
+
+        final ApiEndpoint apiEndpoint = config.findEndpoint(this.apiEndpointJson);
+
+        if (apiEndpoint == null) {
+            listener.getLogger().println("[Relution Publisher]: ERROR - No store selected or the store is no longer configured");
+            build.setResult(Result.FAILURE);
+            return false;
+        }
+
+        final RelutionCommunicator communicator = new RelutionCommunicator(
+                apiEndpoint,
+                config.getProxyHost(),
+                config.getProxyPort(),
+                new RequestFactory());
+
+        final RequestFactory requestFactory = communicator.getRequestFactory();
+        requestFactory.setLogger(listener.getLogger());
+
+        try {
+            final int code = Integer.parseInt(StringUtils.trim(versionCode));
+            new ReleasePromotion(requestFactory, listener.getLogger()).promote(StringUtils.trim(appUuid), code, this.releaseStatus);
+            return true;
+
+        } catch (final NumberFormatException e) {
+            listener.getLogger().println("[Relution Publisher]: ERROR - Invalid version code: " + versionCode);
+
+        } catch (final IllegalArgumentException e) {
+            listener.getLogger().println("[Relution Publisher]: ERROR - " + e.getMessage());
+
+        } catch (final IOException e) {
+            listener.getLogger().println("[Relution Publisher]: " + e.getMessage());
+        }
+
+        build.setResult(Result.FAILURE);
+        return false;
+    }
+
+    @Override
+    public DescriptorImpl getDescriptor() {
+        return (DescriptorImpl) super.getDescriptor();
+    }
+
+    /**
+     * Descriptor for {@link ReleaseStatusPromoter}. Used as a singleton.
+     */
+    @Extension
+    public static final class DescriptorImpl extends BuildStepDescriptor<Builder> {
+
+        /**
+         * Necessary Object to read the values entered in the GlobalConfigurationScreen.
+         */
+        @Inject
+        GlobalConfigurationImpl globalConfiguration;
+
+        @Override
+        @SuppressWarnings("rawtypes")
+        public boolean isApplicable(final Class<? extends AbstractProject> aClass) {
+            return true;
+        }
+
+        @Override
+        public String getDisplayName() {
+            return Messages.Relution_promoteDisplayName();
+        }
+
+        /**
+         * @return Actual GlobalConfiguration that contributes to the system configuration page.
+         */
+        public GlobalConfigurationImpl getGlobalConfiguration() {
+            return this.globalConfiguration;
+        }
+
+        public FormValidation doCheckAppUuid(@QueryParameter final String value) {
+
+            if (StringUtils.isBlank(value)) {
+                return FormValidation.error("Please enter the UUID of the application");
+            }
+            return FormValidation.ok();
+        }
+
+        public FormValidation doCheckVersionCode(@QueryParameter final String value) {
+
+            if (StringUtils.isBlank(value)) {
+                return FormValidation.error("Please enter the version code");
+            }
+
+            if (!value.contains("$") && !value.trim().matches("\\d+")) {
+                return FormValidation.error("The version code must be a number or a build variable");
+            }
+            return FormValidation.ok();
+        }
+
+        /**
+         * @return List of URLs which are entered in the GlobalConfigurationScreen
+         */
+        public ListBoxModel doFillApiEndpointItems() {
+            final List<ApiEndpoint> endpoints = this.globalConfiguration.getEndpoints();
+            final ListBoxModel items = new ListBoxModel();
+
+            for (final ApiEndpoint endpoint : endpoints) {
+                items.add(endpoint.toString(), endpoint.toReference());
+            }
+            return items;
+        }
+
+        /**
+         * @return List of ReleaseStatuses the version can be promoted to.
+         */
+        public ListBoxModel doFillReleaseStatusItems() {
+            final ListBoxModel items = new ListBoxModel();
+            ReleaseStatus.fill(items);
+            return items;
+        }
+    }
+}
@@ -34,7 +34,6 @@ import org.apache.commons.lang.StringUtils;
 import org.apache.http.HttpHost;
 import org.apache.http.ParseException;
 import org.apache.http.client.ClientProtocolException;
-import org.apache.http.impl.client.BasicCookieStore;
 import org.apache.tools.ant.types.FileSet;
 import org.jenkinsci.plugins.relution.entities.ApiEndpoint;
 import org.jenkinsci.plugins.relution.net.Request;
@@ -81,7 +80,6 @@ public class RelutionCommunicator {
      */
     public RelutionCommunicator(final ApiEndpoint endpoint, final String proxyHost, final int proxyPort, final RequestFactory requestFactory) {
         requestFactory.setEndpoint(endpoint);
-        requestFactory.setRelutionCookieStore(new BasicCookieStore());
 
         if (proxyHost != null && !StringUtils.isEmpty(proxyHost)
                 && proxyPort > 0) {
@@ -39,7 +39,9 @@ import hudson.tasks.Recorder;
 import hudson.util.FormValidation;
 
 import org.apache.commons.lang.StringUtils;
+import org.jenkinsci.plugins.relution.cache.PublishLedger;
 import org.jenkinsci.plugins.relution.entities.ApiEndpoint;
+import org.jenkinsci.plugins.relution.entities.RetentionPolicy;
 import org.jenkinsci.plugins.relution.net.RequestFactory;
 import org.kohsuke.stapler.DataBoundConstructor;
 import org.kohsuke.stapler.QueryParameter;
@@ -47,28 +49,48 @@ import org.kohsuke.stapler.QueryParameter;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import javax.inject.Inject;
 
+import jenkins.model.Jenkins;
+
 
 @SuppressWarnings("rawtypes")
 public class RelutionPublisher extends Recorder {
 
-    private List<Application>   applications = Collections.emptyList();
-    private final static String UUIDPattern  = "^[0-9a-fA-F]{8}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{12}$";
-    private final static String LOGIN_REGEX  = "([^:]*)";
+    private List<Application>   applications    = Collections.emptyList();
+    private boolean             parallel;
+    private boolean             skipDuplicates;
+
+    private final static String UUIDPattern     = "^[0-9a-fA-F]{8}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{12}$";
+    private final static String LOGIN_REGEX     = "([^:]*)";
+
+    /**
+     * The maximum number of applications that are published at the same time in parallel mode.
+     */
+    private final static int    MAX_PARALLEL    = 4;
 
     /**
      * Constructor.
      *  
-     * @param applicationFile
-     * @param applicationUUID
+     * @param applications
+     * @param parallel publish to all configured endpoints at the same time
+     * @param skipDuplicates skip artifacts whose content has already been published
      */
     @DataBoundConstructor
-    public RelutionPublisher(final List<Application> applications) {
+    public RelutionPublisher(final List<Application> applications, final boolean parallel, final boolean skipDuplicates) {
         this.getDescriptor().setInstances(applications);
         this.applications = applications;
+        this.parallel = parallel;
+        this.skipDuplicates = skipDuplicates;
     }
 
     /**
@@ -80,6 +102,22 @@ public class RelutionPublisher extends Recorder {
         return this.applications;
     }
 
+    /**
+     * @return <code>true</code> if the applications are published to their endpoints in
+     * parallel, <code>false</code> if they are published one after another.
+     */
+    public boolean isParallel() {
+        return this.parallel;
+    }
+
+    /**
+     * @return <code>true</code> if an artifact whose content has already been published to an
+     * endpoint is not published again, <code>false</code> if only its upload is skipped.
+     */
+    public boolean isSkipDuplicates() {
+        return this.skipDuplicates;
+    }
+
     /**
      * These method is the main entry point for the build-execution
      * If the build with the actual number is already build without success the build will skipped
@@ -115,7 +153,6 @@ public class RelutionPublisher extends Recorder {
             return true;
         }
 
-        final FilePath workspace = build.getWorkspace();
         for (final Application application : this.applications) {
 
             // Check that a file name pattern has been given
@@ -133,8 +170,20 @@ public class RelutionPublisher extends Recorder {
 
                 return false;
             }
+        }
 
-            final ApplicationFileCallable file = new ApplicationFileCallable(build, listener, communicators, application);
+        final FilePath workspace = build.getWorkspace();
+        final PublishLedger ledger = PublishLedger.getInstance(Jenkins.getInstance().getRootDir());
+        final WorkspaceScan scan = workspace.act(WorkspaceScan.scanner(this.applications));
+        final RetentionPolicy retention = config.isRetainAfterPublish() ? config.getRetentionPolicy() : null;
+
+        if (this.parallel && this.applications.size() > 1) {
+            return this.publishParallel(build, listener, workspace, communicators, scan, ledger, retention);
+        }
+
+        for (final Application application : this.applications) {
+            final ApplicationFileCallable file = new ApplicationFileCallable(build, listener, communicators, application, scan, ledger,
+                    this.skipDuplicates, retention);
 
             workspace.act(file);
         }
@@ -142,6 +191,76 @@ public class RelutionPublisher extends Recorder {
         return true;
     }
 
+    /**
+     * Publishes all applications at the same time, at most {@link #MAX_PARALLEL} at once. A slow
+     * or failing endpoint does not delay or abort the publication to the other endpoints. The
+     * result of each publication is logged once all of them have completed.
+     */
+    private boolean publishParallel(final AbstractBuild build, final BuildListener listener, final FilePath workspace,
+            final List<RelutionCommunicator> communicators, final WorkspaceScan scan, final PublishLedger ledger,
+            final RetentionPolicy retention) throws IOException, InterruptedException {
+
+        final int threads = Math.min(this.applications.size(), MAX_PARALLEL);
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        final Map<Application, Future<Boolean>> futures = new LinkedHashMap<Application, Future<Boolean>>();
+
+        listener.getLogger().println(String.format(
+                "[Relution Publisher]: Publishing to %d endpoints, %d at a time",
+                this.applications.size(),
+                threads));
+
+        try {
+            for (final Application application : this.applications) {
+                final ApplicationFileCallable file = new ApplicationFileCallable(build, listener, communicators, application, scan,
+                        ledger, this.skipDuplicates, retention);
+
+                futures.put(application, executor.submit(new Callable<Boolean>() {
+
+                    @Override
+                    public Boolean call() throws Exception {
+                        return workspace.act(file);
+                    }
+                }));
+            }
+
+            int published = 0;
+            for (final Application application : futures.keySet()) {
+
+                if (this.await(futures.get(application), listener)) {
+                    listener.getLogger().println("[Relution Publisher]: Published " + application.toString());
+                    published++;
+                } else {
+                    listener.getLogger().println("[Relution Publisher]: Failed to publish " + application.toString());
+                }
+            }
+
+            listener.getLogger().println(String.format(
+                    "[Relution Publisher]: Published to %d of %d endpoints",
+                    published,
+                    futures.size()));
+
+            if (published < futures.size()) {
+                build.setResult(Result.FAILURE);
+            }
+
+        } finally {
+            executor.shutdownNow();
+        }
+
+        return true;
+    }
+
+    private boolean await(final Future<Boolean> future, final BuildListener listener) throws InterruptedException {
+
+        try {
+            return Boolean.TRUE.equals(future.get());
+
+        } catch (final ExecutionException e) {
+            listener.getLogger().println("[Relution Publisher]: " + e.getCause());
+            return false;
+        }
+    }
+
     @Override
     public DescriptorImpl getDescriptor() {
         return (DescriptorImpl) super.getDescriptor();
@@ -0,0 +1,71 @@
+package org.jenkinsci.plugins.relution;
+
+import hudson.Extension;
+import hudson.model.AsyncPeriodicWork;
+import hudson.model.TaskListener;
+
+import org.jenkinsci.plugins.relution.cache.PublishLedger;
+import org.jenkinsci.plugins.relution.entities.ApiEndpoint;
+import org.jenkinsci.plugins.relution.entities.RetentionPolicy;
+import org.jenkinsci.plugins.relution.net.RequestFactory;
+
+import java.io.IOException;
+
+import javax.inject.Inject;
+
+import jenkins.model.Jenkins;
+
+
+/**
+ * Applies the configured {@link RetentionPolicy} to all applications of the stores of the
+ * configured endpoints once a day, if enabled in the global configuration.
+ */
+@Extension
+public class RetentionTask extends AsyncPeriodicWork {
+
+    /**
+     * Necessary Object to read the values entered in the GlobalConfigurationScreen.
+     */
+    @Inject
+    GlobalConfigurationImpl globalConfiguration;
+
+    public RetentionTask() {
+        super("Relution Version Retention");
+    }
+
+    @Override
+    public long getRecurrencePeriod() {
+        return DAY;
+    }
+
+    @Override
+    protected void execute(final TaskListener listener) throws IOException, InterruptedException {
+
+        if (this.globalConfiguration == null || !this.globalConfiguration.isRetainPeriodically()) {
+            return;
+        }
+
+        final RetentionPolicy policy = this.globalConfiguration.getRetentionPolicy();
+
+        if (policy == null) {
+            return;
+        }
+
+        final PublishLedger ledger = PublishLedger.getInstance(Jenkins.getInstance().getRootDir());
+
+        for (final ApiEndpoint endpoint : this.globalConfiguration.getEndpoints()) {
+            final RelutionCommunicator communicator = new RelutionCommunicator(
+                    endpoint,
+                    this.globalConfiguration.getProxyHost(),
+                    this.globalConfiguration.getProxyPort(),
+                    new RequestFactory());
+
+            try {
+                new VersionRetention(communicator.getRequestFactory(), listener.getLogger(), policy, ledger).applyAll();
+
+            } catch (final IOException e) {
+                listener.getLogger().println(String.format("[Relution Publisher]: Failed to apply retention policy to %s: %s", endpoint.getUrl(), e));
+            }
+        }
+    }
+}
@@ -0,0 +1,299 @@
+package org.jenkinsci.plugins.relution;
+
+import org.jenkinsci.plugins.relution.cache.AppIndex;
+import org.jenkinsci.plugins.relution.cache.PublishLedger;
+import org.jenkinsci.plugins.relution.entities.RetentionPolicy;
+import org.jenkinsci.plugins.relution.json.ApiApp;
+import org.jenkinsci.plugins.relution.json.ApiResponse;
+import org.jenkinsci.plugins.relution.json.ApiVersion;
+import org.jenkinsci.plugins.relution.net.CatalogIterator;
+import org.jenkinsci.plugins.relution.net.CatalogIterator.CatalogException;
+import org.jenkinsci.plugins.relution.net.CatalogQuery;
+import org.jenkinsci.plugins.relution.net.ClientPool;
+import org.jenkinsci.plugins.relution.net.Request;
+import org.jenkinsci.plugins.relution.net.RequestFactory;
+import org.jenkinsci.plugins.relution.net.ResponseFuture;
+import org.jenkinsci.plugins.relution.net.ResponseParser;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+
+/**
+ * Deletes the versions of the applications of an endpoint that are expired according to a
+ * {@link RetentionPolicy}.
+ * <p/>
+ * Only the properties of the applications that are needed to select the expired versions are
+ * listed. The expired versions are deleted in batches of as many versions as the endpoint has
+ * connections, at most one batch per {@link #BATCH_INTERVAL}, so the deletion of thousands of
+ * versions does not monopolize the store. In a dry run, the expired versions are only reported.
+ */
+public class VersionRetention {
+
+    /**
+     * The minimum time, in milliseconds, between the start of two batches of deletions.
+     */
+    public final static long                         BATCH_INTERVAL = 1000;
+
+    private final static ResponseParser<ApiResponse> PARSER         = new ResponseParser<ApiResponse>() {
+
+        @Override
+        public ApiResponse parse(final Reader reader) {
+            return ApiResponse.fromJson(reader);
+        }
+    };
+
+    private final RequestFactory                     mRequestFactory;
+    private final PrintStream                        mLogger;
+    private final RetentionPolicy                    mPolicy;
+    private final PublishLedger                      mLedger;
+    private final int                                mBatchSize;
+
+    private final List<Pending>                      mBatch         = new ArrayList<Pending>();
+    private final Map<String, Set<Integer>>          mRemoved       = new HashMap<String, Set<Integer>>();
+    private final StringBuilder                      mReport        = new StringBuilder();
+    private long                                     mBatchStarted;
+    private int                                      mExpired;
+    private int                                      mDeleted;
+
+    /**
+     * Creates a retention that sends its requests through the specified factory.
+     * @param requestFactory The factory of the endpoint whose versions are deleted.
+     * @param logger The stream progress is logged to.
+     * @param policy The policy that selects the versions to delete.
+     * @param ledger The ledger the deleted versions are removed from, may be <code>null</code>.
+     */
+    public VersionRetention(final RequestFactory requestFactory, final PrintStream logger, final RetentionPolicy policy,
+            final PublishLedger ledger) {
+        this.mRequestFactory = requestFactory;
+        this.mLogger = logger;
+        this.mPolicy = policy;
+        this.mLedger = ledger;
+        this.mBatchSize = ClientPool.get(requestFactory.getEndpoint()).getMaxConnections();
+    }
+
+    /**
+     * Applies the policy to the application with the specified UUID.
+     * @param appUuid The UUID of the application.
+     * @return The number of deleted versions, or of expired versions in a dry run.
+     * @throws IOException The application could not be listed.
+     * @throws InterruptedException The thread was interrupted while deleting versions.
+     */
+    public int apply(final String appUuid) throws IOException, InterruptedException {
+        return this.apply(createQuery().filter(CatalogQuery.FIELD_UUID, appUuid));
+    }
+
+    /**
+     * Applies the policy to all applications of the store.
+     * @return The number of deleted versions, or of expired versions in a dry run.
+     * @throws IOException The applications could not be listed.
+     * @throws InterruptedException The thread was interrupted while deleting versions.
+     */
+    public int applyAll() throws IOException, InterruptedException {
+        return this.apply(createQuery());
+    }
+
+    private static CatalogQuery createQuery() {
+
+        return new CatalogQuery().select(
+                CatalogQuery.FIELD_UUID,
+                CatalogQuery.FIELD_INTERNAL_NAME,
+                CatalogQuery.FIELD_PLATFORMS,
+                CatalogQuery.FIELD_VERSION_UUID,
+                CatalogQuery.FIELD_VERSION_CODE,
+                CatalogQuery.FIELD_VERSION_RELEASE_STATUS,
+                CatalogQuery.FIELD_VERSION_CREATION_DATE,
+                CatalogQuery.FIELD_VERSION_MODIFICATION_DATE);
+    }
+
+    private int apply(final CatalogQuery query) throws IOException, InterruptedException {
+
+        final Iterator<ApiApp> apps = new CatalogIterator(this.mRequestFactory, query);
+        final long now = System.currentTimeMillis();
+
+        this.mReport.setLength(0);
+        this.mRemoved.clear();
+        this.mExpired = 0;
+        this.mDeleted = 0;
+        this.log("Applying retention policy (%s)...", this.mPolicy);
+
+        try {
+            while (apps.hasNext()) {
+                final ApiApp app = apps.next();
+                final List<ApiVersion> expired = this.mPolicy.select(app, now);
+
+                if (expired.isEmpty()) {
+                    continue;
+                }
+
+                this.report(app, expired);
+                this.mExpired += expired.size();
+
+                if (this.mPolicy.isDryRun()) {
+                    continue;
+                }
+
+                for (final ApiVersion version : expired) {
+                    this.enqueue(app, version);
+                }
+            }
+            this.flush();
+
+        } catch (final CatalogException e) {
+            this.flush();
+            throw new IOException(e.getMessage(), e.getCause() != null ? e.getCause() : e);
+
+        } finally {
+            this.purge();
+        }
+
+        if (this.mPolicy.isDryRun()) {
+            this.log("Dry run, %d versions would be deleted:%s", this.mExpired, this.mReport);
+            return this.mExpired;
+        }
+
+        this.log("Deleted %d of %d expired versions:%s", this.mDeleted, this.mExpired, this.mReport);
+        return this.mDeleted;
+    }
+
+    private void report(final ApiApp app, final List<ApiVersion> expired) {
+
+        final StringBuilder codes = new StringBuilder();
+        for (final ApiVersion version : expired) {
+            codes.append(codes.length() > 0 ? ", " : "").append(version.versionCode);
+        }
+
+        this.mReport.append(String.format(Locale.ENGLISH, "%n    %-50s %d of %d versions: %s", app.internalName != null ? app.internalName
+                : app.uuid, expired.size(), app.versions.size(), codes));
+    }
+
+    private void enqueue(final ApiApp app, final ApiVersion version) throws InterruptedException {
+
+        if (this.mBatch.size() >= this.mBatchSize) {
+            this.flush();
+        }
+
+        if (this.mBatch.isEmpty()) {
+            final long wait = this.mBatchStarted + BATCH_INTERVAL - System.currentTimeMillis();
+
+            if (wait > 0) {
+                Thread.sleep(wait);
+            }
+            this.mBatchStarted = System.currentTimeMillis();
+        }
+
+        final Request request = this.mRequestFactory.createVersionDeleteRequest(app.uuid, version.uuid);
+        this.mBatch.add(new Pending(app, version, this.mRequestFactory.sendAsync(request, PARSER)));
+    }
+
+    /**
+     * Waits for the deletions of the current batch. The versions that have been deleted are
+     * recorded, so they can be removed from the index.
+     */
+    private void flush() throws InterruptedException {
+
+        try {
+            for (final Pending pending : this.mBatch) {
+                final String error = this.await(pending.future);
+
+                if (error == null) {
+                    this.removed(pending.app, pending.version);
+                    this.mDeleted++;
+                } else {
+                    this.log("Failed to delete version %d of %s: %s", pending.version.versionCode, pending.app.uuid, error);
+                }
+            }
+
+        } finally {
+            for (final Pending pending : this.mBatch) {
+                pending.future.cancel(true);
+            }
+            this.mBatch.clear();
+        }
+    }
+
+    /**
+     * Removes the deleted versions from the index and the ledger, so their content can be
+     * published again.
+     */
+    private void purge() {
+
+        if (this.mRemoved.isEmpty()) {
+            return;
+        }
+
+        AppIndex.remove(this.mRequestFactory.getEndpoint(), this.mRemoved);
+
+        if (this.mLedger != null) {
+            this.mLedger.removeVersions(this.mRequestFactory.getEndpoint(), this.mRemoved);
+        }
+    }
+
+    private void removed(final ApiApp app, final ApiVersion version) {
+        Set<Integer> codes = this.mRemoved.get(app.uuid);
+
+        if (codes == null) {
+            codes = new HashSet<Integer>();
+            this.mRemoved.put(app.uuid, codes);
+        }
+        codes.add(version.versionCode);
+    }
+
+    /**
+     * @return <code>null</code> if the version has been deleted, otherwise the error.
+     */
+    private String await(final ResponseFuture<ApiResponse> future) throws InterruptedException {
+
+        try {
+            final ApiResponse response = future.await();
+
+            // An empty response, e.g. 204 No Content, indicates success
+            return (response == null || response.status == 0) ? null : response.message;
+
+        } catch (final IOException e) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            return e.toString();
+
+        } catch (final URISyntaxException e) {
+            return e.toString();
+
+        } catch (final RuntimeException e) {
+            return e.toString();
+        }
+    }
+
+    private void log(final String format, final Object... args) {
+
+        final String text = String.format(format, args);
+        final String message = String.format("[Relution Publisher] %s", text);
+        this.mLogger.println(message);
+    }
+
+    /**
+     * A deletion that has been sent.
+     */
+    private static class Pending {
+
+        final ApiApp                      app;
+        final ApiVersion                  version;
+        final ResponseFuture<ApiResponse> future;
+
+        Pending(final ApiApp app, final ApiVersion version, final ResponseFuture<ApiResponse> future) {
+            this.app = app;
+            this.version = version;
+            this.future = future;
+        }
+    }
+}
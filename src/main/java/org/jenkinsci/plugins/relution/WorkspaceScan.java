@@ -0,0 +1,157 @@
+package org.jenkinsci.plugins.relution;
+
+import hudson.FilePath.FileCallable;
+import hudson.Util;
+import hudson.remoting.VirtualChannel;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.tools.ant.DirectoryScanner;
+import org.apache.tools.ant.types.selectors.SelectorUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+
+/**
+ * The files in a workspace that match the file patterns of a set of {@link Application}s.
+ * <p/>
+ * The workspace is scanned once for the artifact, icon, release notes and description patterns
+ * of all applications of a build together. The scanner only descends into directories that can
+ * contain a match of at least one pattern, so large workspaces are not traversed once for every
+ * pattern. The scan is created on the node that holds the workspace and is then shared by all
+ * publications of the build.
+ */
+public class WorkspaceScan implements Serializable {
+
+    private final Map<String, List<String>> mMatches;
+
+    private WorkspaceScan(final Map<String, List<String>> matches) {
+        this.mMatches = matches;
+    }
+
+    /**
+     * Creates the callable that scans a workspace for the patterns of the specified applications.
+     * @param applications The applications whose patterns to match.
+     * @return A {@link FileCallable} that returns the {@link WorkspaceScan} of the workspace it
+     * is invoked on.
+     */
+    public static FileCallable<WorkspaceScan> scanner(final List<Application> applications) {
+
+        final Set<String> patterns = new LinkedHashSet<String>();
+
+        for (final Application application : applications) {
+            patterns.add(application.getApplicationFile());
+            patterns.add(application.getApplicationIcon());
+            patterns.add(application.getApplicationReleaseNotes());
+            patterns.add(application.getApplicationDescription());
+        }
+        patterns.remove(null);
+        patterns.remove("");
+
+        return new Scanner(new ArrayList<String>(patterns));
+    }
+
+    /**
+     * Returns the relative paths of all files that match the specified pattern, in the order
+     * they have been found.
+     * @param pattern A comma-separated list of Ant patterns that has been scanned for.
+     * @return The matching paths, which may be empty.
+     */
+    public List<String> getIncludedFiles(final String pattern) {
+
+        final List<String> files = this.mMatches.get(pattern);
+
+        if (files == null) {
+            return Collections.emptyList();
+        }
+        return files;
+    }
+
+    /**
+     * Returns the first file that matches the specified pattern.
+     * @param baseDir The directory of the workspace that has been scanned.
+     * @param pattern A comma-separated list of Ant patterns that has been scanned for.
+     * @return The first matching {@link File}, or <code>null</code> if no file matches.
+     */
+    public File getFile(final File baseDir, final String pattern) {
+
+        final List<String> files = this.getIncludedFiles(pattern);
+
+        if (files.isEmpty()) {
+            return null;
+        }
+        return new File(baseDir, files.get(0));
+    }
+
+    /**
+     * Scans the workspace once for all patterns and assigns each included file to the patterns
+     * it matches.
+     */
+    private static class Scanner implements FileCallable<WorkspaceScan> {
+
+        private final List<String> mPatterns;
+
+        Scanner(final List<String> patterns) {
+            this.mPatterns = patterns;
+        }
+
+        @Override
+        public WorkspaceScan invoke(final File f, final VirtualChannel channel) throws IOException, InterruptedException {
+
+            final Map<String, List<String>> matches = new HashMap<String, List<String>>();
+
+            if (this.mPatterns.isEmpty() || !f.isDirectory()) {
+                return new WorkspaceScan(matches);
+            }
+
+            final DirectoryScanner scanner = Util.createFileSet(f, StringUtils.join(this.mPatterns, ",")).getDirectoryScanner();
+            final String[] included = scanner.getIncludedFiles();
+
+            for (final String pattern : this.mPatterns) {
+                final List<String> files = new ArrayList<String>();
+                final List<String> includes = normalize(pattern);
+
+                for (final String file : included) {
+                    if (matches(includes, file)) {
+                        files.add(file);
+                    }
+                }
+                matches.put(pattern, files);
+            }
+            return new WorkspaceScan(matches);
+        }
+
+        private static List<String> normalize(final String pattern) {
+
+            final List<String> includes = new ArrayList<String>();
+
+            for (final String include : StringUtils.split(pattern, ",")) {
+                String normalized = include.trim().replace('/', File.separatorChar).replace('\\', File.separatorChar);
+
+                if (normalized.endsWith(File.separator)) {
+                    normalized += "**";
+                }
+                includes.add(normalized);
+            }
+            return includes;
+        }
+
+        private static boolean matches(final List<String> includes, final String file) {
+
+            for (final String include : includes) {
+                if (SelectorUtils.matchPath(include, file)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,488 @@
+package org.jenkinsci.plugins.relution.cache;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
+import org.jenkinsci.plugins.relution.entities.ApiEndpoint;
+import org.jenkinsci.plugins.relution.json.ApiApp;
+import org.jenkinsci.plugins.relution.json.ApiVersion;
+import org.jenkinsci.plugins.relution.net.CatalogIterator.CatalogException;
+import org.jenkinsci.plugins.relution.net.CatalogQuery;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+
+/**
+ * An index of the applications in the store of an endpoint and the versions they already have.
+ * <p/>
+ * The index is built from a single traversal of the store and persisted in a memory-mapped
+ * {@link CatalogFile} in the <code>relution-index</code> directory, so it survives restarts and
+ * lookups do not load it into the heap. It is shared by all builds that publish to the endpoint,
+ * so a duplicate version can be detected before its file is uploaded.
+ * <p/>
+ * Versions published by this controller are added to the index as they are published, versions
+ * deleted by a retention policy are removed as they are deleted. Other changes are merged by
+ * synchronizing the index: only the applications modified since the most recent modification
+ * date in the index (the cursor) are listed. The index is built from a
+ * complete listing only if it is older than {@link #MAX_AGE}, so deleted applications are
+ * eventually removed, or if the store does not report modification dates. If the store ignores
+ * the modification date filter, synchronization is suspended until the index is built again.
+ * <p/>
+ * The store is listed without holding the lock of other endpoints, only one thread lists the
+ * store of an endpoint at a time.
+ */
+public class AppIndex {
+
+    /**
+     * The time after which the index is built again from a complete listing, in milliseconds.
+     */
+    public final static long                        MAX_AGE        = TimeUnit.DAYS.toMillis(1);
+
+    /**
+     * The time after which the index is synchronized before it is used, in milliseconds.
+     */
+    public final static long                        SYNC_INTERVAL  = TimeUnit.MINUTES.toMillis(5);
+
+    private final static String                     DIRECTORY_NAME = "relution-index";
+    private final static String                     FILE_EXTENSION = ".index";
+
+    private final static Logger                     LOGGER         = Logger.getLogger(AppIndex.class.getName());
+
+    private final static Map<ApiEndpoint, AppIndex> INDEXES        = new HashMap<ApiEndpoint, AppIndex>();
+    private final static Map<ApiEndpoint, Object>   LOCKS          = new HashMap<ApiEndpoint, Object>();
+
+    private static File                             sDirectory     = new File(System.getProperty("java.io.tmpdir"), DIRECTORY_NAME);
+
+    private final CatalogFile                       mFile;
+    private boolean                                 mSyncSuspended;
+
+    /**
+     * Lists the applications of a store.
+     */
+    public interface Loader {
+
+        /**
+         * @param query The projection, filter and sort order of the applications to list.
+         * @return An iterator over the applications of the store that match the query.
+         * @throws IOException
+         */
+        Iterator<ApiApp> load(CatalogQuery query) throws IOException;
+    }
+
+    private AppIndex(final CatalogFile file) {
+        this.mFile = file;
+    }
+
+    /**
+     * Sets the directory in which the index files are stored, a <code>relution-index</code>
+     * directory is created in the specified directory. By default, the temporary directory is
+     * used.
+     * @param rootDir The directory in which to store the index files.
+     */
+    public static void configure(final File rootDir) {
+
+        synchronized (INDEXES) {
+            final File directory = new File(rootDir, DIRECTORY_NAME);
+
+            if (!directory.equals(sDirectory)) {
+                sDirectory = directory;
+                INDEXES.clear();
+            }
+        }
+    }
+
+    /**
+     * Creates the query for the applications of the index, which selects only the properties
+     * that are retained.
+     */
+    private static CatalogQuery createQuery() {
+        return new CatalogQuery().select(CatalogQuery.FIELD_UUID, CatalogQuery.FIELD_INTERNAL_NAME, CatalogQuery.FIELD_PLATFORMS,
+                CatalogQuery.FIELD_MODIFICATION_DATE, CatalogQuery.FIELD_VERSION_CODE, CatalogQuery.FIELD_VERSION_MODIFICATION_DATE);
+    }
+
+    /**
+     * Returns the index of the specified endpoint. The index is read from its file if it has not
+     * been used since the start, built if it does not exist or has expired, and synchronized if
+     * it has not been synchronized for {@link #SYNC_INTERVAL}.
+     * @param endpoint The endpoint whose store is indexed.
+     * @param loader Lists the applications of the store if the index has to be built or
+     * synchronized.
+     * @return The {@link AppIndex} of the endpoint.
+     * @throws IOException if the store could not be listed or the index could not be written.
+     */
+    public static AppIndex get(final ApiEndpoint endpoint, final Loader loader) throws IOException {
+
+        final AppIndex index = open(endpoint, loader);
+
+        if (System.currentTimeMillis() - index.mFile.getSynced() >= SYNC_INTERVAL) {
+            index.sync(loader);
+        }
+        return index;
+    }
+
+    /**
+     * Synchronizes the index of the specified endpoint with the store, if the endpoint has been
+     * indexed.
+     * @param endpoint The endpoint whose store is indexed.
+     * @param loader Lists the applications of the store.
+     * @return The number of merged applications, or <code>-1</code> if the endpoint has not been
+     * indexed.
+     * @throws IOException if the store could not be listed or the index could not be written.
+     */
+    public static int sync(final ApiEndpoint endpoint, final Loader loader) throws IOException {
+
+        synchronized (INDEXES) {
+            if (!INDEXES.containsKey(endpoint) && !getFile(endpoint).isFile()) {
+                return -1;
+            }
+        }
+        return open(endpoint, loader).sync(loader);
+    }
+
+    private static AppIndex open(final ApiEndpoint endpoint, final Loader loader) throws IOException {
+
+        final Object lock;
+        final File file;
+
+        synchronized (INDEXES) {
+            final AppIndex index = INDEXES.get(endpoint);
+
+            if (index != null && index.isCurrent()) {
+                return index;
+            }
+
+            if (!LOCKS.containsKey(endpoint)) {
+                LOCKS.put(endpoint, new Object());
+            }
+            lock = LOCKS.get(endpoint);
+            file = getFile(endpoint);
+        }
+
+        // Builds of different endpoints do not block each other, concurrent builds of the same
+        // endpoint wait for the first one and use its index
+        synchronized (lock) {
+            AppIndex index;
+
+            synchronized (INDEXES) {
+                index = INDEXES.get(endpoint);
+            }
+
+            if (index == null) {
+                final CatalogFile existing = CatalogFile.open(file);
+                index = (existing != null) ? new AppIndex(existing) : null;
+            }
+
+            if (index == null || !index.isCurrent()) {
+                final CompactCatalog.Builder builder = new CompactCatalog.Builder();
+                final Iterator<ApiApp> apps = load(loader, createQuery());
+
+                try {
+                    while (apps.hasNext()) {
+                        builder.add(apps.next());
+                    }
+
+                } catch (final CatalogException e) {
+                    throw toIOException(e);
+                }
+                index = new AppIndex(CatalogFile.create(file, builder.build()));
+            }
+
+            synchronized (INDEXES) {
+                INDEXES.put(endpoint, index);
+            }
+            return index;
+        }
+    }
+
+    /**
+     * @return <code>true</code> if the index has not expired and does not have to be built again.
+     */
+    private boolean isCurrent() {
+
+        // Without a cursor the index cannot be synchronized, it is built again instead
+        final long maxAge = (this.mFile.getCursor() > 0) ? MAX_AGE : SYNC_INTERVAL;
+        return System.currentTimeMillis() - this.mFile.getCreated() < maxAge;
+    }
+
+    /**
+     * Merges the applications modified since the cursor. The cursor itself is included, so
+     * applications modified in the same millisecond are not missed, merging them again is
+     * harmless.
+     * <p/>
+     * A store that returns an application modified before the cursor ignores the filter and
+     * would list all applications every time. The listing is abandoned and synchronization is
+     * suspended, the index is kept up to date by building it again once it has expired.
+     */
+    private synchronized int sync(final Loader loader) throws IOException {
+
+        final long started = System.currentTimeMillis();
+        final long since = this.mFile.getCursor();
+        long cursor = since;
+        int merged = 0;
+
+        if (since == 0 || this.mSyncSuspended) {
+            return 0;
+        }
+
+        final CatalogQuery query = createQuery().modifiedSince(since).sort(CatalogQuery.FIELD_MODIFICATION_DATE, true);
+        final Iterator<ApiApp> apps = load(loader, query);
+
+        try {
+            while (apps.hasNext()) {
+                final ApiApp app = apps.next();
+
+                if (app.uuid == null) {
+                    continue;
+                }
+
+                if (getModificationDate(app) < since) {
+                    LOGGER.info("[Relution Publisher] The store ignores the modification date filter, synchronization suspended");
+                    this.mSyncSuspended = true;
+                    break;
+                }
+
+                cursor = Math.max(cursor, this.merge(app));
+                merged++;
+            }
+
+        } catch (final CatalogException e) {
+            // Keep the cursor, the merged applications are merged again by the next attempt
+            throw toIOException(e);
+        }
+
+        this.mFile.setSynced(cursor, started);
+        return merged;
+    }
+
+    /**
+     * Replaces the versions of the application in the index with its current versions.
+     * @return The most recent modification date of the application or its versions.
+     */
+    private long merge(final ApiApp app) throws IOException {
+
+        final int[] codes = new int[app.versions.size()];
+
+        for (int index = 0; index < codes.length; index++) {
+            codes[index] = app.versions.get(index).versionCode;
+        }
+
+        for (final String key : CatalogFile.keys(app.internalName, app.platforms.toArray(new String[app.platforms.size()]))) {
+            this.mFile.merge(key, app.uuid, codes);
+        }
+        return getModificationDate(app);
+    }
+
+    /**
+     * @return The most recent modification date of the application or its versions.
+     */
+    private static long getModificationDate(final ApiApp app) {
+
+        long modified = (app.modificationDate != null) ? app.modificationDate : 0;
+
+        for (final ApiVersion version : app.versions) {
+            modified = Math.max(modified, version.modificationDate != null ? version.modificationDate : 0);
+        }
+        return modified;
+    }
+
+    /**
+     * Removes deleted versions from the index of the specified endpoint, together with the
+     * content that has been published as one of them, so the content can be published again.
+     * Does nothing if the endpoint has not been indexed.
+     * @param endpoint The endpoint the versions have been deleted from.
+     * @param versionCodes The version codes of the deleted versions, by application UUID.
+     */
+    public static void remove(final ApiEndpoint endpoint, final Map<String, Set<Integer>> versionCodes) {
+
+        final AppIndex index;
+
+        synchronized (INDEXES) {
+            index = INDEXES.get(endpoint);
+        }
+
+        if (index == null || versionCodes.isEmpty()) {
+            return;
+        }
+
+        // Writes to the file are serialized by the file, a concurrent synchronization is not blocked
+        index.mFile.remove(versionCodes);
+    }
+
+    private static Iterator<ApiApp> load(final Loader loader, final CatalogQuery query) throws IOException {
+
+        try {
+            return loader.load(query);
+        } catch (final CatalogException e) {
+            throw toIOException(e);
+        }
+    }
+
+    private static IOException toIOException(final CatalogException e) {
+        final IOException exception = new IOException(e.getMessage());
+        exception.initCause(e.getCause() != null ? e.getCause() : e);
+        return exception;
+    }
+
+    /**
+     * Discards the index of the specified endpoint, so the next call to {@link #get} builds it
+     * again.
+     * @param endpoint The endpoint whose index to discard.
+     */
+    public static void invalidate(final ApiEndpoint endpoint) {
+
+        synchronized (INDEXES) {
+            final AppIndex index = INDEXES.remove(endpoint);
+
+            if (index != null) {
+                index.mFile.delete();
+            } else {
+                FileUtils.deleteQuietly(getFile(endpoint));
+            }
+        }
+    }
+
+    /**
+     * Returns the entry of the application with the specified internal name on the specified
+     * platform. An application that does not declare a platform matches any platform.
+     * @param internalName The internal name (package name or bundle identifier) of the application.
+     * @param platform The platform of the application.
+     * @return The {@link Entry}, or <code>null</code> if the store does not contain the application.
+     */
+    public Entry get(final String internalName, final String platform) {
+
+        final Entry entry = this.mFile.get(CatalogFile.key(internalName, platform));
+
+        if (entry != null) {
+            return entry;
+        }
+        return this.mFile.get(CatalogFile.key(internalName, null));
+    }
+
+    /**
+     * Returns the application and version the content with the specified digest has been
+     * published as by this controller since the index was built.
+     * @param digest The digest of the content.
+     * @return An {@link Entry} with the version code of the published version, or
+     * <code>null</code> if the content is unknown.
+     */
+    public Entry getPublished(final String digest) {
+        final Entry entry = this.mFile.get(CatalogFile.digestKey(digest));
+
+        // The version the content has been published as may have been deleted since
+        return (entry != null && entry.hasVersions()) ? entry : null;
+    }
+
+    /**
+     * Adds a version that has been published to the index of the specified endpoint, if the
+     * endpoint has been indexed. If the application is known to the index with a different UUID,
+     * the index is discarded.
+     * @param endpoint The endpoint the version has been published to.
+     * @param internalName The internal name of the application.
+     * @param platform The platform of the application.
+     * @param digest The digest of the published content, may be <code>null</code>.
+     * @param version The published version.
+     */
+    public static void put(final ApiEndpoint endpoint, final String internalName, final String platform, final String digest,
+            final ApiVersion version) {
+
+        synchronized (INDEXES) {
+            final AppIndex index = INDEXES.get(endpoint);
+
+            if (index == null || internalName == null || version.appUuid == null) {
+                return;
+            }
+
+            try {
+                // An application that does not declare a platform is stored without one
+                final String platformKey = CatalogFile.key(internalName, platform);
+                final String anyKey = CatalogFile.key(internalName, null);
+                final String key = (index.mFile.get(platformKey) == null && index.mFile.get(anyKey) != null) ? anyKey : platformKey;
+
+                final boolean added = index.mFile.put(key, version.appUuid, version.versionCode);
+
+                if (!added) {
+                    invalidate(endpoint);
+                    return;
+                }
+
+                if (digest != null) {
+                    index.mFile.put(CatalogFile.digestKey(digest), version.appUuid, version.versionCode);
+                }
+
+            } catch (final IOException e) {
+                invalidate(endpoint);
+            }
+        }
+    }
+
+    private static File getFile(final ApiEndpoint endpoint) {
+        final String key = String.format("%s|%s|%s", endpoint.getUrl(), endpoint.getOrganization(), endpoint.getUsername());
+        return new File(sDirectory, DigestUtils.sha1Hex(key) + FILE_EXTENSION);
+    }
+
+    /**
+     * An application in the store and its known versions, as read from the index.
+     */
+    public static class Entry {
+
+        private final String mAppUuid;
+        private final int[]  mVersionCodes;
+
+        Entry(final String appUuid, final int[] versionCodes) {
+            this.mAppUuid = appUuid;
+            this.mVersionCodes = versionCodes;
+        }
+
+        /**
+         * @return The UUID of the application.
+         */
+        public String getAppUuid() {
+            return this.mAppUuid;
+        }
+
+        /**
+         * @param versionCode The version code to check.
+         * @return <code>true</code> if the application already has a version with the code.
+         */
+        public boolean hasVersion(final int versionCode) {
+
+            for (final int code : this.mVersionCodes) {
+                if (code == versionCode) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * @return <code>true</code> if the application has at least one version.
+         */
+        public boolean hasVersions() {
+            return this.mVersionCodes.length > 0;
+        }
+
+        /**
+         * @return The highest version code of the application, only valid if the application
+         * {@link #hasVersions()}.
+         */
+        public int getLatestVersionCode() {
+
+            int latest = Integer.MIN_VALUE;
+
+            for (final int code : this.mVersionCodes) {
+                latest = Math.max(latest, code);
+            }
+            return latest;
+        }
+
+        int[] getVersionCodes() {
+            return this.mVersionCodes;
+        }
+    }
+}
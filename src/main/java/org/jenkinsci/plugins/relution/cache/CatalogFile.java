@@ -0,0 +1,686 @@
+package org.jenkinsci.plugins.relution.cache;
+
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Logger;
+
+
+/**
+ * A persistent hash table that maps keys to an application UUID and a list of version codes,
+ * stored in a memory-mapped file.
+ * <p/>
+ * The file consists of a header, a table of slots and a data region. Each slot holds the hash of
+ * a key and the offset of its record in the data region, collisions are resolved by linear
+ * probing. Records hold the key, the UUID and the version codes, with room for additional codes.
+ * The header records when the file was created from a complete listing, and the modification
+ * date of the most recently modified application that has been merged (the cursor).
+ * <p/>
+ * Lookups share a read lock and writers take the write lock, which also makes the writes to the
+ * buffer visible to subsequent lookups. Lookups only copy a record from the buffer, so they hold
+ * the lock briefly. Version codes are updated in place while the record has room for them,
+ * otherwise a new record is appended and the previous one becomes garbage. If the table or the
+ * data region is full, the live records are copied to a new file that is sized for them.
+ */
+class CatalogFile {
+
+    private final static Charset UTF_8          = Charset.forName("UTF-8");
+
+    private final static int     MAGIC          = 0x524C4958;
+    private final static int     FORMAT         = 2;
+    private final static int     HEADER_SIZE    = 64;
+    private final static int     SLOT_SIZE      = 16;
+    private final static int     MIN_SLOTS      = 256;
+    private final static int     SPARE_CODES    = 4;
+
+    private final static int     POS_MAGIC      = 0;
+    private final static int     POS_FORMAT     = 4;
+    private final static int     POS_SLOTS      = 8;
+    private final static int     POS_COUNT      = 12;
+    private final static int     POS_DATA_END   = 16;
+    private final static int     POS_CREATED    = 24;
+    private final static int     POS_CURSOR     = 32;
+    private final static int     POS_SYNCED     = 40;
+
+    private final static Logger  LOGGER         = Logger.getLogger(CatalogFile.class.getName());
+
+    private final Lock           mReadLock;
+    private final Lock           mWriteLock;
+
+    private File                 mFile;
+    private ByteBuffer           mBuffer;
+    private boolean              mDeleted;
+
+    private CatalogFile(final File file, final ByteBuffer buffer) {
+        final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        this.mReadLock = lock.readLock();
+        this.mWriteLock = lock.writeLock();
+
+        this.mFile = file;
+        this.mBuffer = buffer;
+    }
+
+    /**
+     * Creates the file with the applications of the specified catalog, replacing any existing
+     * file.
+     * @param file The file to create.
+     * @param catalog The applications to store.
+     * @return The created {@link CatalogFile}.
+     * @throws IOException
+     */
+    static CatalogFile create(final File file, final CompactCatalog catalog) throws IOException {
+
+        int keys = 0;
+        long data = 0;
+
+        for (int app = 0; app < catalog.size(); app++) {
+            for (final String key : keys(catalog, app)) {
+                keys++;
+                data += recordSize(key, catalog.getAppUuid(app), catalog.getVersionCount(app) * 2 + SPARE_CODES);
+            }
+        }
+
+        final File temp = new File(file.getPath() + ".tmp");
+        final long now = System.currentTimeMillis();
+        final CatalogFile created = new CatalogFile(temp, allocate(temp, slotsFor(keys), data * 2, now));
+        long cursor = 0;
+
+        for (int app = 0; app < catalog.size(); app++) {
+            for (final String key : keys(catalog, app)) {
+                created.insert(key, catalog.getAppUuid(app), catalog.getVersionCodes(app));
+            }
+            cursor = Math.max(cursor, catalog.getLastModified(app));
+        }
+        created.mBuffer.putLong(POS_CURSOR, cursor);
+        created.mBuffer.putLong(POS_SYNCED, now);
+        created.replace(file);
+        return created;
+    }
+
+    /**
+     * Opens an existing file.
+     * @param file The file to open.
+     * @return The {@link CatalogFile}, or <code>null</code> if the file does not exist or is not
+     * a valid catalog file.
+     */
+    static CatalogFile open(final File file) {
+
+        if (!file.isFile()) {
+            return null;
+        }
+
+        try {
+            final ByteBuffer buffer = map(file, file.length());
+
+            if (buffer.capacity() < HEADER_SIZE || buffer.getInt(POS_MAGIC) != MAGIC || buffer.getInt(POS_FORMAT) != FORMAT) {
+                return null;
+            }
+
+            final long end = HEADER_SIZE + (long) buffer.getInt(POS_SLOTS) * SLOT_SIZE;
+            if (end > buffer.capacity() || buffer.getLong(POS_DATA_END) > buffer.capacity()) {
+                return null;
+            }
+            return new CatalogFile(file, buffer);
+
+        } catch (final IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return The key of the application with the specified internal name on the specified
+     * platform, or of an application that does not declare a platform if the platform is
+     * <code>null</code>.
+     */
+    static String key(final String internalName, final String platform) {
+        return internalName + "|" + (platform != null ? platform.toUpperCase(Locale.ENGLISH) : "");
+    }
+
+    /**
+     * @return The key of the content with the specified digest.
+     */
+    static String digestKey(final String digest) {
+        return "#" + digest;
+    }
+
+    private static String[] keys(final CompactCatalog catalog, final int app) {
+
+        if (catalog.getAppUuid(app) == null) {
+            return new String[0];
+        }
+        return keys(catalog.getInternalName(app), catalog.getPlatforms(app));
+    }
+
+    /**
+     * @return The keys of the application with the specified internal name on each of the
+     * specified platforms.
+     */
+    static String[] keys(final String internalName, final String[] platforms) {
+
+        if (internalName == null) {
+            return new String[0];
+        }
+
+        if (platforms.length == 0) {
+            return new String[] { key(internalName, null) };
+        }
+
+        final String[] keys = new String[platforms.length];
+        for (int index = 0; index < platforms.length; index++) {
+            keys[index] = key(internalName, platforms[index]);
+        }
+        return keys;
+    }
+
+    /**
+     * @return The time the file was created, in milliseconds since the epoch.
+     */
+    long getCreated() {
+        return this.readLong(POS_CREATED);
+    }
+
+    /**
+     * @return The modification date of the most recently modified application in the file, or
+     * <code>0</code> if the modification dates are unknown.
+     */
+    long getCursor() {
+        return this.readLong(POS_CURSOR);
+    }
+
+    /**
+     * @return The time the file was last synchronized with the store.
+     */
+    long getSynced() {
+        return this.readLong(POS_SYNCED);
+    }
+
+    /**
+     * Records that the file has been synchronized with the store.
+     * @param cursor The modification date of the most recently modified application.
+     * @param time The time of the synchronization.
+     */
+    void setSynced(final long cursor, final long time) {
+
+        this.mWriteLock.lock();
+        try {
+            this.mBuffer.putLong(POS_CURSOR, Math.max(cursor, this.mBuffer.getLong(POS_CURSOR)));
+            this.mBuffer.putLong(POS_SYNCED, time);
+        } finally {
+            this.mWriteLock.unlock();
+        }
+    }
+
+    /**
+     * @return The number of keys in the file.
+     */
+    int size() {
+
+        this.mReadLock.lock();
+        try {
+            return this.mBuffer.getInt(POS_COUNT);
+        } finally {
+            this.mReadLock.unlock();
+        }
+    }
+
+    /**
+     * Returns the application stored for the specified key.
+     * @param key The key to look up.
+     * @return The {@link AppIndex.Entry}, or <code>null</code> if the key is unknown.
+     */
+    AppIndex.Entry get(final String key) {
+
+        this.mReadLock.lock();
+        try {
+            if (this.mDeleted) {
+                return null;
+            }
+
+            final ByteBuffer buffer = this.mBuffer;
+            final int record = find(buffer, key.getBytes(UTF_8), key.hashCode());
+
+            if (record == 0) {
+                return null;
+            }
+
+            int position = record;
+            final int keyLength = buffer.getInt(position);
+            position += 4 + keyLength;
+
+            final byte[] uuid = new byte[buffer.getInt(position)];
+            read(buffer, position + 4, uuid);
+            position += 4 + uuid.length + 4;
+
+            final int count = buffer.getInt(position);
+            final int[] codes = new int[count];
+
+            for (int index = 0; index < count; index++) {
+                codes[index] = buffer.getInt(position + 4 + index * 4);
+            }
+            return new AppIndex.Entry(new String(uuid, UTF_8), codes);
+
+        } finally {
+            this.mReadLock.unlock();
+        }
+    }
+
+    /**
+     * Adds a version code to the application stored for the specified key, or stores the
+     * application if the key is unknown.
+     * @param key The key of the application.
+     * @param appUuid The UUID of the application.
+     * @param versionCode The version code to add.
+     * @return <code>false</code> if the key is stored for a different application.
+     * @throws IOException if the file could not be grown.
+     */
+    boolean put(final String key, final String appUuid, final int versionCode) throws IOException {
+
+        this.mWriteLock.lock();
+        try {
+            final AppIndex.Entry entry = this.get(key);
+
+            if (entry != null && !entry.getAppUuid().equals(appUuid)) {
+                return false;
+            }
+
+            if (entry != null && entry.hasVersion(versionCode)) {
+                return true;
+            }
+
+            final int[] codes = (entry != null) ? Arrays.copyOf(entry.getVersionCodes(), entry.getVersionCodes().length + 1) : new int[1];
+            codes[codes.length - 1] = versionCode;
+
+            this.store(key, appUuid, codes);
+            return true;
+
+        } finally {
+            this.mWriteLock.unlock();
+        }
+    }
+
+    /**
+     * Replaces the application stored for the specified key with the current state of the
+     * application in the store.
+     * @param key The key of the application.
+     * @param appUuid The UUID of the application.
+     * @param versionCodes The version codes of the application.
+     * @throws IOException if the file could not be grown.
+     */
+    void merge(final String key, final String appUuid, final int[] versionCodes) throws IOException {
+
+        this.mWriteLock.lock();
+        try {
+            this.store(key, appUuid, versionCodes);
+        } finally {
+            this.mWriteLock.unlock();
+        }
+    }
+
+    /**
+     * Removes the specified version codes from every key of their application, including the
+     * keys of the content published as one of the versions. The records are updated in place, a
+     * key whose version codes have all been removed is kept without codes.
+     * @param versionCodes The version codes to remove, by application UUID.
+     */
+    void remove(final Map<String, Set<Integer>> versionCodes) {
+
+        this.mWriteLock.lock();
+        try {
+            if (this.mDeleted) {
+                return;
+            }
+
+            final ByteBuffer buffer = this.mBuffer;
+            final int slots = buffer.getInt(POS_SLOTS);
+
+            for (int slot = 0; slot < slots; slot++) {
+                final int offset = (int) buffer.getLong(HEADER_SIZE + slot * SLOT_SIZE);
+
+                if (offset == 0) {
+                    continue;
+                }
+
+                int position = offset + 4 + buffer.getInt(offset);
+                final byte[] uuid = new byte[buffer.getInt(position)];
+                read(buffer, position + 4, uuid);
+
+                final Set<Integer> removed = versionCodes.get(new String(uuid, UTF_8));
+
+                if (removed == null) {
+                    continue;
+                }
+
+                position += 4 + uuid.length + 4;
+                final int count = buffer.getInt(position);
+                int kept = 0;
+
+                for (int index = 0; index < count; index++) {
+                    final int code = buffer.getInt(position + 4 + index * 4);
+
+                    if (!removed.contains(code)) {
+                        buffer.putInt(position + 4 + kept * 4, code);
+                        kept++;
+                    }
+                }
+                buffer.putInt(position, kept);
+            }
+
+        } finally {
+            this.mWriteLock.unlock();
+        }
+    }
+
+    /**
+     * Deletes the file. Lookups return <code>null</code> afterwards.
+     */
+    void delete() {
+
+        this.mWriteLock.lock();
+        try {
+            this.mDeleted = true;
+            FileUtils.deleteQuietly(this.mFile);
+        } finally {
+            this.mWriteLock.unlock();
+        }
+    }
+
+    private long readLong(final int position) {
+
+        this.mReadLock.lock();
+        try {
+            return this.mBuffer.getLong(position);
+        } finally {
+            this.mReadLock.unlock();
+        }
+    }
+
+    /**
+     * Stores the version codes for the key, in the existing record if it belongs to the same
+     * application and has room for the codes, in a new record otherwise.
+     */
+    private void store(final String key, final String appUuid, final int[] codes) throws IOException {
+
+        final int record = find(this.mBuffer, key.getBytes(UTF_8), key.hashCode());
+
+        if (record != 0 && this.update(record, appUuid, codes)) {
+            return;
+        }
+
+        while (!this.insert(key, appUuid, codes)) {
+            this.grow(recordSize(key, appUuid, codes.length + Math.max(SPARE_CODES, codes.length)));
+        }
+    }
+
+    private boolean update(final int record, final String appUuid, final int[] codes) {
+
+        final ByteBuffer buffer = this.mBuffer;
+
+        int position = record;
+        position += 4 + buffer.getInt(position);
+
+        final byte[] uuid = new byte[buffer.getInt(position)];
+        read(buffer, position + 4, uuid);
+        position += 4 + uuid.length;
+
+        if (!appUuid.equals(new String(uuid, UTF_8)) || buffer.getInt(position) < codes.length) {
+            return false;
+        }
+
+        for (int index = 0; index < codes.length; index++) {
+            buffer.putInt(position + 8 + index * 4, codes[index]);
+        }
+        buffer.putInt(position + 4, codes.length);
+        return true;
+    }
+
+    /**
+     * Writes a record and stores it in the slot of its key, replacing the previous record of the
+     * key, if any.
+     * @return <code>false</code> if the table or the data region is full.
+     */
+    private boolean insert(final String key, final String appUuid, final int[] codes) {
+
+        final ByteBuffer buffer = this.mBuffer;
+        final byte[] keyBytes = key.getBytes(UTF_8);
+        final byte[] uuidBytes = appUuid.getBytes(UTF_8);
+
+        final int slots = buffer.getInt(POS_SLOTS);
+        final int count = buffer.getInt(POS_COUNT);
+        final long end = buffer.getLong(POS_DATA_END);
+        final int capacity = codes.length + Math.max(SPARE_CODES, codes.length);
+        final int size = recordSize(keyBytes.length, uuidBytes.length, capacity);
+
+        if (end + size > buffer.capacity() || (count + 1) * 2 > slots) {
+            return false;
+        }
+
+        int position = (int) end;
+        buffer.putInt(position, keyBytes.length);
+        write(buffer, position + 4, keyBytes);
+        position += 4 + keyBytes.length;
+
+        buffer.putInt(position, uuidBytes.length);
+        write(buffer, position + 4, uuidBytes);
+        position += 4 + uuidBytes.length;
+
+        buffer.putInt(position, capacity);
+        buffer.putInt(position + 4, codes.length);
+        for (int index = 0; index < codes.length; index++) {
+            buffer.putInt(position + 8 + index * 4, codes[index]);
+        }
+        buffer.putLong(POS_DATA_END, end + size);
+
+        final int hash = key.hashCode();
+        int slot = hash & (slots - 1);
+
+        while (true) {
+            final int slotPosition = HEADER_SIZE + slot * SLOT_SIZE;
+            final long offset = buffer.getLong(slotPosition);
+
+            if (offset == 0) {
+                buffer.putInt(slotPosition + 8, hash);
+                buffer.putLong(slotPosition, end);
+                buffer.putInt(POS_COUNT, count + 1);
+                return true;
+            }
+
+            if (buffer.getInt(slotPosition + 8) == hash && matches(buffer, (int) offset, keyBytes)) {
+                buffer.putLong(slotPosition, end);
+                return true;
+            }
+            slot = (slot + 1) & (slots - 1);
+        }
+    }
+
+    /**
+     * Copies the live records, those referenced by a slot, to a new file and replaces this file
+     * with it. Records replaced by a newer record of their key are dropped. The new file is sized
+     * for twice the live records, so it grows only if the records do.
+     * @param required The size of the record that did not fit.
+     */
+    private void grow(final int required) throws IOException {
+
+        final ByteBuffer buffer = this.mBuffer;
+        final int slots = buffer.getInt(POS_SLOTS);
+        final int count = buffer.getInt(POS_COUNT);
+        long live = 0;
+
+        for (int slot = 0; slot < slots; slot++) {
+            final int offset = (int) buffer.getLong(HEADER_SIZE + slot * SLOT_SIZE);
+
+            if (offset != 0) {
+                live += liveSize(buffer, offset);
+            }
+        }
+
+        final File temp = new File(this.mFile.getPath() + ".tmp");
+        final CatalogFile grown = new CatalogFile(temp, allocate(temp, slotsFor(count + 1), live * 2 + required,
+                buffer.getLong(POS_CREATED)));
+        grown.mBuffer.putLong(POS_CURSOR, buffer.getLong(POS_CURSOR));
+        grown.mBuffer.putLong(POS_SYNCED, buffer.getLong(POS_SYNCED));
+
+        for (int slot = 0; slot < slots; slot++) {
+            final int offset = (int) buffer.getLong(HEADER_SIZE + slot * SLOT_SIZE);
+
+            if (offset != 0) {
+                final byte[] key = new byte[buffer.getInt(offset)];
+                read(buffer, offset + 4, key);
+
+                final AppIndex.Entry entry = this.get(new String(key, UTF_8));
+                grown.insert(new String(key, UTF_8), entry.getAppUuid(), entry.getVersionCodes());
+            }
+        }
+
+        grown.replace(this.mFile);
+        this.mFile = grown.mFile;
+        this.mBuffer = grown.mBuffer;
+    }
+
+    /**
+     * @return The size of the record at the specified offset once it has been copied, which
+     * reserves room for as many codes again as it holds.
+     */
+    private static long liveSize(final ByteBuffer buffer, final int record) {
+
+        int position = record;
+        final int keyLength = buffer.getInt(position);
+        position += 4 + keyLength;
+
+        final int uuidLength = buffer.getInt(position);
+        position += 4 + uuidLength;
+
+        final int count = buffer.getInt(position + 4);
+        return recordSize(keyLength, uuidLength, count + Math.max(SPARE_CODES, count));
+    }
+
+    /**
+     * Moves this file to the specified location. If the existing file cannot be deleted, e.g.
+     * because it is still mapped, this file is used at its current location until the file is
+     * built again, and the failure is logged.
+     */
+    private void replace(final File file) throws IOException {
+
+        if (file.exists() && !file.delete()) {
+            LOGGER.warning(String.format("[Relution Publisher] Failed to delete %s, using %s instead", file, this.mFile));
+            return;
+        }
+
+        if (this.mFile.renameTo(file)) {
+            this.mFile = file;
+        } else {
+            LOGGER.warning(String.format("[Relution Publisher] Failed to rename %s to %s", this.mFile, file));
+        }
+    }
+
+    private static int find(final ByteBuffer buffer, final byte[] key, final int hash) {
+
+        final int slots = buffer.getInt(POS_SLOTS);
+        int slot = hash & (slots - 1);
+
+        for (int probe = 0; probe < slots; probe++) {
+            final int slotPosition = HEADER_SIZE + slot * SLOT_SIZE;
+            final long offset = buffer.getLong(slotPosition);
+
+            if (offset == 0) {
+                return 0;
+            }
+
+            if (buffer.getInt(slotPosition + 8) == hash && matches(buffer, (int) offset, key)) {
+                return (int) offset;
+            }
+            slot = (slot + 1) & (slots - 1);
+        }
+        return 0;
+    }
+
+    private static boolean matches(final ByteBuffer buffer, final int record, final byte[] key) {
+
+        if (buffer.getInt(record) != key.length) {
+            return false;
+        }
+
+        for (int index = 0; index < key.length; index++) {
+            if (buffer.get(record + 4 + index) != key[index]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static ByteBuffer allocate(final File file, final int slots, final long data, final long created) throws IOException {
+
+        FileUtils.forceMkdir(file.getParentFile());
+        FileUtils.deleteQuietly(file);
+
+        final long start = HEADER_SIZE + (long) slots * SLOT_SIZE;
+        final long size = start + Math.max(data, 64 * 1024);
+
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("The catalog is too large to be mapped: " + size + " bytes");
+        }
+
+        final ByteBuffer buffer = map(file, size);
+        buffer.putInt(POS_MAGIC, MAGIC);
+        buffer.putInt(POS_FORMAT, FORMAT);
+        buffer.putInt(POS_SLOTS, slots);
+        buffer.putInt(POS_COUNT, 0);
+        buffer.putLong(POS_DATA_END, start);
+        buffer.putLong(POS_CREATED, created);
+        return buffer;
+    }
+
+    private static MappedByteBuffer map(final File file, final long size) throws IOException {
+
+        final RandomAccessFile raf = new RandomAccessFile(file, "rw");
+
+        try {
+            // The mapping remains valid after the channel has been closed
+            return raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+        } finally {
+            raf.close();
+        }
+    }
+
+    private static int slotsFor(final int keys) {
+
+        int slots = MIN_SLOTS;
+        while (slots < keys * 2 + 2) {
+            slots *= 2;
+        }
+        return slots;
+    }
+
+    private static int recordSize(final String key, final String uuid, final int codes) {
+        return recordSize(key.getBytes(UTF_8).length, uuid.getBytes(UTF_8).length, codes);
+    }
+
+    private static int recordSize(final int keyLength, final int uuidLength, final int codes) {
+        return 4 + keyLength + 4 + uuidLength + 8 + codes * 4;
+    }
+
+    private static void read(final ByteBuffer buffer, final int position, final byte[] bytes) {
+
+        final ByteBuffer view = buffer.duplicate();
+        view.position(position);
+        view.get(bytes);
+    }
+
+    private static void write(final ByteBuffer buffer, final int position, final byte[] bytes) {
+
+        final ByteBuffer view = buffer.duplicate();
+        view.position(position);
+        view.put(bytes);
+    }
+}
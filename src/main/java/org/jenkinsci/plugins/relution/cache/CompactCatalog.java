@@ -0,0 +1,388 @@
+package org.jenkinsci.plugins.relution.cache;
+
+import org.jenkinsci.plugins.relution.json.ApiApp;
+import org.jenkinsci.plugins.relution.json.ApiVersion;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+
+/**
+ * A read-only, compact representation of the applications in a store, used by caches and
+ * indexes instead of {@link ApiApp} and {@link ApiVersion}.
+ * <p/>
+ * Applications and versions are stored in columns: each property is an array with one element per
+ * application or version, numbers are stored as primitives. The versions of an application are
+ * stored contiguously, ordered by version code. Repeated strings such as platforms, release
+ * states, locales and version names are shared, and only the name of the latest version is kept
+ * of the localized properties.
+ */
+public class CompactCatalog {
+
+    /**
+     * Returned by {@link #find} if no application has the specified internal name and platform.
+     */
+    public final static int  NOT_FOUND = -1;
+
+    private final String[]     mAppUuids;
+    private final String[]     mInternalNames;
+    private final String[][]   mPlatforms;
+    private final long[]       mModificationDates;
+    private final String[][]   mNames;
+
+    private final int[]        mVersionStart;
+    private final String[]     mVersionUuids;
+    private final int[]        mVersionCodes;
+    private final String[]     mVersionNames;
+    private final String[]     mReleaseStates;
+    private final long[]       mVersionModificationDates;
+
+    private final String[]     mKeys;
+    private final int[]        mKeyApps;
+
+    private CompactCatalog(final Builder builder) {
+
+        final int apps = builder.mAppCount;
+        final int versions = builder.mVersionCount;
+
+        this.mAppUuids = Arrays.copyOf(builder.mAppUuids, apps);
+        this.mInternalNames = Arrays.copyOf(builder.mInternalNames, apps);
+        this.mPlatforms = Arrays.copyOf(builder.mPlatforms, apps);
+        this.mModificationDates = Arrays.copyOf(builder.mModificationDates, apps);
+        this.mNames = Arrays.copyOf(builder.mNames, apps);
+
+        this.mVersionStart = Arrays.copyOf(builder.mVersionStart, apps + 1);
+        this.mVersionStart[apps] = versions;
+        this.mVersionUuids = Arrays.copyOf(builder.mVersionUuids, versions);
+        this.mVersionCodes = Arrays.copyOf(builder.mVersionCodes, versions);
+        this.mVersionNames = Arrays.copyOf(builder.mVersionNames, versions);
+        this.mReleaseStates = Arrays.copyOf(builder.mReleaseStates, versions);
+        this.mVersionModificationDates = Arrays.copyOf(builder.mVersionModificationDates, versions);
+
+        // Lookup keys are sorted once and searched with a binary search, no map entry is kept per application
+        final List<String> keys = new ArrayList<String>();
+        final List<Integer> keyApps = new ArrayList<Integer>();
+
+        for (int app = 0; app < apps; app++) {
+            if (this.mPlatforms[app].length == 0) {
+                keys.add(key(this.mInternalNames[app], null));
+                keyApps.add(app);
+            }
+
+            for (final String platform : this.mPlatforms[app]) {
+                keys.add(key(this.mInternalNames[app], platform));
+                keyApps.add(app);
+            }
+        }
+
+        final Integer[] order = new Integer[keys.size()];
+        for (int index = 0; index < order.length; index++) {
+            order[index] = index;
+        }
+
+        Arrays.sort(order, new Comparator<Integer>() {
+
+            @Override
+            public int compare(final Integer lhs, final Integer rhs) {
+                return keys.get(lhs).compareTo(keys.get(rhs));
+            }
+        });
+
+        this.mKeys = new String[order.length];
+        this.mKeyApps = new int[order.length];
+
+        for (int index = 0; index < order.length; index++) {
+            this.mKeys[index] = keys.get(order[index]);
+            this.mKeyApps[index] = keyApps.get(order[index]);
+        }
+    }
+
+    /**
+     * @return The number of applications in the catalog.
+     */
+    public int size() {
+        return this.mAppUuids.length;
+    }
+
+    /**
+     * Returns the application with the specified internal name on the specified platform. An
+     * application that does not declare a platform matches any platform.
+     * @param internalName The internal name (package name or bundle identifier) of the application.
+     * @param platform The platform of the application.
+     * @return The index of the application, or {@link #NOT_FOUND}.
+     */
+    public int find(final String internalName, final String platform) {
+
+        int index = Arrays.binarySearch(this.mKeys, key(internalName, platform));
+
+        if (index < 0) {
+            index = Arrays.binarySearch(this.mKeys, key(internalName, null));
+        }
+        return index >= 0 ? this.mKeyApps[index] : NOT_FOUND;
+    }
+
+    public String getAppUuid(final int app) {
+        return this.mAppUuids[app];
+    }
+
+    public String getInternalName(final int app) {
+        return this.mInternalNames[app];
+    }
+
+    public String[] getPlatforms(final int app) {
+        return this.mPlatforms[app].clone();
+    }
+
+    public long getModificationDate(final int app) {
+        return this.mModificationDates[app];
+    }
+
+    /**
+     * @param app The index of the application.
+     * @return The most recent modification date of the application and its versions.
+     */
+    public long getLastModified(final int app) {
+
+        long date = this.mModificationDates[app];
+
+        for (int version = this.mVersionStart[app]; version < this.mVersionStart[app + 1]; version++) {
+            date = Math.max(date, this.mVersionModificationDates[version]);
+        }
+        return date;
+    }
+
+    /**
+     * Returns the name of the latest version of an application in the specified locale.
+     * @param app The index of the application.
+     * @param locale The locale of the name, e.g. <code>en</code>.
+     * @return The name, or <code>null</code> if the application has no name in the locale.
+     */
+    public String getName(final int app, final String locale) {
+
+        final String[] names = this.mNames[app];
+
+        for (int index = 0; index < names.length; index += 2) {
+            if (names[index].equals(locale)) {
+                return names[index + 1];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param app The index of the application.
+     * @return The number of versions of the application.
+     */
+    public int getVersionCount(final int app) {
+        return this.mVersionStart[app + 1] - this.mVersionStart[app];
+    }
+
+    /**
+     * @param app The index of the application.
+     * @return The version codes of the application, in ascending order.
+     */
+    public int[] getVersionCodes(final int app) {
+        return Arrays.copyOfRange(this.mVersionCodes, this.mVersionStart[app], this.mVersionStart[app + 1]);
+    }
+
+    /**
+     * @param app The index of the application.
+     * @param versionCode The version code to check.
+     * @return <code>true</code> if the application has a version with the code.
+     */
+    public boolean hasVersion(final int app, final int versionCode) {
+        return this.indexOf(app, versionCode) >= 0;
+    }
+
+    /**
+     * @param app The index of the application.
+     * @return The index of the version with the highest version code, or {@link #NOT_FOUND} if
+     * the application has no versions.
+     */
+    public int getLatestVersion(final int app) {
+        final int end = this.mVersionStart[app + 1];
+        return end > this.mVersionStart[app] ? end - 1 : NOT_FOUND;
+    }
+
+    /**
+     * @param app The index of the application.
+     * @param versionCode The version code of the version.
+     * @return The index of the version, or {@link #NOT_FOUND}.
+     */
+    public int indexOf(final int app, final int versionCode) {
+        final int index = Arrays.binarySearch(this.mVersionCodes, this.mVersionStart[app], this.mVersionStart[app + 1], versionCode);
+        return index >= 0 ? index : NOT_FOUND;
+    }
+
+    public String getVersionUuid(final int version) {
+        return this.mVersionUuids[version];
+    }
+
+    public int getVersionCode(final int version) {
+        return this.mVersionCodes[version];
+    }
+
+    public String getVersionName(final int version) {
+        return this.mVersionNames[version];
+    }
+
+    public String getReleaseStatus(final int version) {
+        return this.mReleaseStates[version];
+    }
+
+    public long getVersionModificationDate(final int version) {
+        return this.mVersionModificationDates[version];
+    }
+
+    private static String key(final String internalName, final String platform) {
+        return internalName + "|" + (platform != null ? platform.toUpperCase(Locale.ENGLISH) : "");
+    }
+
+    /**
+     * Collects applications one at a time, so a catalog can be built while the store is
+     * traversed without holding the decoded applications.
+     */
+    public static class Builder {
+
+        private final static String[]     NO_STRINGS                = new String[0];
+
+        private final Map<String, String> mStrings                  = new HashMap<String, String>();
+
+        private int                       mAppCount;
+        private String[]                  mAppUuids                 = new String[16];
+        private String[]                  mInternalNames            = new String[16];
+        private String[][]                mPlatforms                = new String[16][];
+        private long[]                    mModificationDates        = new long[16];
+        private String[][]                mNames                    = new String[16][];
+        private int[]                     mVersionStart             = new int[17];
+
+        private int                       mVersionCount;
+        private String[]                  mVersionUuids             = new String[16];
+        private int[]                     mVersionCodes             = new int[16];
+        private String[]                  mVersionNames             = new String[16];
+        private String[]                  mReleaseStates            = new String[16];
+        private long[]                    mVersionModificationDates = new long[16];
+
+        /**
+         * Adds the specified application and its versions.
+         * @param app The application to add.
+         * @return This builder.
+         */
+        public Builder add(final ApiApp app) {
+
+            this.ensureAppCapacity(this.mAppCount + 1);
+            this.ensureVersionCapacity(this.mVersionCount + app.versions.size());
+
+            final int index = this.mAppCount++;
+            this.mAppUuids[index] = app.uuid;
+            this.mInternalNames[index] = this.share(app.internalName);
+            this.mModificationDates[index] = app.modificationDate != null ? app.modificationDate : 0;
+
+            final String[] platforms = new String[app.platforms.size()];
+            for (int platform = 0; platform < platforms.length; platform++) {
+                platforms[platform] = this.share(app.platforms.get(platform));
+            }
+            this.mPlatforms[index] = platforms.length > 0 ? platforms : NO_STRINGS;
+
+            final List<ApiVersion> versions = new ArrayList<ApiVersion>(app.versions);
+            Collections.sort(versions, new Comparator<ApiVersion>() {
+
+                @Override
+                public int compare(final ApiVersion lhs, final ApiVersion rhs) {
+                    return lhs.versionCode < rhs.versionCode ? -1 : (lhs.versionCode == rhs.versionCode ? 0 : 1);
+                }
+            });
+
+            this.mVersionStart[index] = this.mVersionCount;
+
+            for (final ApiVersion version : versions) {
+                final int position = this.mVersionCount++;
+                this.mVersionUuids[position] = version.uuid;
+                this.mVersionCodes[position] = version.versionCode;
+                this.mVersionNames[position] = this.share(version.versionName);
+                this.mReleaseStates[position] = this.share(version.releaseStatus);
+                this.mVersionModificationDates[position] = version.modificationDate != null ? version.modificationDate : 0;
+            }
+
+            this.mNames[index] = versions.isEmpty() ? NO_STRINGS : this.names(versions.get(versions.size() - 1).name);
+            return this;
+        }
+
+        /**
+         * @return The catalog of the added applications.
+         */
+        public CompactCatalog build() {
+            return new CompactCatalog(this);
+        }
+
+        private String[] names(final Map<String, String> name) {
+
+            if (name.isEmpty()) {
+                return NO_STRINGS;
+            }
+
+            final String[] names = new String[name.size() * 2];
+            int index = 0;
+
+            for (final Map.Entry<String, String> entry : name.entrySet()) {
+                names[index++] = this.share(entry.getKey());
+                names[index++] = this.share(entry.getValue());
+            }
+            return names;
+        }
+
+        /**
+         * Returns a shared instance of the specified string. Unlike {@link String#intern()}, the
+         * shared instances can be collected with the builder.
+         */
+        private String share(final String value) {
+
+            if (value == null) {
+                return null;
+            }
+
+            final String shared = this.mStrings.get(value);
+
+            if (shared != null) {
+                return shared;
+            }
+            this.mStrings.put(value, value);
+            return value;
+        }
+
+        private void ensureAppCapacity(final int capacity) {
+
+            if (capacity <= this.mAppUuids.length) {
+                return;
+            }
+
+            final int size = Math.max(capacity, this.mAppUuids.length * 2);
+            this.mAppUuids = Arrays.copyOf(this.mAppUuids, size);
+            this.mInternalNames = Arrays.copyOf(this.mInternalNames, size);
+            this.mPlatforms = Arrays.copyOf(this.mPlatforms, size);
+            this.mModificationDates = Arrays.copyOf(this.mModificationDates, size);
+            this.mNames = Arrays.copyOf(this.mNames, size);
+            this.mVersionStart = Arrays.copyOf(this.mVersionStart, size + 1);
+        }
+
+        private void ensureVersionCapacity(final int capacity) {
+
+            if (capacity <= this.mVersionCodes.length) {
+                return;
+            }
+
+            final int size = Math.max(capacity, this.mVersionCodes.length * 2);
+            this.mVersionUuids = Arrays.copyOf(this.mVersionUuids, size);
+            this.mVersionCodes = Arrays.copyOf(this.mVersionCodes, size);
+            this.mVersionNames = Arrays.copyOf(this.mVersionNames, size);
+            this.mReleaseStates = Arrays.copyOf(this.mReleaseStates, size);
+            this.mVersionModificationDates = Arrays.copyOf(this.mVersionModificationDates, size);
+        }
+    }
+}
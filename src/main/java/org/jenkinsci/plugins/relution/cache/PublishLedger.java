@@ -0,0 +1,391 @@
+package org.jenkinsci.plugins.relution.cache;
+
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
+import org.jenkinsci.plugins.relution.entities.ApiEndpoint;
+import org.jenkinsci.plugins.relution.json.ApiResponse;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+
+/**
+ * Remembers which content has already been uploaded to and published on which endpoint.
+ * <p/>
+ * Entries are keyed by endpoint and the SHA-256 digest of the uploaded file, so byte-identical
+ * artifacts produced by rebuilds of the same commit can reuse the file that is already stored on
+ * the server instead of being uploaded again. The ledger is persisted as JSON on the controller
+ * and survives restarts.
+ * <p/>
+ * Entries expire after {@link #MAX_AGE} and at most {@link #MAX_ENTRIES} entries are kept, the
+ * oldest are dropped first. Changes are written in batches, at most one write per
+ * {@link #SAVE_DELAY} seconds, on a background thread.
+ */
+public class PublishLedger {
+
+    /**
+     * The maximum number of entries, the oldest entries are dropped once it is exceeded.
+     */
+    public final static int                       MAX_ENTRIES = 10000;
+
+    /**
+     * The time, in milliseconds, after which an entry that has not been modified is dropped.
+     */
+    public final static long                      MAX_AGE     = TimeUnit.DAYS.toMillis(90);
+
+    /**
+     * The time, in seconds, changes are collected before the ledger is written.
+     */
+    public final static long                      SAVE_DELAY  = 5;
+
+    private final static Logger                   LOGGER      = Logger.getLogger(PublishLedger.class.getName());
+
+    private final static String                   FILE_NAME   = "relution-ledger.json";
+    private final static Type                     TYPE        = new TypeToken<HashMap<String, Entry>>() {}.getType();
+
+    private final static Comparator<Entry>        OLDEST_FIRST = new Comparator<Entry>() {
+
+        @Override
+        public int compare(final Entry lhs, final Entry rhs) {
+            return lhs.modificationDate < rhs.modificationDate ? -1 : (lhs.modificationDate == rhs.modificationDate ? 0 : 1);
+        }
+    };
+
+    private static PublishLedger                  sInstance;
+    private static ScheduledExecutorService       sWriter;
+
+    private final File                            mFile;
+    private Map<String, Entry>                    mEntries;
+    private boolean                               mSaveScheduled;
+
+    /**
+     * Creates a ledger that is persisted to the specified file.
+     * @param file The file the ledger is read from and written to.
+     */
+    public PublishLedger(final File file) {
+        this.mFile = file;
+    }
+
+    /**
+     * Returns the ledger of the controller, stored in the specified root directory.
+     * @param rootDir The root directory of the controller.
+     * @return The shared {@link PublishLedger}.
+     */
+    public static synchronized PublishLedger getInstance(final File rootDir) {
+
+        if (sInstance == null) {
+            sInstance = new PublishLedger(new File(rootDir, FILE_NAME));
+        }
+        return sInstance;
+    }
+
+    /**
+     * Computes the digest used to identify the content of the specified file.
+     * @param file The file for which to compute the digest.
+     * @return The hex encoded SHA-256 digest of the file's content.
+     * @throws IOException
+     */
+    public static String digest(final File file) throws IOException {
+
+        final InputStream stream = new FileInputStream(file);
+
+        try {
+            return DigestUtils.sha256Hex(stream);
+        } finally {
+            stream.close();
+        }
+    }
+
+    /**
+     * Returns the entry for the specified content on the specified endpoint.
+     * @param endpoint The endpoint the content was uploaded to.
+     * @param digest The digest of the content.
+     * @return The {@link Entry}, or <code>null</code> if the content is unknown.
+     */
+    public synchronized Entry get(final ApiEndpoint endpoint, final String digest) {
+        return this.entries().get(key(endpoint, digest));
+    }
+
+    /**
+     * Records that the content was uploaded and is stored on the server as the specified file.
+     * @param endpoint The endpoint the content was uploaded to.
+     * @param digest The digest of the content.
+     * @param fileUuid The UUID of the file on the server.
+     */
+    public synchronized void putFile(final ApiEndpoint endpoint, final String digest, final String fileUuid) {
+
+        final Entry entry = new Entry();
+        entry.fileUuid = fileUuid;
+        entry.modificationDate = System.currentTimeMillis();
+
+        this.entries().put(key(endpoint, digest), entry);
+        this.changed();
+    }
+
+    /**
+     * Records that the content was published as the specified version.
+     * @param endpoint The endpoint the content was published to.
+     * @param digest The digest of the content.
+     * @param appUuid The UUID of the application the version belongs to.
+     * @param versionCode The version code of the published version.
+     * @param versionName The version name of the published version.
+     */
+    public synchronized void putVersion(final ApiEndpoint endpoint, final String digest, final String appUuid, final int versionCode,
+            final String versionName) {
+
+        Entry entry = this.entries().get(key(endpoint, digest));
+
+        if (entry == null) {
+            entry = new Entry();
+            this.entries().put(key(endpoint, digest), entry);
+        }
+
+        entry.published = true;
+        entry.appUuid = appUuid;
+        entry.versionCode = versionCode;
+        entry.versionName = versionName;
+        entry.modificationDate = System.currentTimeMillis();
+
+        this.changed();
+    }
+
+    /**
+     * Removes the entry for the specified content, e.g. because the server no longer holds it.
+     * @param endpoint The endpoint the content was uploaded to.
+     * @param digest The digest of the content.
+     */
+    public synchronized void remove(final ApiEndpoint endpoint, final String digest) {
+
+        if (this.entries().remove(key(endpoint, digest)) != null) {
+            this.changed();
+        }
+    }
+
+    /**
+     * Removes the entries of content that was published as one of the specified versions, e.g.
+     * because the versions have been deleted, so the content can be published again.
+     * @param endpoint The endpoint the versions have been deleted from.
+     * @param versionCodes The version codes of the deleted versions, by application UUID.
+     */
+    public synchronized void removeVersions(final ApiEndpoint endpoint, final Map<String, Set<Integer>> versionCodes) {
+
+        final String prefix = key(endpoint, "");
+        final Iterator<Map.Entry<String, Entry>> iterator = this.entries().entrySet().iterator();
+        boolean removed = false;
+
+        while (iterator.hasNext()) {
+            final Map.Entry<String, Entry> next = iterator.next();
+            final Entry entry = next.getValue();
+
+            if (!entry.published || !next.getKey().startsWith(prefix)) {
+                continue;
+            }
+
+            final Set<Integer> codes = versionCodes.get(entry.appUuid);
+
+            if (codes != null && codes.contains(entry.versionCode)) {
+                iterator.remove();
+                removed = true;
+            }
+        }
+
+        if (removed) {
+            this.changed();
+        }
+    }
+
+    private static String key(final ApiEndpoint endpoint, final String digest) {
+        return String.format("%s|%s|%s|%s", endpoint.getUrl(), endpoint.getOrganization(), endpoint.getUsername(), digest);
+    }
+
+    private Map<String, Entry> entries() {
+
+        if (this.mEntries == null) {
+            this.mEntries = this.load();
+
+            if (this.prune()) {
+                this.changed();
+            }
+        }
+        return this.mEntries;
+    }
+
+    private Map<String, Entry> load() {
+
+        if (!this.mFile.exists()) {
+            return new HashMap<String, Entry>();
+        }
+
+        try {
+            final Map<String, Entry> entries = ApiResponse.COMPACT.fromJson(FileUtils.readFileToString(this.mFile, "UTF-8"), TYPE);
+
+            if (entries != null) {
+                return entries;
+            }
+
+        } catch (final IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to read " + this.mFile, e);
+        } catch (final JsonParseException e) {
+            LOGGER.log(Level.WARNING, "Discarding corrupt " + this.mFile, e);
+        }
+        return new HashMap<String, Entry>();
+    }
+
+    /**
+     * Drops expired entries and, if there are still too many, the oldest entries.
+     * @return <code>true</code> if entries have been dropped.
+     */
+    private boolean prune() {
+
+        final long expired = System.currentTimeMillis() - MAX_AGE;
+        final int size = this.mEntries.size();
+        final Iterator<Entry> iterator = this.mEntries.values().iterator();
+
+        while (iterator.hasNext()) {
+            if (iterator.next().modificationDate < expired) {
+                iterator.remove();
+            }
+        }
+
+        if (this.mEntries.size() > MAX_ENTRIES) {
+            final List<Entry> entries = new ArrayList<Entry>(this.mEntries.values());
+            Collections.sort(entries, OLDEST_FIRST);
+
+            final long oldest = entries.get(this.mEntries.size() - MAX_ENTRIES - 1).modificationDate;
+            final Iterator<Entry> excess = this.mEntries.values().iterator();
+
+            while (excess.hasNext() && this.mEntries.size() > MAX_ENTRIES) {
+                if (excess.next().modificationDate <= oldest) {
+                    excess.remove();
+                }
+            }
+        }
+        return this.mEntries.size() != size;
+    }
+
+    /**
+     * Schedules a write of the ledger, unless one is already scheduled.
+     */
+    private void changed() {
+
+        if (this.mEntries.size() > MAX_ENTRIES) {
+            this.prune();
+        }
+
+        if (this.mSaveScheduled) {
+            return;
+        }
+        this.mSaveScheduled = true;
+
+        getWriter().schedule(new Runnable() {
+
+            @Override
+            public void run() {
+                PublishLedger.this.save();
+            }
+        }, SAVE_DELAY, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Writes a copy of the entries, so the ledger is not locked while the file is written.
+     * Writes are serialized by the single thread of the writer.
+     */
+    private void save() {
+
+        final Map<String, Entry> entries = new HashMap<String, Entry>();
+
+        synchronized (this) {
+            this.mSaveScheduled = false;
+
+            for (final Map.Entry<String, Entry> entry : this.mEntries.entrySet()) {
+                entries.put(entry.getKey(), entry.getValue().copy());
+            }
+        }
+
+        try {
+            final File temp = new File(this.mFile.getPath() + ".tmp");
+            FileUtils.writeStringToFile(temp, ApiResponse.COMPACT.toJson(entries, TYPE), "UTF-8");
+
+            if (!temp.renameTo(this.mFile)) {
+                FileUtils.copyFile(temp, this.mFile);
+                FileUtils.deleteQuietly(temp);
+            }
+
+        } catch (final IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to write " + this.mFile, e);
+        }
+    }
+
+    private static synchronized ScheduledExecutorService getWriter() {
+
+        if (sWriter == null) {
+            sWriter = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+
+                @Override
+                public Thread newThread(final Runnable runnable) {
+                    final Thread thread = new Thread(runnable, "Relution ledger writer");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return sWriter;
+    }
+
+    /**
+     * The server-side state of uploaded content.
+     */
+    public static class Entry {
+
+        /**
+         * The UUID of the file on the server.
+         */
+        public String  fileUuid;
+
+        /**
+         * Whether the content has been published as a version or has only been uploaded.
+         */
+        public boolean published;
+
+        /**
+         * The UUID of the application the content was published to, if known.
+         */
+        public String  appUuid;
+
+        public int     versionCode;
+        public String  versionName;
+
+        public long    modificationDate;
+
+        Entry copy() {
+            final Entry entry = new Entry();
+            entry.fileUuid = this.fileUuid;
+            entry.published = this.published;
+            entry.appUuid = this.appUuid;
+            entry.versionCode = this.versionCode;
+            entry.versionName = this.versionName;
+            entry.modificationDate = this.modificationDate;
+            return entry;
+        }
+    }
+}
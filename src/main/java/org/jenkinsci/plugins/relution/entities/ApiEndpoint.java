@@ -47,6 +47,7 @@ public class ApiEndpoint extends AbstractDescribableImpl<ApiEndpoint> {
     private static final String LOGINREGEX         = "^http\\://[a-zA-Z0-9\\-\\.]*";
 
     public final static String  KEY_RELEASE_STATUS = "releaseStatus";
+    public final static String  KEY_CHUNKED_UPLOAD = "chunkedUpload";
 
     private String              mUrl;
 
@@ -57,6 +58,8 @@ public class ApiEndpoint extends AbstractDescribableImpl<ApiEndpoint> {
 
     private String              mReleaseStatus;
 
+    private boolean             mChunkedUpload;
+
     public static ApiEndpoint fromJson(final String jsonString) {
 
         final JSONObject json = JSONObject.fromObject(jsonString);
@@ -84,6 +87,7 @@ public class ApiEndpoint extends AbstractDescribableImpl<ApiEndpoint> {
         this.setPassword(json.getString(KEY_PASSWORD));
 
         this.setReleaseStatus(json.getString(KEY_RELEASE_STATUS));
+        this.setChunkedUpload(json.optBoolean(KEY_CHUNKED_UPLOAD, false));
     }
 
     public String getUrl() {
@@ -126,6 +130,20 @@ public class ApiEndpoint extends AbstractDescribableImpl<ApiEndpoint> {
         this.mReleaseStatus = releaseStatus;
     }
 
+    /**
+     * @return Whether large files are uploaded to the endpoint in several parts.
+     */
+    public boolean isChunkedUpload() {
+        return this.mChunkedUpload;
+    }
+
+    /**
+     * @param chunkedUpload Sets entry of  the checkbox chunkedUpload.
+     */
+    public void setChunkedUpload(final boolean chunkedUpload) {
+        this.mChunkedUpload = chunkedUpload;
+    }
+
     public String getAuthorizationToken() {
 
         final String authorization = this.mUsername + ":" + this.mOrganization + ":" + this.mPassword;
@@ -143,10 +161,56 @@ public class ApiEndpoint extends AbstractDescribableImpl<ApiEndpoint> {
         json.put(KEY_PASSWORD, this.mPassword);
 
         json.put(KEY_RELEASE_STATUS, this.mReleaseStatus);
+        json.put(KEY_CHUNKED_UPLOAD, this.mChunkedUpload);
 
         return json;
     }
 
+    /**
+     * @return The JSON representation of the endpoint without its credentials, which identifies
+     * the endpoint in the configuration of a job.
+     * @see GlobalConfigurationImpl#findEndpoint(String)
+     */
+    public String toReference() {
+
+        final JSONObject json = new JSONObject();
+
+        json.put(KEY_URL, this.mUrl);
+        json.put(KEY_ORGANIZATION, this.mOrganization);
+        json.put(KEY_USERNAME, this.mUsername);
+
+        return json.toString();
+    }
+
+    /**
+     * @param jsonString The JSON representation of an endpoint, with or without its password.
+     * @return The reference to the endpoint, or {@code null} if the string is blank.
+     */
+    public static String toReference(final String jsonString) {
+        final ApiEndpoint endpoint = fromReference(jsonString);
+        return (endpoint != null) ? endpoint.toReference() : null;
+    }
+
+    /**
+     * @param jsonString The JSON representation of an endpoint, with or without its password.
+     * @return An endpoint that is {@link #equals(Object) equal} to the referenced endpoint but
+     * has no credentials, or {@code null} if the string is blank.
+     */
+    public static ApiEndpoint fromReference(final String jsonString) {
+
+        if (StringUtils.isBlank(jsonString)) {
+            return null;
+        }
+
+        final JSONObject json = JSONObject.fromObject(jsonString);
+        return new ApiEndpoint(
+                json.optString(KEY_URL, null),
+                json.optString(KEY_ORGANIZATION, null),
+                json.optString(KEY_USERNAME, null),
+                null,
+                null);
+    }
+
     @Override
     public int hashCode() {
 
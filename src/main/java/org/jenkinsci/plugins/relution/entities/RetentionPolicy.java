@@ -0,0 +1,127 @@
+package org.jenkinsci.plugins.relution.entities;
+
+import org.jenkinsci.plugins.relution.json.ApiApp;
+import org.jenkinsci.plugins.relution.json.ApiVersion;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Decides which versions of an application are deleted from the store.
+ * <p/>
+ * A version is kept if it is one of the {@link #getKeepPerStatus()} most recent versions (by
+ * version code) with its release status, or if it is younger than {@link #getKeepDays()} days.
+ * A rule that is set to <code>0</code> is disabled, if both rules are disabled no version is
+ * deleted. The most recent version of an application is always kept, as are versions whose age
+ * is unknown if the age rule is enabled.
+ */
+@SuppressWarnings("serial")
+public class RetentionPolicy implements Serializable {
+
+    private final static Comparator<ApiVersion> NEWEST_FIRST = new Comparator<ApiVersion>() {
+
+        @Override
+        public int compare(final ApiVersion lhs, final ApiVersion rhs) {
+            return lhs.versionCode > rhs.versionCode ? -1 : (lhs.versionCode == rhs.versionCode ? 0 : 1);
+        }
+    };
+
+    private final int                           keepPerStatus;
+    private final int                           keepDays;
+    private final boolean                       dryRun;
+
+    /**
+     * Constructor.
+     * @param keepPerStatus The number of versions to keep per release status, <code>0</code> to
+     * disable the rule.
+     * @param keepDays The number of days a version is kept, <code>0</code> to disable the rule.
+     * @param dryRun <code>true</code> to only report the versions that would be deleted.
+     */
+    public RetentionPolicy(final int keepPerStatus, final int keepDays, final boolean dryRun) {
+        this.keepPerStatus = Math.max(0, keepPerStatus);
+        this.keepDays = Math.max(0, keepDays);
+        this.dryRun = dryRun;
+    }
+
+    /**
+     * @return The number of versions to keep per release status, <code>0</code> if the rule is
+     * disabled.
+     */
+    public int getKeepPerStatus() {
+        return this.keepPerStatus;
+    }
+
+    /**
+     * @return The number of days a version is kept, <code>0</code> if the rule is disabled.
+     */
+    public int getKeepDays() {
+        return this.keepDays;
+    }
+
+    /**
+     * @return <code>true</code> if versions are not deleted, only reported.
+     */
+    public boolean isDryRun() {
+        return this.dryRun;
+    }
+
+    /**
+     * @return <code>true</code> if at least one rule is enabled.
+     */
+    public boolean isEnabled() {
+        return this.keepPerStatus > 0 || this.keepDays > 0;
+    }
+
+    /**
+     * Returns the versions of the specified application that should be deleted.
+     * @param app The application, with the version code, release status and creation or
+     * modification date of its versions.
+     * @param now The current time in milliseconds since the epoch.
+     * @return The versions to delete, most recent first.
+     */
+    public List<ApiVersion> select(final ApiApp app, final long now) {
+
+        final List<ApiVersion> expired = new ArrayList<ApiVersion>();
+
+        if (!this.isEnabled() || app.versions.size() < 2) {
+            return expired;
+        }
+
+        final List<ApiVersion> versions = new ArrayList<ApiVersion>(app.versions);
+        Collections.sort(versions, NEWEST_FIRST);
+
+        final Map<String, Integer> ranks = new HashMap<String, Integer>();
+        final long maxAge = TimeUnit.DAYS.toMillis(this.keepDays);
+
+        for (int index = 0; index < versions.size(); index++) {
+            final ApiVersion version = versions.get(index);
+            final String status = (version.releaseStatus != null) ? version.releaseStatus : "";
+
+            final Integer rank = ranks.get(status);
+            ranks.put(status, (rank != null) ? rank + 1 : 1);
+
+            final Long date = (version.creationDate != null) ? version.creationDate : version.modificationDate;
+
+            final boolean latest = index == 0;
+            final boolean recent = this.keepPerStatus > 0 && (rank == null || rank < this.keepPerStatus);
+            final boolean young = this.keepDays > 0 && (date == null || now - date < maxAge);
+
+            if (!latest && !recent && !young && version.uuid != null) {
+                expired.add(version);
+            }
+        }
+        return expired;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("keep %d per status, %d days%s", this.keepPerStatus, this.keepDays, this.dryRun ? ", dry run" : "");
+    }
+}
@@ -47,6 +47,32 @@ public class ApiApp {
         this.modificationDate = null;
     }
 
+    ApiApp(final String uuid, final String type, final String internalName, final List<String> platforms, final List<ApiCategory> categories,
+            final List<ApiVersion> versions, final Float rating, final Integer ratingCount, final Integer downloadCount,
+            final Map<String, List<String>> acl, final String createdBy, final Long creationDate, final String modifiedBy,
+            final Long modificationDate) {
+
+        this.uuid = uuid;
+        this.type = type;
+        this.internalName = internalName;
+
+        this.platforms.addAll(platforms);
+        this.categories.addAll(categories);
+
+        this.versions.addAll(versions);
+
+        this.rating = rating;
+        this.ratingCount = ratingCount;
+        this.downloadCount = downloadCount;
+
+        this.acl.putAll(acl);
+
+        this.createdBy = createdBy;
+        this.creationDate = creationDate;
+        this.modifiedBy = modifiedBy;
+        this.modificationDate = modificationDate;
+    }
+
     public String toJson() {
         return ApiResponse.GSON.toJson(this);
     }
@@ -16,4 +16,12 @@ public class ApiCategory {
 
         this.uuid = null;
     }
+
+    ApiCategory(final String uuid, final Map<String, String> name, final Map<String, String> description) {
+
+        this.uuid = uuid;
+
+        this.name.putAll(name);
+        this.description.putAll(description);
+    }
 }
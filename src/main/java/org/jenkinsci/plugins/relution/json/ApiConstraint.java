@@ -17,4 +17,13 @@ public class ApiConstraint {
         this.value = null;
         this.type = null;
     }
+
+    ApiConstraint(final String uuid, final String name, final Object value, final String type) {
+
+        this.uuid = uuid;
+
+        this.name = name;
+        this.value = value;
+        this.type = type;
+    }
 }
@@ -27,4 +27,19 @@ public class ApiFile {
 
         this.downloadCount = null;
     }
+
+    ApiFile(final String uuid, final String name, final String link, final String contentType, final long size, final Long modificationDate,
+            final Integer downloadCount) {
+
+        this.uuid = uuid;
+
+        this.name = name;
+        this.link = link;
+        this.contentType = contentType;
+
+        this.size = size;
+        this.modificationDate = modificationDate;
+
+        this.downloadCount = downloadCount;
+    }
 }
@@ -3,14 +3,27 @@ package org.jenkinsci.plugins.relution.json;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 
+import java.io.IOException;
+import java.io.Reader;
 import java.util.ArrayList;
 import java.util.List;
 
 
 public class ApiResponse {
 
-    public final static Gson  GSON    = new GsonBuilder().setPrettyPrinting().create();
+    /**
+     * Serializes objects without insignificant whitespace, used for request bodies. The API model
+     * is encoded and decoded by the adapters of {@link ApiTypeAdapterFactory}, without reflection.
+     */
+    public final static Gson  COMPACT = new GsonBuilder().registerTypeAdapterFactory(new ApiTypeAdapterFactory()).create();
+
+    /**
+     * Same as {@link #COMPACT}, but pretty prints JSON, used for logging.
+     */
+    public final static Gson  GSON    = new GsonBuilder().registerTypeAdapterFactory(new ApiTypeAdapterFactory()).setPrettyPrinting().create();
 
     public final int          status;
     public final String       message;
@@ -30,6 +43,75 @@ public class ApiResponse {
         return ApiResponse.fromJson(json, ApiResponse.class);
     }
 
+    public static ApiResponse fromJson(final Reader reader) {
+        return ApiResponse.GSON.fromJson(reader, ApiResponse.class);
+    }
+
+    /**
+     * Decodes a response from the specified stream, one app at a time. Only apps accepted by the
+     * filter are added to the {@link #results}. Once the specified number of apps has been
+     * accepted, remaining apps are skipped without being decoded, properties that follow the apps
+     * are still read.
+     * @param reader The reader that provides the response.
+     * @param filter The filter that decides which apps to keep.
+     * @param limit The maximum number of apps to keep.
+     * @return The decoded response.
+     * @throws IOException
+     */
+    public static ApiResponse fromJson(final Reader reader, final Filter filter, final int limit) throws IOException {
+
+        final JsonReader in = new JsonReader(reader);
+
+        int status = 0;
+        String message = null;
+        ApiError errors = null;
+        int total = 0;
+        final List<ApiApp> results = new ArrayList<ApiApp>();
+
+        in.beginObject();
+        while (in.hasNext()) {
+            final String name = in.nextName();
+
+            if (in.peek() == JsonToken.NULL) {
+                in.skipValue();
+
+            } else if (name.equals("status")) {
+                status = in.nextInt();
+
+            } else if (name.equals("message")) {
+                message = in.nextString();
+
+            } else if (name.equals("errors")) {
+                errors = GSON.fromJson(in, ApiError.class);
+
+            } else if (name.equals("total")) {
+                total = in.nextInt();
+
+            } else if (name.equals("results")) {
+                in.beginArray();
+                while (in.hasNext()) {
+                    if (results.size() >= limit) {
+                        in.skipValue();
+                        continue;
+                    }
+
+                    final ApiApp app = GSON.fromJson(in, ApiApp.class);
+
+                    if (filter.accept(app)) {
+                        results.add(app);
+                    }
+                }
+                in.endArray();
+
+            } else {
+                in.skipValue();
+            }
+        }
+        in.endObject();
+
+        return new ApiResponse(status, message, errors, total, results);
+    }
+
     protected ApiResponse() {
 
         this.status = 0;
@@ -40,6 +122,17 @@ public class ApiResponse {
         this.total = 0;
     }
 
+    ApiResponse(final int status, final String message, final ApiError errors, final int total, final List<ApiApp> results) {
+
+        this.status = status;
+        this.message = message;
+
+        this.errors = errors;
+
+        this.total = total;
+        this.results.addAll(results);
+    }
+
     public String toJson() {
         return ApiResponse.GSON.toJson(this);
     }
@@ -52,4 +145,16 @@ public class ApiResponse {
         }
         return this.s;
     }
+
+    /**
+     * Decides which apps are kept when a response is decoded from a stream.
+     */
+    public interface Filter {
+
+        /**
+         * @param app The decoded app.
+         * @return <code>true</code> to keep the app, <code>false</code> to discard it.
+         */
+        boolean accept(ApiApp app);
+    }
 }
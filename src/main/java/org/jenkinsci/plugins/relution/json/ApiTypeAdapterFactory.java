@@ -0,0 +1,780 @@
+package org.jenkinsci.plugins.relution.json;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * Creates hand-written {@link TypeAdapter}s for the classes of the API model, so they are
+ * encoded and decoded without reflection.
+ * <p/>
+ * The adapters produce the same JSON as Gson's reflective adapters: properties are written in
+ * declaration order, <code>null</code> values are omitted unless the {@link Gson} instance
+ * serializes nulls, and unknown properties are ignored when decoding.
+ */
+public class ApiTypeAdapterFactory implements TypeAdapterFactory {
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> TypeAdapter<T> create(final Gson gson, final TypeToken<T> type) {
+
+        final Class<? super T> clazz = type.getRawType();
+
+        if (clazz == ApiFile.class) {
+            return (TypeAdapter<T>) new ApiFileAdapter();
+
+        } else if (clazz == ApiCategory.class) {
+            return (TypeAdapter<T>) new ApiCategoryAdapter();
+
+        } else if (clazz == ApiConstraint.class) {
+            return (TypeAdapter<T>) new ApiConstraintAdapter(gson.getAdapter(Object.class));
+
+        } else if (clazz == ApiError.class) {
+            return (TypeAdapter<T>) new ApiErrorAdapter();
+
+        } else if (clazz == ApiVersion.class) {
+            return (TypeAdapter<T>) new ApiVersionAdapter(gson.getAdapter(ApiFile.class), gson.getAdapter(ApiConstraint.class));
+
+        } else if (clazz == ApiApp.class) {
+            return (TypeAdapter<T>) new ApiAppAdapter(gson.getAdapter(ApiCategory.class), gson.getAdapter(ApiVersion.class));
+
+        } else if (clazz == ApiResponse.class) {
+            return (TypeAdapter<T>) new ApiResponseAdapter(gson.getAdapter(ApiError.class), gson.getAdapter(ApiApp.class));
+
+        } else if (clazz == UploadResponse.class) {
+            return (TypeAdapter<T>) new UploadResponseAdapter(gson.getAdapter(ApiError.class), gson.getAdapter(ApiFile.class));
+        }
+        return null;
+    }
+
+    static String readString(final JsonReader in) throws IOException {
+
+        final JsonToken token = in.peek();
+
+        if (token == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        } else if (token == JsonToken.BOOLEAN) {
+            return Boolean.toString(in.nextBoolean());
+        }
+        return in.nextString();
+    }
+
+    static Integer readInteger(final JsonReader in) throws IOException {
+
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        return in.nextInt();
+    }
+
+    static Long readLong(final JsonReader in) throws IOException {
+
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        return in.nextLong();
+    }
+
+    static Float readFloat(final JsonReader in) throws IOException {
+
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        return (float) in.nextDouble();
+    }
+
+    static Map<String, String> readStringMap(final JsonReader in) throws IOException {
+
+        final Map<String, String> map = new HashMap<String, String>();
+
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return map;
+        }
+
+        in.beginObject();
+        while (in.hasNext()) {
+            map.put(in.nextName(), readString(in));
+        }
+        in.endObject();
+        return map;
+    }
+
+    static List<String> readStringList(final JsonReader in) throws IOException {
+
+        final List<String> list = new ArrayList<String>();
+
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return list;
+        }
+
+        in.beginArray();
+        while (in.hasNext()) {
+            list.add(readString(in));
+        }
+        in.endArray();
+        return list;
+    }
+
+    static <E> List<E> readList(final JsonReader in, final TypeAdapter<E> adapter) throws IOException {
+
+        final List<E> list = new ArrayList<E>();
+
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return list;
+        }
+
+        in.beginArray();
+        while (in.hasNext()) {
+            list.add(adapter.read(in));
+        }
+        in.endArray();
+        return list;
+    }
+
+    static void writeStringMap(final JsonWriter out, final String name, final Map<String, String> map) throws IOException {
+
+        out.name(name);
+        out.beginObject();
+        for (final Map.Entry<String, String> entry : map.entrySet()) {
+            out.name(entry.getKey()).value(entry.getValue());
+        }
+        out.endObject();
+    }
+
+    static void writeStringList(final JsonWriter out, final String name, final List<String> list) throws IOException {
+
+        out.name(name);
+        out.beginArray();
+        for (final String value : list) {
+            out.value(value);
+        }
+        out.endArray();
+    }
+
+    static <E> void writeList(final JsonWriter out, final String name, final List<E> list, final TypeAdapter<E> adapter) throws IOException {
+
+        out.name(name);
+        out.beginArray();
+        for (final E value : list) {
+            adapter.write(out, value);
+        }
+        out.endArray();
+    }
+
+    private static class ApiFileAdapter extends TypeAdapter<ApiFile> {
+
+        @Override
+        public void write(final JsonWriter out, final ApiFile value) throws IOException {
+
+            if (value == null) {
+                out.nullValue();
+                return;
+            }
+
+            out.beginObject();
+            out.name("uuid").value(value.uuid);
+            out.name("name").value(value.name);
+            out.name("link").value(value.link);
+            out.name("contentType").value(value.contentType);
+            out.name("size").value(value.size);
+            out.name("modificationDate").value(value.modificationDate);
+            out.name("downloadCount").value(value.downloadCount);
+            out.endObject();
+        }
+
+        @Override
+        public ApiFile read(final JsonReader in) throws IOException {
+
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+
+            String uuid = null;
+            String name = null;
+            String link = null;
+            String contentType = null;
+            long size = 0;
+            Long modificationDate = null;
+            Integer downloadCount = null;
+
+            in.beginObject();
+            while (in.hasNext()) {
+                final String key = in.nextName();
+
+                if (key.equals("uuid")) {
+                    uuid = readString(in);
+                } else if (key.equals("name")) {
+                    name = readString(in);
+                } else if (key.equals("link")) {
+                    link = readString(in);
+                } else if (key.equals("contentType")) {
+                    contentType = readString(in);
+                } else if (key.equals("size") && in.peek() != JsonToken.NULL) {
+                    size = in.nextLong();
+                } else if (key.equals("modificationDate")) {
+                    modificationDate = readLong(in);
+                } else if (key.equals("downloadCount")) {
+                    downloadCount = readInteger(in);
+                } else {
+                    in.skipValue();
+                }
+            }
+            in.endObject();
+
+            return new ApiFile(uuid, name, link, contentType, size, modificationDate, downloadCount);
+        }
+    }
+
+    private static class ApiCategoryAdapter extends TypeAdapter<ApiCategory> {
+
+        @Override
+        public void write(final JsonWriter out, final ApiCategory value) throws IOException {
+
+            if (value == null) {
+                out.nullValue();
+                return;
+            }
+
+            out.beginObject();
+            out.name("uuid").value(value.uuid);
+            writeStringMap(out, "name", value.name);
+            writeStringMap(out, "description", value.description);
+            out.endObject();
+        }
+
+        @Override
+        public ApiCategory read(final JsonReader in) throws IOException {
+
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+
+            String uuid = null;
+            Map<String, String> name = null;
+            Map<String, String> description = null;
+
+            in.beginObject();
+            while (in.hasNext()) {
+                final String key = in.nextName();
+
+                if (key.equals("uuid")) {
+                    uuid = readString(in);
+                } else if (key.equals("name")) {
+                    name = readStringMap(in);
+                } else if (key.equals("description")) {
+                    description = readStringMap(in);
+                } else {
+                    in.skipValue();
+                }
+            }
+            in.endObject();
+
+            return new ApiCategory(uuid, orEmpty(name), orEmpty(description));
+        }
+    }
+
+    private static class ApiConstraintAdapter extends TypeAdapter<ApiConstraint> {
+
+        private final TypeAdapter<Object> mObjectAdapter;
+
+        public ApiConstraintAdapter(final TypeAdapter<Object> objectAdapter) {
+            this.mObjectAdapter = objectAdapter;
+        }
+
+        @Override
+        public void write(final JsonWriter out, final ApiConstraint value) throws IOException {
+
+            if (value == null) {
+                out.nullValue();
+                return;
+            }
+
+            out.beginObject();
+            out.name("uuid").value(value.uuid);
+            out.name("name").value(value.name);
+            out.name("value");
+            this.mObjectAdapter.write(out, value.value);
+            out.name("type").value(value.type);
+            out.endObject();
+        }
+
+        @Override
+        public ApiConstraint read(final JsonReader in) throws IOException {
+
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+
+            String uuid = null;
+            String name = null;
+            Object value = null;
+            String type = null;
+
+            in.beginObject();
+            while (in.hasNext()) {
+                final String key = in.nextName();
+
+                if (key.equals("uuid")) {
+                    uuid = readString(in);
+                } else if (key.equals("name")) {
+                    name = readString(in);
+                } else if (key.equals("value")) {
+                    value = this.mObjectAdapter.read(in);
+                } else if (key.equals("type")) {
+                    type = readString(in);
+                } else {
+                    in.skipValue();
+                }
+            }
+            in.endObject();
+
+            return new ApiConstraint(uuid, name, value, type);
+        }
+    }
+
+    private static class ApiErrorAdapter extends TypeAdapter<ApiError> {
+
+        @Override
+        public void write(final JsonWriter out, final ApiError value) throws IOException {
+
+            if (value == null) {
+                out.nullValue();
+                return;
+            }
+
+            out.beginObject();
+            out.endObject();
+        }
+
+        @Override
+        public ApiError read(final JsonReader in) throws IOException {
+
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+
+            in.skipValue();
+            return new ApiError();
+        }
+    }
+
+    private static class ApiVersionAdapter extends TypeAdapter<ApiVersion> {
+
+        private final TypeAdapter<ApiFile>       mFileAdapter;
+        private final TypeAdapter<ApiConstraint> mConstraintAdapter;
+
+        public ApiVersionAdapter(final TypeAdapter<ApiFile> fileAdapter, final TypeAdapter<ApiConstraint> constraintAdapter) {
+            this.mFileAdapter = fileAdapter;
+            this.mConstraintAdapter = constraintAdapter;
+        }
+
+        @Override
+        public void write(final JsonWriter out, final ApiVersion value) throws IOException {
+
+            if (value == null) {
+                out.nullValue();
+                return;
+            }
+
+            out.beginObject();
+            out.name("uuid").value(value.uuid);
+            out.name("appUuid").value(value.appUuid);
+            out.name("versionName").value(value.versionName);
+            out.name("versionCode").value(value.versionCode);
+            out.name("releaseStatus").value(value.releaseStatus);
+            out.name("downloadCount").value(value.downloadCount);
+            out.name("installCount").value(value.installCount);
+            out.name("link").value(value.link);
+            out.name("file");
+            this.mFileAdapter.write(out, value.file);
+            out.name("icon");
+            this.mFileAdapter.write(out, value.icon);
+            writeList(out, "screenshots", value.screenshots, this.mFileAdapter);
+            writeList(out, "constraints", value.constraints, this.mConstraintAdapter);
+            writeStringMap(out, "name", value.name);
+            writeStringMap(out, "keywords", value.keywords);
+            writeStringMap(out, "description", value.description);
+            writeStringMap(out, "changelog", value.changelog);
+            out.name("copyright").value(value.copyright);
+            out.name("developerName").value(value.developerName);
+            out.name("developerWeb").value(value.developerWeb);
+            out.name("developerEmail").value(value.developerEmail);
+            out.name("createdBy").value(value.createdBy);
+            out.name("creationDate").value(value.creationDate);
+            out.name("modifiedBy").value(value.modifiedBy);
+            out.name("modificationDate").value(value.modificationDate);
+            out.endObject();
+        }
+
+        @Override
+        public ApiVersion read(final JsonReader in) throws IOException {
+
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+
+            String uuid = null;
+            String appUuid = null;
+            String versionName = null;
+            int versionCode = 0;
+            String releaseStatus = null;
+            Integer downloadCount = null;
+            Integer installCount = null;
+            String link = null;
+            ApiFile file = null;
+            ApiFile icon = null;
+            List<ApiFile> screenshots = null;
+            List<ApiConstraint> constraints = null;
+            Map<String, String> name = null;
+            Map<String, String> keywords = null;
+            Map<String, String> description = null;
+            Map<String, String> changelog = null;
+            String copyright = null;
+            String developerName = null;
+            String developerWeb = null;
+            String developerEmail = null;
+            String createdBy = null;
+            Long creationDate = null;
+            String modifiedBy = null;
+            Long modificationDate = null;
+
+            in.beginObject();
+            while (in.hasNext()) {
+                final String key = in.nextName();
+
+                if (key.equals("uuid")) {
+                    uuid = readString(in);
+                } else if (key.equals("appUuid")) {
+                    appUuid = readString(in);
+                } else if (key.equals("versionName")) {
+                    versionName = readString(in);
+                } else if (key.equals("versionCode") && in.peek() != JsonToken.NULL) {
+                    versionCode = in.nextInt();
+                } else if (key.equals("releaseStatus")) {
+                    releaseStatus = readString(in);
+                } else if (key.equals("downloadCount")) {
+                    downloadCount = readInteger(in);
+                } else if (key.equals("installCount")) {
+                    installCount = readInteger(in);
+                } else if (key.equals("link")) {
+                    link = readString(in);
+                } else if (key.equals("file")) {
+                    file = this.mFileAdapter.read(in);
+                } else if (key.equals("icon")) {
+                    icon = this.mFileAdapter.read(in);
+                } else if (key.equals("screenshots")) {
+                    screenshots = readList(in, this.mFileAdapter);
+                } else if (key.equals("constraints")) {
+                    constraints = readList(in, this.mConstraintAdapter);
+                } else if (key.equals("name")) {
+                    name = readStringMap(in);
+                } else if (key.equals("keywords")) {
+                    keywords = readStringMap(in);
+                } else if (key.equals("description")) {
+                    description = readStringMap(in);
+                } else if (key.equals("changelog")) {
+                    changelog = readStringMap(in);
+                } else if (key.equals("copyright")) {
+                    copyright = readString(in);
+                } else if (key.equals("developerName")) {
+                    developerName = readString(in);
+                } else if (key.equals("developerWeb")) {
+                    developerWeb = readString(in);
+                } else if (key.equals("developerEmail")) {
+                    developerEmail = readString(in);
+                } else if (key.equals("createdBy")) {
+                    createdBy = readString(in);
+                } else if (key.equals("creationDate")) {
+                    creationDate = readLong(in);
+                } else if (key.equals("modifiedBy")) {
+                    modifiedBy = readString(in);
+                } else if (key.equals("modificationDate")) {
+                    modificationDate = readLong(in);
+                } else {
+                    in.skipValue();
+                }
+            }
+            in.endObject();
+
+            return new ApiVersion(uuid, appUuid, versionName, versionCode, releaseStatus, downloadCount, installCount, link, file, icon,
+                    orEmpty(screenshots), orEmpty(constraints), orEmpty(name), orEmpty(keywords), orEmpty(description), orEmpty(changelog),
+                    copyright, developerName, developerWeb, developerEmail, createdBy, creationDate, modifiedBy, modificationDate);
+        }
+    }
+
+    private static class ApiAppAdapter extends TypeAdapter<ApiApp> {
+
+        private final TypeAdapter<ApiCategory> mCategoryAdapter;
+        private final TypeAdapter<ApiVersion>  mVersionAdapter;
+
+        public ApiAppAdapter(final TypeAdapter<ApiCategory> categoryAdapter, final TypeAdapter<ApiVersion> versionAdapter) {
+            this.mCategoryAdapter = categoryAdapter;
+            this.mVersionAdapter = versionAdapter;
+        }
+
+        @Override
+        public void write(final JsonWriter out, final ApiApp value) throws IOException {
+
+            if (value == null) {
+                out.nullValue();
+                return;
+            }
+
+            out.beginObject();
+            out.name("uuid").value(value.uuid);
+            out.name("type").value(value.type);
+            out.name("internalName").value(value.internalName);
+            writeStringList(out, "platforms", value.platforms);
+            writeList(out, "categories", value.categories, this.mCategoryAdapter);
+            writeList(out, "versions", value.versions, this.mVersionAdapter);
+            out.name("rating").value(value.rating);
+            out.name("ratingCount").value(value.ratingCount);
+            out.name("downloadCount").value(value.downloadCount);
+
+            out.name("acl");
+            out.beginObject();
+            for (final Map.Entry<String, List<String>> entry : value.acl.entrySet()) {
+                writeStringList(out, entry.getKey(), entry.getValue());
+            }
+            out.endObject();
+
+            out.name("createdBy").value(value.createdBy);
+            out.name("creationDate").value(value.creationDate);
+            out.name("modifiedBy").value(value.modifiedBy);
+            out.name("modificationDate").value(value.modificationDate);
+            out.endObject();
+        }
+
+        @Override
+        public ApiApp read(final JsonReader in) throws IOException {
+
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+
+            String uuid = null;
+            String type = null;
+            String internalName = null;
+            List<String> platforms = null;
+            List<ApiCategory> categories = null;
+            List<ApiVersion> versions = null;
+            Float rating = null;
+            Integer ratingCount = null;
+            Integer downloadCount = null;
+            final Map<String, List<String>> acl = new HashMap<String, List<String>>();
+            String createdBy = null;
+            Long creationDate = null;
+            String modifiedBy = null;
+            Long modificationDate = null;
+
+            in.beginObject();
+            while (in.hasNext()) {
+                final String key = in.nextName();
+
+                if (key.equals("uuid")) {
+                    uuid = readString(in);
+                } else if (key.equals("type")) {
+                    type = readString(in);
+                } else if (key.equals("internalName")) {
+                    internalName = readString(in);
+                } else if (key.equals("platforms")) {
+                    platforms = readStringList(in);
+                } else if (key.equals("categories")) {
+                    categories = readList(in, this.mCategoryAdapter);
+                } else if (key.equals("versions")) {
+                    versions = readList(in, this.mVersionAdapter);
+                } else if (key.equals("rating")) {
+                    rating = readFloat(in);
+                } else if (key.equals("ratingCount")) {
+                    ratingCount = readInteger(in);
+                } else if (key.equals("downloadCount")) {
+                    downloadCount = readInteger(in);
+                } else if (key.equals("acl") && in.peek() != JsonToken.NULL) {
+                    in.beginObject();
+                    while (in.hasNext()) {
+                        acl.put(in.nextName(), readStringList(in));
+                    }
+                    in.endObject();
+                } else if (key.equals("createdBy")) {
+                    createdBy = readString(in);
+                } else if (key.equals("creationDate")) {
+                    creationDate = readLong(in);
+                } else if (key.equals("modifiedBy")) {
+                    modifiedBy = readString(in);
+                } else if (key.equals("modificationDate")) {
+                    modificationDate = readLong(in);
+                } else {
+                    in.skipValue();
+                }
+            }
+            in.endObject();
+
+            return new ApiApp(uuid, type, internalName, orEmpty(platforms), orEmpty(categories), orEmpty(versions), rating, ratingCount,
+                    downloadCount, acl, createdBy, creationDate, modifiedBy, modificationDate);
+        }
+    }
+
+    private static class ApiResponseAdapter extends TypeAdapter<ApiResponse> {
+
+        private final TypeAdapter<ApiError> mErrorAdapter;
+        private final TypeAdapter<ApiApp>   mAppAdapter;
+
+        public ApiResponseAdapter(final TypeAdapter<ApiError> errorAdapter, final TypeAdapter<ApiApp> appAdapter) {
+            this.mErrorAdapter = errorAdapter;
+            this.mAppAdapter = appAdapter;
+        }
+
+        @Override
+        public void write(final JsonWriter out, final ApiResponse value) throws IOException {
+
+            if (value == null) {
+                out.nullValue();
+                return;
+            }
+
+            out.beginObject();
+            out.name("status").value(value.status);
+            out.name("message").value(value.message);
+            out.name("errors");
+            this.mErrorAdapter.write(out, value.errors);
+            out.name("total").value(value.total);
+            writeList(out, "results", value.results, this.mAppAdapter);
+            out.endObject();
+        }
+
+        @Override
+        public ApiResponse read(final JsonReader in) throws IOException {
+
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+
+            int status = 0;
+            String message = null;
+            ApiError errors = null;
+            int total = 0;
+            List<ApiApp> results = null;
+
+            in.beginObject();
+            while (in.hasNext()) {
+                final String key = in.nextName();
+
+                if (key.equals("status") && in.peek() != JsonToken.NULL) {
+                    status = in.nextInt();
+                } else if (key.equals("message")) {
+                    message = readString(in);
+                } else if (key.equals("errors")) {
+                    errors = this.mErrorAdapter.read(in);
+                } else if (key.equals("total") && in.peek() != JsonToken.NULL) {
+                    total = in.nextInt();
+                } else if (key.equals("results")) {
+                    results = readList(in, this.mAppAdapter);
+                } else {
+                    in.skipValue();
+                }
+            }
+            in.endObject();
+
+            return new ApiResponse(status, message, errors, total, orEmpty(results));
+        }
+    }
+
+    private static class UploadResponseAdapter extends TypeAdapter<UploadResponse> {
+
+        private final TypeAdapter<ApiError> mErrorAdapter;
+        private final TypeAdapter<ApiFile>  mFileAdapter;
+
+        public UploadResponseAdapter(final TypeAdapter<ApiError> errorAdapter, final TypeAdapter<ApiFile> fileAdapter) {
+            this.mErrorAdapter = errorAdapter;
+            this.mFileAdapter = fileAdapter;
+        }
+
+        @Override
+        public void write(final JsonWriter out, final UploadResponse value) throws IOException {
+
+            if (value == null) {
+                out.nullValue();
+                return;
+            }
+
+            out.beginObject();
+            out.name("status").value(value.status);
+            out.name("message").value(value.message);
+            out.name("errors");
+            this.mErrorAdapter.write(out, value.errors);
+            out.name("total").value(value.total);
+            writeList(out, "results", value.results, this.mFileAdapter);
+            out.endObject();
+        }
+
+        @Override
+        public UploadResponse read(final JsonReader in) throws IOException {
+
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+
+            int status = 0;
+            String message = null;
+            ApiError errors = null;
+            int total = 0;
+            List<ApiFile> results = null;
+
+            in.beginObject();
+            while (in.hasNext()) {
+                final String key = in.nextName();
+
+                if (key.equals("status") && in.peek() != JsonToken.NULL) {
+                    status = in.nextInt();
+                } else if (key.equals("message")) {
+                    message = readString(in);
+                } else if (key.equals("errors")) {
+                    errors = this.mErrorAdapter.read(in);
+                } else if (key.equals("total") && in.peek() != JsonToken.NULL) {
+                    total = in.nextInt();
+                } else if (key.equals("results")) {
+                    results = readList(in, this.mFileAdapter);
+                } else {
+                    in.skipValue();
+                }
+            }
+            in.endObject();
+
+            return new UploadResponse(status, message, errors, total, orEmpty(results));
+        }
+    }
+
+    private static <E> List<E> orEmpty(final List<E> list) {
+        return list != null ? list : new ArrayList<E>();
+    }
+
+    private static <K, V> Map<K, V> orEmpty(final Map<K, V> map) {
+        return map != null ? map : new HashMap<K, V>();
+    }
+}
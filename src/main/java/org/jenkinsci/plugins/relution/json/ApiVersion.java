@@ -1,10 +1,15 @@
 
 package org.jenkinsci.plugins.relution.json;
 
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 
 
 public class ApiVersion {
@@ -46,6 +51,7 @@ public class ApiVersion {
     public final Long                modificationDate;
 
     private transient String         s;
+    private transient JsonObject     snapshot;
 
     protected ApiVersion() {
         this.uuid = null;
@@ -75,6 +81,134 @@ public class ApiVersion {
         this.modificationDate = null;
     }
 
+    ApiVersion(final String uuid, final String appUuid, final String versionName, final int versionCode, final String releaseStatus,
+            final Integer downloadCount, final Integer installCount, final String link, final ApiFile file, final ApiFile icon,
+            final List<ApiFile> screenshots, final List<ApiConstraint> constraints, final Map<String, String> name,
+            final Map<String, String> keywords, final Map<String, String> description, final Map<String, String> changelog,
+            final String copyright, final String developerName, final String developerWeb, final String developerEmail,
+            final String createdBy, final Long creationDate, final String modifiedBy, final Long modificationDate) {
+
+        this.uuid = uuid;
+        this.appUuid = appUuid;
+
+        this.releaseStatus = releaseStatus;
+        this.versionName = versionName;
+        this.versionCode = versionCode;
+
+        this.downloadCount = downloadCount;
+        this.installCount = installCount;
+
+        this.link = link;
+
+        this.file = file;
+        this.icon = icon;
+        this.screenshots.addAll(screenshots);
+
+        this.constraints.addAll(constraints);
+
+        this.name.putAll(name);
+        this.keywords.putAll(keywords);
+
+        this.description.putAll(description);
+        this.changelog.putAll(changelog);
+
+        this.copyright = copyright;
+        this.developerName = developerName;
+        this.developerWeb = developerWeb;
+        this.developerEmail = developerEmail;
+
+        this.createdBy = createdBy;
+        this.creationDate = creationDate;
+
+        this.modifiedBy = modifiedBy;
+        this.modificationDate = modificationDate;
+    }
+
+    /**
+     * Creates a new version of an application that takes over the store presentation (name,
+     * description, icon, screenshots, developer) and the constraints of the specified previous
+     * version. The release status is not taken over, a new version must not be released because
+     * its predecessor was.
+     * @param previous The latest version of the application known to the store.
+     * @param file The uploaded file of the new version.
+     * @param versionName The version name of the new version.
+     * @param versionCode The version code of the new version.
+     * @param releaseStatus The release status of the new version.
+     * @return A new {@link ApiVersion} that has not been saved yet.
+     */
+    public static ApiVersion successorOf(final ApiVersion previous, final ApiFile file, final String versionName, final int versionCode,
+            final String releaseStatus) {
+
+        final List<ApiConstraint> constraints = new ArrayList<ApiConstraint>();
+
+        for (final ApiConstraint constraint : previous.constraints) {
+            constraints.add(new ApiConstraint(null, constraint.name, constraint.value, constraint.type));
+        }
+
+        return new ApiVersion(
+                null,
+                previous.appUuid,
+                versionName,
+                versionCode,
+                releaseStatus,
+                null,
+                null,
+                null,
+                file,
+                previous.icon,
+                previous.screenshots,
+                constraints,
+                previous.name,
+                previous.keywords,
+                previous.description,
+                new HashMap<String, String>(),
+                previous.copyright,
+                previous.developerName,
+                previous.developerWeb,
+                previous.developerEmail,
+                null,
+                null,
+                null,
+                null);
+    }
+
+    /**
+     * Starts tracking changes of the version. Changes are tracked by comparing the version to a
+     * snapshot of its current state, because its properties are modified directly.
+     */
+    public void markClean() {
+        this.snapshot = ApiResponse.COMPACT.toJsonTree(this).getAsJsonObject();
+    }
+
+    /**
+     * Returns the properties that have changed since {@link #markClean()} was called. A property
+     * that has been removed is returned with a <code>null</code> value. Maps and lists are
+     * returned as a whole if any of their elements has changed.
+     * @return The changed properties, or <code>null</code> if changes are not tracked.
+     */
+    public JsonObject getChanges() {
+
+        if (this.snapshot == null) {
+            return null;
+        }
+
+        final JsonObject current = ApiResponse.COMPACT.toJsonTree(this).getAsJsonObject();
+        final JsonObject changes = new JsonObject();
+
+        for (final Entry<String, JsonElement> property : current.entrySet()) {
+            if (!property.getValue().equals(this.snapshot.get(property.getKey()))) {
+                changes.add(property.getKey(), property.getValue());
+            }
+        }
+
+        for (final Entry<String, JsonElement> property : this.snapshot.entrySet()) {
+            if (!current.has(property.getKey())) {
+                changes.add(property.getKey(), JsonNull.INSTANCE);
+            }
+        }
+        return changes;
+    }
+
     public String toJson() {
         return ApiResponse.GSON.toJson(this);
     }
@@ -2,15 +2,15 @@
 package org.jenkinsci.plugins.relution.json;
 
 import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
 
+import java.io.Reader;
 import java.util.ArrayList;
 import java.util.List;
 
 
 public class UploadResponse {
 
-    public final static Gson   GSON    = new GsonBuilder().setPrettyPrinting().create();
+    public final static Gson   GSON    = ApiResponse.GSON;
 
     public final int           status;
     public final String        message;
@@ -30,6 +30,10 @@ public class UploadResponse {
         return UploadResponse.fromJson(json, UploadResponse.class);
     }
 
+    public static UploadResponse fromJson(final Reader reader) {
+        return UploadResponse.GSON.fromJson(reader, UploadResponse.class);
+    }
+
     protected UploadResponse() {
 
         this.status = 0;
@@ -40,6 +44,17 @@ public class UploadResponse {
         this.total = 0;
     }
 
+    UploadResponse(final int status, final String message, final ApiError errors, final int total, final List<ApiFile> results) {
+
+        this.status = status;
+        this.message = message;
+
+        this.errors = errors;
+
+        this.total = total;
+        this.results.addAll(results);
+    }
+
     public String toJson() {
         return UploadResponse.GSON.toJson(this);
     }
@@ -0,0 +1,245 @@
+package org.jenkinsci.plugins.relution.metadata;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+
+
+/**
+ * Reads the package name and version of an application from the compiled (binary XML)
+ * <code>AndroidManifest.xml</code> of an Android package.
+ * <p/>
+ * Only the string pool and the attributes of the root <code>manifest</code> element are decoded,
+ * the remainder of the document is not read.
+ */
+class AndroidManifestParser {
+
+    private final static Charset UTF_8                = Charset.forName("UTF-8");
+    private final static Charset UTF_16LE             = Charset.forName("UTF-16LE");
+
+    private final static int     RES_XML_TYPE         = 0x0003;
+    private final static int     RES_STRING_POOL_TYPE = 0x0001;
+    private final static int     RES_XML_START_TAG    = 0x0102;
+
+    private final static int     UTF8_FLAG            = 1 << 8;
+    private final static int     NO_ENTRY             = 0xFFFFFFFF;
+
+    private final static int     TYPE_STRING          = 0x03;
+    private final static int     TYPE_INT_DEC         = 0x10;
+    private final static int     TYPE_INT_HEX         = 0x11;
+
+    private final static String  MANIFEST             = "manifest";
+    private final static String  PACKAGE              = "package";
+    private final static String  VERSION_CODE         = "versionCode";
+    private final static String  VERSION_NAME         = "versionName";
+
+    private String               mPackageName;
+    private String               mVersionName;
+    private Integer              mVersionCode;
+
+    private AndroidManifestParser() {
+    }
+
+    /**
+     * Parses the specified binary XML document.
+     * @param data The content of the manifest.
+     * @return The parsed manifest, or <code>null</code> if the data is not a binary XML document
+     * or does not contain a <code>manifest</code> element.
+     */
+    static AndroidManifestParser parse(final byte[] data) {
+
+        final ByteBuffer buffer = ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
+
+        try {
+            if (buffer.getShort(0) != RES_XML_TYPE) {
+                return null;
+            }
+
+            String[] strings = null;
+            int position = buffer.getShort(2) & 0xFFFF;
+
+            while (position + 8 <= data.length) {
+                final int type = buffer.getShort(position) & 0xFFFF;
+                final int size = buffer.getInt(position + 4);
+
+                if (size < 8) {
+                    return null;
+                }
+
+                if (type == RES_STRING_POOL_TYPE) {
+                    strings = readStringPool(buffer, position, size);
+
+                } else if (type == RES_XML_START_TAG && strings != null) {
+                    final AndroidManifestParser manifest = new AndroidManifestParser();
+                    return manifest.readManifest(buffer, position, strings) ? manifest : null;
+                }
+                position += size;
+            }
+
+        } catch (final IndexOutOfBoundsException e) {
+            return null;
+        } catch (final BufferUnderflowException e) {
+            return null;
+        }
+        return null;
+    }
+
+    String getPackageName() {
+        return this.mPackageName;
+    }
+
+    String getVersionName() {
+        return this.mVersionName;
+    }
+
+    Integer getVersionCode() {
+        return this.mVersionCode;
+    }
+
+    private boolean readManifest(final ByteBuffer buffer, final int chunk, final String[] strings) {
+
+        final int headerSize = buffer.getShort(chunk + 2) & 0xFFFF;
+        final int extension = chunk + headerSize;
+
+        if (!MANIFEST.equals(string(strings, buffer.getInt(extension + 4)))) {
+            return false;
+        }
+
+        final int attributeStart = buffer.getShort(extension + 8) & 0xFFFF;
+        final int attributeSize = buffer.getShort(extension + 10) & 0xFFFF;
+        final int attributeCount = buffer.getShort(extension + 12) & 0xFFFF;
+
+        for (int index = 0; index < attributeCount; index++) {
+            final int attribute = extension + attributeStart + index * attributeSize;
+
+            final String name = string(strings, buffer.getInt(attribute + 4));
+            final int rawValue = buffer.getInt(attribute + 8);
+            final int dataType = buffer.get(attribute + 15) & 0xFF;
+            final int data = buffer.getInt(attribute + 16);
+
+            if (PACKAGE.equals(name)) {
+                this.mPackageName = stringValue(strings, rawValue, dataType, data);
+            } else if (VERSION_NAME.equals(name)) {
+                this.mVersionName = stringValue(strings, rawValue, dataType, data);
+            } else if (VERSION_CODE.equals(name)) {
+                this.mVersionCode = intValue(strings, rawValue, dataType, data);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return The strings of the pool, or <code>null</code> if the pool does not fit into its
+     * chunk.
+     */
+    private static String[] readStringPool(final ByteBuffer buffer, final int chunk, final int size) {
+
+        final int stringCount = buffer.getInt(chunk + 8);
+        final int flags = buffer.getInt(chunk + 16);
+        final int stringsStart = buffer.getInt(chunk + 20);
+        final int headerSize = buffer.getShort(chunk + 2) & 0xFFFF;
+
+        // Each string has an offset of four bytes, a corrupt count must not allocate the pool
+        if (stringCount < 0 || stringCount > (size - headerSize) / 4) {
+            return null;
+        }
+
+        final boolean utf8 = (flags & UTF8_FLAG) != 0;
+        final String[] strings = new String[stringCount];
+
+        for (int index = 0; index < stringCount; index++) {
+            final int offset = chunk + stringsStart + buffer.getInt(chunk + headerSize + index * 4);
+            strings[index] = utf8 ? readUtf8(buffer, offset) : readUtf16(buffer, offset);
+        }
+        return strings;
+    }
+
+    private static String readUtf8(final ByteBuffer buffer, final int offset) {
+
+        int position = offset;
+
+        // The length in characters precedes the length in bytes, both use one or two bytes
+        position += ((buffer.get(position) & 0x80) != 0) ? 2 : 1;
+
+        int length = buffer.get(position) & 0xFF;
+        if ((length & 0x80) != 0) {
+            length = ((length & 0x7F) << 8) | (buffer.get(position + 1) & 0xFF);
+            position += 2;
+        } else {
+            position += 1;
+        }
+
+        final byte[] bytes = new byte[length];
+        for (int index = 0; index < length; index++) {
+            bytes[index] = buffer.get(position + index);
+        }
+        return new String(bytes, UTF_8);
+    }
+
+    private static String readUtf16(final ByteBuffer buffer, final int offset) {
+
+        int position = offset;
+
+        int length = buffer.getShort(position) & 0xFFFF;
+        if ((length & 0x8000) != 0) {
+            length = ((length & 0x7FFF) << 16) | (buffer.getShort(position + 2) & 0xFFFF);
+            position += 4;
+        } else {
+            position += 2;
+        }
+
+        if (length > (buffer.limit() - position) / 2) {
+            throw new IndexOutOfBoundsException("String exceeds the manifest: " + length);
+        }
+
+        final byte[] bytes = new byte[length * 2];
+        for (int index = 0; index < bytes.length; index++) {
+            bytes[index] = buffer.get(position + index);
+        }
+        return new String(bytes, UTF_16LE);
+    }
+
+    private static String string(final String[] strings, final int index) {
+
+        if (index < 0 || index >= strings.length) {
+            return null;
+        }
+        return strings[index];
+    }
+
+    private static String stringValue(final String[] strings, final int rawValue, final int dataType, final int data) {
+
+        if (rawValue != NO_ENTRY) {
+            return string(strings, rawValue);
+        }
+
+        if (dataType == TYPE_STRING) {
+            return string(strings, data);
+        } else if (dataType == TYPE_INT_DEC || dataType == TYPE_INT_HEX) {
+            return String.valueOf(data);
+        }
+
+        // References to resources would require the resource table, leave them to the server
+        return null;
+    }
+
+    private static Integer intValue(final String[] strings, final int rawValue, final int dataType, final int data) {
+
+        if (dataType == TYPE_INT_DEC || dataType == TYPE_INT_HEX) {
+            return data;
+        }
+
+        final String value = stringValue(strings, rawValue, dataType, data);
+
+        if (value == null) {
+            return null;
+        }
+
+        try {
+            return Integer.valueOf(value.trim());
+        } catch (final NumberFormatException e) {
+            return null;
+        }
+    }
+}
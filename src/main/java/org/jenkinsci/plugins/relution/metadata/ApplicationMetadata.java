@@ -0,0 +1,189 @@
+package org.jenkinsci.plugins.relution.metadata;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Enumeration;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
+
+
+/**
+ * The identity of an application package as declared by the package itself.
+ * <p/>
+ * The metadata is read from the manifest of an Android (<code>.apk</code>) or iOS
+ * (<code>.ipa</code>) package without unpacking the archive: only the central directory of the
+ * zip file and the manifest entry are read. This allows the application and version a package
+ * belongs to be known before the package has been uploaded.
+ */
+public class ApplicationMetadata {
+
+    /**
+     * The platform of Android packages.
+     */
+    public final static String   ANDROID              = "ANDROID";
+
+    /**
+     * The platform of iOS packages.
+     */
+    public final static String   IOS                  = "IOS";
+
+    private final static String  ANDROID_MANIFEST     = "AndroidManifest.xml";
+    private final static Pattern IOS_INFO_PLIST       = Pattern.compile("Payload/[^/]+\\.app/Info\\.plist");
+
+    private final static String  BUNDLE_IDENTIFIER    = "CFBundleIdentifier";
+    private final static String  BUNDLE_SHORT_VERSION = "CFBundleShortVersionString";
+    private final static String  BUNDLE_VERSION       = "CFBundleVersion";
+
+    private final static int     MAX_MANIFEST_SIZE    = 4 * 1024 * 1024;
+
+    public final String          platform;
+    public final String          internalName;
+    public final String          versionName;
+    public final Integer         versionCode;
+
+    ApplicationMetadata(final String platform, final String internalName, final String versionName, final Integer versionCode) {
+        this.platform = platform;
+        this.internalName = internalName;
+        this.versionName = versionName;
+        this.versionCode = versionCode;
+    }
+
+    /**
+     * Reads the metadata of the specified application package.
+     * @param file An Android or iOS application package.
+     * @return The {@link ApplicationMetadata} of the package, or <code>null</code> if the file is
+     * not a supported package or its manifest does not declare the application's identity.
+     * @throws IOException if the file could not be read.
+     */
+    public static ApplicationMetadata read(final File file) throws IOException {
+
+        final ZipFile zip;
+
+        try {
+            zip = new ZipFile(file);
+        } catch (final ZipException e) {
+            return null;
+        }
+
+        try {
+            final String name = file.getName().toLowerCase(Locale.ENGLISH);
+
+            if (name.endsWith(".apk")) {
+                return readAndroid(zip);
+            } else if (name.endsWith(".ipa")) {
+                return readIos(zip);
+            }
+            return null;
+
+        } finally {
+            zip.close();
+        }
+    }
+
+    /**
+     * @return <code>true</code> if the application and the version are identified.
+     */
+    public boolean isComplete() {
+        return this.internalName != null && this.versionName != null && this.versionCode != null;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ENGLISH, "%s %s (%s) [%s]", this.internalName, this.versionName, this.versionCode, this.platform);
+    }
+
+    private static ApplicationMetadata readAndroid(final ZipFile zip) throws IOException {
+
+        final ZipEntry entry = zip.getEntry(ANDROID_MANIFEST);
+
+        if (entry == null) {
+            return null;
+        }
+
+        final AndroidManifestParser manifest = AndroidManifestParser.parse(read(zip, entry));
+
+        if (manifest == null) {
+            return null;
+        }
+        return new ApplicationMetadata(ANDROID, manifest.getPackageName(), manifest.getVersionName(), manifest.getVersionCode());
+    }
+
+    private static ApplicationMetadata readIos(final ZipFile zip) throws IOException {
+
+        final Enumeration<? extends ZipEntry> entries = zip.entries();
+
+        while (entries.hasMoreElements()) {
+            final ZipEntry entry = entries.nextElement();
+
+            if (!IOS_INFO_PLIST.matcher(entry.getName()).matches()) {
+                continue;
+            }
+
+            final Map<String, Object> info = PropertyListParser.parse(read(zip, entry));
+
+            if (info == null) {
+                return null;
+            }
+
+            final String internalName = asString(info.get(BUNDLE_IDENTIFIER));
+            final String versionName = asString(info.get(BUNDLE_SHORT_VERSION));
+            final Integer versionCode = asInteger(info.get(BUNDLE_VERSION));
+
+            return new ApplicationMetadata(IOS, internalName, versionName, versionCode);
+        }
+        return null;
+    }
+
+    private static byte[] read(final ZipFile zip, final ZipEntry entry) throws IOException {
+
+        if (entry.getSize() > MAX_MANIFEST_SIZE) {
+            throw new IOException("Manifest too large: " + entry.getName());
+        }
+
+        final InputStream stream = zip.getInputStream(entry);
+
+        try {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream(entry.getSize() > 0 ? (int) entry.getSize() : 8192);
+            final byte[] buffer = new byte[8192];
+            int read;
+
+            while ((read = stream.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+
+                if (out.size() > MAX_MANIFEST_SIZE) {
+                    throw new IOException("Manifest too large: " + entry.getName());
+                }
+            }
+            return out.toByteArray();
+
+        } finally {
+            stream.close();
+        }
+    }
+
+    private static String asString(final Object value) {
+        return value != null ? value.toString() : null;
+    }
+
+    private static Integer asInteger(final Object value) {
+
+        if (value instanceof Number) {
+            return ((Number) value).intValue();
+        }
+
+        if (value instanceof String) {
+            try {
+                return Integer.valueOf(((String) value).trim());
+            } catch (final NumberFormatException e) {
+                return null;
+            }
+        }
+        return null;
+    }
+}
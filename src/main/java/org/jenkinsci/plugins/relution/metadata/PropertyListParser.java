@@ -0,0 +1,277 @@
+package org.jenkinsci.plugins.relution.metadata;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.xml.sax.EntityResolver;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+
+
+/**
+ * Reads the top-level dictionary of an iOS <code>Info.plist</code>, which is stored either as an
+ * XML or as a binary (<code>bplist00</code>) property list.
+ * <p/>
+ * Only strings and integers are decoded, values of other types are omitted.
+ */
+class PropertyListParser {
+
+    private final static Charset US_ASCII      = Charset.forName("US-ASCII");
+    private final static Charset UTF_16BE      = Charset.forName("UTF-16BE");
+
+    private final static byte[]  BINARY_MAGIC  = "bplist00".getBytes(US_ASCII);
+    private final static int     TRAILER_SIZE  = 32;
+
+    private final static int     TYPE_INT      = 0x1;
+    private final static int     TYPE_ASCII    = 0x5;
+    private final static int     TYPE_UNICODE  = 0x6;
+    private final static int     TYPE_DICT     = 0xD;
+
+    private final ByteBuffer     mBuffer;
+    private final int            mOffsetSize;
+    private final int            mReferenceSize;
+    private final int            mOffsetTable;
+
+    private PropertyListParser(final ByteBuffer buffer, final int offsetSize, final int referenceSize, final int offsetTable) {
+        this.mBuffer = buffer;
+        this.mOffsetSize = offsetSize;
+        this.mReferenceSize = referenceSize;
+        this.mOffsetTable = offsetTable;
+    }
+
+    /**
+     * Parses the specified property list.
+     * @param data The content of the property list.
+     * @return The strings and integers of the top-level dictionary, or <code>null</code> if the
+     * data is not a property list with a dictionary at its root.
+     */
+    static Map<String, Object> parse(final byte[] data) {
+
+        try {
+            if (isBinary(data)) {
+                return parseBinary(data);
+            }
+            return parseXml(data);
+
+        } catch (final IndexOutOfBoundsException e) {
+            return null;
+        } catch (final BufferUnderflowException e) {
+            return null;
+        }
+    }
+
+    private static boolean isBinary(final byte[] data) {
+
+        if (data.length < BINARY_MAGIC.length + TRAILER_SIZE) {
+            return false;
+        }
+
+        for (int index = 0; index < BINARY_MAGIC.length; index++) {
+            if (data[index] != BINARY_MAGIC[index]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Map<String, Object> parseBinary(final byte[] data) {
+
+        final ByteBuffer buffer = ByteBuffer.wrap(data);
+        final int trailer = data.length - TRAILER_SIZE;
+
+        final int offsetSize = buffer.get(trailer + 6) & 0xFF;
+        final int referenceSize = buffer.get(trailer + 7) & 0xFF;
+        final long topObject = buffer.getLong(trailer + 16);
+        final long offsetTable = buffer.getLong(trailer + 24);
+
+        if (offsetTable < 0 || offsetTable >= trailer) {
+            return null;
+        }
+
+        final PropertyListParser parser = new PropertyListParser(buffer, offsetSize, referenceSize, (int) offsetTable);
+        return parser.readDictionary((int) topObject);
+    }
+
+    private Map<String, Object> readDictionary(final int object) {
+
+        final int offset = this.offsetOf(object);
+        final int marker = this.mBuffer.get(offset) & 0xFF;
+
+        if ((marker >> 4) != TYPE_DICT) {
+            return null;
+        }
+
+        final int[] header = this.readCount(offset);
+        final int count = header[0];
+        final int references = header[1];
+
+        final Map<String, Object> dictionary = new HashMap<String, Object>();
+
+        for (int index = 0; index < count; index++) {
+            final Object key = this.readValue(this.readReference(references + index * this.mReferenceSize));
+            final Object value = this.readValue(this.readReference(references + (count + index) * this.mReferenceSize));
+
+            if (key instanceof String && value != null) {
+                dictionary.put((String) key, value);
+            }
+        }
+        return dictionary;
+    }
+
+    private Object readValue(final int object) {
+
+        final int offset = this.offsetOf(object);
+        final int type = (this.mBuffer.get(offset) & 0xFF) >> 4;
+
+        if (type == TYPE_INT) {
+            return this.readInteger(offset);
+        }
+
+        if (type == TYPE_ASCII || type == TYPE_UNICODE) {
+            final int[] header = this.readCount(offset);
+            final int length = (type == TYPE_UNICODE) ? header[0] * 2 : header[0];
+
+            final byte[] bytes = new byte[length];
+            for (int index = 0; index < length; index++) {
+                bytes[index] = this.mBuffer.get(header[1] + index);
+            }
+            return new String(bytes, type == TYPE_UNICODE ? UTF_16BE : US_ASCII);
+        }
+        return null;
+    }
+
+    /**
+     * Returns the number of elements of the object at the specified offset and the offset of
+     * its first element.
+     */
+    private int[] readCount(final int offset) {
+
+        final int count = this.mBuffer.get(offset) & 0x0F;
+
+        if (count != 0x0F) {
+            return new int[] { count, offset + 1 };
+        }
+
+        final int size = 1 << (this.mBuffer.get(offset + 1) & 0x0F);
+        return new int[] { (int) this.readUnsigned(offset + 2, size), offset + 2 + size };
+    }
+
+    private Long readInteger(final int offset) {
+
+        final int size = 1 << (this.mBuffer.get(offset) & 0x0F);
+
+        if (size == 8) {
+            return this.mBuffer.getLong(offset + 1);
+        }
+        return this.readUnsigned(offset + 1, size);
+    }
+
+    private int readReference(final int position) {
+        return (int) this.readUnsigned(position, this.mReferenceSize);
+    }
+
+    private int offsetOf(final int object) {
+        return (int) this.readUnsigned(this.mOffsetTable + object * this.mOffsetSize, this.mOffsetSize);
+    }
+
+    private long readUnsigned(final int position, final int size) {
+
+        long value = 0;
+
+        for (int index = 0; index < size; index++) {
+            value = (value << 8) | (this.mBuffer.get(position + index) & 0xFF);
+        }
+        return value;
+    }
+
+    private static Map<String, Object> parseXml(final byte[] data) {
+
+        final Document document;
+
+        try {
+            final DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+            factory.setNamespaceAware(false);
+            factory.setValidating(false);
+
+            final DocumentBuilder builder = factory.newDocumentBuilder();
+
+            // Do not resolve the DTD of the property list, it may not be reachable
+            builder.setEntityResolver(new EntityResolver() {
+
+                @Override
+                public InputSource resolveEntity(final String publicId, final String systemId) {
+                    return new InputSource(new StringReader(""));
+                }
+            });
+            document = builder.parse(new ByteArrayInputStream(data));
+
+        } catch (final ParserConfigurationException e) {
+            return null;
+        } catch (final SAXException e) {
+            return null;
+        } catch (final IOException e) {
+            return null;
+        }
+
+        final Element root = firstElement(document.getDocumentElement());
+
+        if (root == null || !"dict".equals(root.getTagName())) {
+            return null;
+        }
+
+        final Map<String, Object> dictionary = new HashMap<String, Object>();
+        String key = null;
+
+        for (Node node = root.getFirstChild(); node != null; node = node.getNextSibling()) {
+            if (!(node instanceof Element)) {
+                continue;
+            }
+
+            final Element element = (Element) node;
+            final String text = element.getTextContent().trim();
+
+            if ("key".equals(element.getTagName())) {
+                key = text;
+                continue;
+            }
+
+            if (key != null && "string".equals(element.getTagName())) {
+                dictionary.put(key, text);
+            } else if (key != null && "integer".equals(element.getTagName())) {
+                try {
+                    dictionary.put(key, Long.valueOf(text));
+                } catch (final NumberFormatException e) {
+                    // Omit malformed values
+                }
+            }
+            key = null;
+        }
+        return dictionary;
+    }
+
+    private static Element firstElement(final Element parent) {
+
+        final NodeList children = parent.getChildNodes();
+
+        for (int index = 0; index < children.getLength(); index++) {
+            if (children.item(index) instanceof Element) {
+                return (Element) children.item(index);
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,187 @@
+package org.jenkinsci.plugins.relution.net;
+
+import org.jenkinsci.plugins.relution.json.ApiApp;
+import org.jenkinsci.plugins.relution.json.ApiResponse;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.net.URISyntaxException;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+
+/**
+ * Iterates over all applications in the store of an endpoint, one page at a time.
+ * <p/>
+ * Pages are requested with <code>offset</code> and <code>limit</code> query fields. The next
+ * page is requested as soon as the current page has been received, so it is transferred while
+ * the current page is consumed. At most two pages are held in memory at any time, regardless of
+ * the size of the catalog.
+ * <p/>
+ * A server that does not report the total number of applications and ignores the
+ * <code>offset</code> returns the first page again; the iteration stops once a page starts with
+ * the same application as the previous page.
+ * <p/>
+ * Errors are reported as {@link CatalogException}, because an {@link Iterator} cannot throw
+ * checked exceptions.
+ */
+public class CatalogIterator implements Iterator<ApiApp> {
+
+    /**
+     * The default number of applications per page.
+     */
+    public final static int                          DEFAULT_PAGE_SIZE = 100;
+
+    private final static ResponseParser<ApiResponse> PARSER            = new ResponseParser<ApiResponse>() {
+
+        @Override
+        public ApiResponse parse(final Reader reader) {
+            return ApiResponse.fromJson(reader);
+        }
+    };
+
+    private final RequestFactory                     mRequestFactory;
+    private final CatalogQuery                       mQuery;
+    private final int                                mPageSize;
+
+    private Iterator<ApiApp>                         mPage             = Collections.<ApiApp> emptyList().iterator();
+    private ResponseFuture<ApiResponse>              mNext;
+    private int                                      mOffset;
+    private String                                   mFirstUuid;
+
+    /**
+     * Creates an iterator that requests pages of the default size.
+     * @param requestFactory The factory used to create and send the requests.
+     */
+    public CatalogIterator(final RequestFactory requestFactory) {
+        this(requestFactory, null, DEFAULT_PAGE_SIZE);
+    }
+
+    /**
+     * Creates an iterator over the applications that match the specified query, which requests
+     * pages of the default size.
+     * @param requestFactory The factory used to create and send the requests.
+     * @param query The projection, filter and sort order of the applications.
+     */
+    public CatalogIterator(final RequestFactory requestFactory, final CatalogQuery query) {
+        this(requestFactory, query, DEFAULT_PAGE_SIZE);
+    }
+
+    /**
+     * Creates an iterator that requests pages of the specified size. The first page is
+     * requested immediately.
+     * @param requestFactory The factory used to create and send the requests.
+     * @param query The projection, filter and sort order of the applications, may be
+     * <code>null</code> to request complete applications.
+     * @param pageSize The number of applications per page.
+     */
+    public CatalogIterator(final RequestFactory requestFactory, final CatalogQuery query, final int pageSize) {
+
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("The page size must be positive: " + pageSize);
+        }
+
+        this.mRequestFactory = requestFactory;
+        this.mQuery = query;
+        this.mPageSize = pageSize;
+        this.mNext = this.fetch(0);
+    }
+
+    @Override
+    public boolean hasNext() {
+
+        while (!this.mPage.hasNext()) {
+            if (this.mNext == null) {
+                return false;
+            }
+            this.advance();
+        }
+        return true;
+    }
+
+    @Override
+    public ApiApp next() {
+
+        if (!this.hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return this.mPage.next();
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Stops the iteration and cancels the request for the next page, if any.
+     */
+    public void close() {
+
+        if (this.mNext != null) {
+            this.mNext.cancel(true);
+            this.mNext = null;
+        }
+        this.mPage = Collections.<ApiApp> emptyList().iterator();
+    }
+
+    private void advance() {
+
+        final ApiResponse response;
+
+        try {
+            response = this.mNext.await();
+
+        } catch (final IOException e) {
+            this.mNext = null;
+            throw new CatalogException(e);
+
+        } catch (final URISyntaxException e) {
+            this.mNext = null;
+            throw new CatalogException(e);
+        }
+
+        if (response == null || response.status != 0) {
+            this.mNext = null;
+            throw new CatalogException("Failed to list applications: " + (response != null ? response.message : "no response"));
+        }
+
+        final int count = response.results.size();
+        final String first = (count > 0) ? response.results.get(0).uuid : null;
+
+        if (response.total <= 0 && first != null && first.equals(this.mFirstUuid)) {
+            this.mNext = null;
+            return;
+        }
+
+        this.mFirstUuid = first;
+        this.mOffset += count;
+
+        // A server that does not support paging returns all applications at once
+        final boolean more = count == this.mPageSize && (response.total <= 0 || this.mOffset < response.total);
+
+        this.mNext = more ? this.fetch(this.mOffset) : null;
+        this.mPage = response.results.iterator();
+    }
+
+    private ResponseFuture<ApiResponse> fetch(final int offset) {
+        final Request request = this.mRequestFactory.createAppStoreItemsRequest(this.mQuery, offset, this.mPageSize);
+        return this.mRequestFactory.sendAsync(request, PARSER);
+    }
+
+    /**
+     * Thrown if a page of the catalog could not be retrieved.
+     */
+    @SuppressWarnings("serial")
+    public static class CatalogException extends RuntimeException {
+
+        CatalogException(final String message) {
+            super(message);
+        }
+
+        CatalogException(final Throwable cause) {
+            super(cause);
+        }
+    }
+}
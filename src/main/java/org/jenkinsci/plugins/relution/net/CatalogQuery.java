@@ -0,0 +1,158 @@
+package org.jenkinsci.plugins.relution.net;
+
+import org.apache.commons.lang.StringUtils;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+
+/**
+ * Builds the query of a request that lists the store's applications, so the server returns only
+ * the applications and properties that are needed.
+ * <p/>
+ * <ul>
+ * <li>Projection: only the selected properties are returned, nested properties are selected
+ * with a dot, e.g. <code>versions.versionCode</code>. If no property is selected, the complete
+ * applications are returned.</li>
+ * <li>Filter: only applications whose property equals the specified value, or that have been
+ * modified since the specified time, are returned.</li>
+ * <li>Sort: applications are returned in the order of the specified properties.</li>
+ * </ul>
+ * The decoders of the API model accept partial objects, properties that are not returned keep
+ * their default value.
+ */
+public class CatalogQuery {
+
+    public final static String FIELD_UUID                      = "uuid";
+    public final static String FIELD_INTERNAL_NAME             = "internalName";
+    public final static String FIELD_PLATFORMS                 = "platforms";
+    public final static String FIELD_MODIFICATION_DATE         = "modificationDate";
+    public final static String FIELD_VERSION_UUID              = "versions.uuid";
+    public final static String FIELD_VERSION_CODE              = "versions.versionCode";
+    public final static String FIELD_VERSION_NAME              = "versions.versionName";
+    public final static String FIELD_VERSION_RELEASE_STATUS    = "versions.releaseStatus";
+    public final static String FIELD_VERSION_CREATION_DATE     = "versions.creationDate";
+    public final static String FIELD_VERSION_MODIFICATION_DATE = "versions.modificationDate";
+
+    private final static String PARAM_FIELDS                   = "fields";
+    private final static String PARAM_FILTER                   = "filter";
+    private final static String PARAM_SORT                     = "sort";
+
+    private final Set<String>   mFields                        = new LinkedHashSet<String>();
+    private final List<String>  mFilters                       = new ArrayList<String>();
+    private final List<String>  mSortOrder                     = new ArrayList<String>();
+
+    /**
+     * Adds the specified properties to the projection.
+     * @param fields The names of the properties to return.
+     * @return This query.
+     */
+    public CatalogQuery select(final String... fields) {
+
+        for (final String field : fields) {
+            this.mFields.add(field);
+        }
+        return this;
+    }
+
+    /**
+     * Returns only applications whose property equals the specified value. If the value is
+     * <code>null</code> or empty, the filter is not added.
+     * @param field The name of the property to compare.
+     * @param value The value the property must have.
+     * @return This query.
+     */
+    public CatalogQuery filter(final String field, final String value) {
+
+        if (!StringUtils.isEmpty(value)) {
+            this.mFilters.add(field + "==" + value);
+        }
+        return this;
+    }
+
+    /**
+     * Returns only applications that have been modified at or after the specified time.
+     * @param timestamp The time in milliseconds since the epoch.
+     * @return This query.
+     */
+    public CatalogQuery modifiedSince(final long timestamp) {
+        this.mFilters.add(FIELD_MODIFICATION_DATE + ">=" + timestamp);
+        return this;
+    }
+
+    /**
+     * Returns only the application with the specified internal name.
+     * @param internalName The package name or bundle identifier of the application.
+     * @return This query.
+     */
+    public CatalogQuery internalName(final String internalName) {
+        return this.filter(FIELD_INTERNAL_NAME, internalName);
+    }
+
+    /**
+     * Returns only applications for the specified platform.
+     * @param platform The platform of the applications.
+     * @return This query.
+     */
+    public CatalogQuery platform(final String platform) {
+        return this.filter(FIELD_PLATFORMS, platform);
+    }
+
+    /**
+     * Returns only applications that have a version with the specified release status.
+     * @param releaseStatus The release status, e.g. <code>DEVELOPMENT</code>.
+     * @return This query.
+     */
+    public CatalogQuery releaseStatus(final String releaseStatus) {
+        return this.filter(FIELD_VERSION_RELEASE_STATUS, releaseStatus);
+    }
+
+    /**
+     * Sorts the applications by the specified property. May be called repeatedly, later calls
+     * sort applications that are equal according to earlier calls.
+     * @param field The name of the property to sort by.
+     * @param ascending <code>true</code> to sort in ascending, <code>false</code> to sort in
+     * descending order.
+     * @return This query.
+     */
+    public CatalogQuery sort(final String field, final boolean ascending) {
+        this.mSortOrder.add((ascending ? "+" : "-") + field);
+        return this;
+    }
+
+    /**
+     * @return <code>true</code> if the query returns only some of the applications, e.g. those
+     * modified since a point in time.
+     */
+    public boolean isFiltered() {
+        return !this.mFilters.isEmpty();
+    }
+
+    /**
+     * Adds the query to the specified query fields.
+     * @param queryFields The query fields of the request.
+     */
+    public void applyTo(final RequestQueryFields queryFields) {
+
+        if (!this.mFields.isEmpty()) {
+            queryFields.add(PARAM_FIELDS, StringUtils.join(this.mFields, ","));
+        }
+
+        for (final String filter : this.mFilters) {
+            queryFields.add(PARAM_FILTER, filter);
+        }
+
+        if (!this.mSortOrder.isEmpty()) {
+            queryFields.add(PARAM_SORT, StringUtils.join(this.mSortOrder, ","));
+        }
+    }
+
+    @Override
+    public String toString() {
+        final RequestQueryFields queryFields = new RequestQueryFields();
+        this.applyTo(queryFields);
+        return queryFields.toString();
+    }
+}
@@ -0,0 +1,350 @@
+package org.jenkinsci.plugins.relution.net;
+
+import com.google.gson.JsonParseException;
+
+import org.jenkinsci.plugins.relution.entities.ApiEndpoint;
+import org.jenkinsci.plugins.relution.json.UploadResponse;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.net.URISyntaxException;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+
+/**
+ * Uploads a file to the Relution store in fixed-size parts, several of them at the same time.
+ * <p/>
+ * All parts are posted to <code>files/{token}</code>, where the token is generated by the client
+ * and identifies the upload, with a <code>Content-Range</code> header that specifies the position
+ * of the part in the file. The first part is sent alone to find out whether the server supports
+ * partial uploads, all other parts but the last are sent in parallel, and the last part is sent
+ * once all other parts have been acknowledged. The response to the last part contains the
+ * persisted file. The parts are sent on the threads of the endpoint's {@link ClientPool}.
+ * <p/>
+ * Partial uploads must be enabled for an endpoint (see {@link ApiEndpoint#isChunkedUpload()}).
+ * A server that ignores the <code>Content-Range</code> header stores each part as a complete
+ * file, so the size of the persisted file is compared with the size of the uploaded file.
+ * <p/>
+ * Parts that have been acknowledged by the server are never sent again. A part that fails,
+ * including the first, is retried, and if {@link #upload()} fails it can be invoked again to
+ * resume the upload with the parts that have not been acknowledged yet.
+ * <p/>
+ * If the server stores the first part as a file of its own, or does not assemble the parts into
+ * a file of the expected size, the endpoint is remembered as not supporting partial uploads and
+ * {@link #upload()} returns <code>null</code>, the caller should then fall back to a single
+ * request that contains the whole file. A failed part is not taken as such evidence.
+ */
+public class ChunkedUpload {
+
+    /**
+     * The default size of a part, in bytes.
+     */
+    public final static long                            DEFAULT_PART_SIZE      = 8 * 1024 * 1024;
+
+    /**
+     * The default number of parts that are uploaded at the same time.
+     */
+    public final static int                             DEFAULT_PARALLEL_PARTS = 3;
+
+    private final static int                            MAX_ATTEMPTS           = 3;
+    private final static long                           RETRY_DELAY            = 1000;
+
+    private final static Map<ApiEndpoint, Boolean>      SUPPORTED              = new ConcurrentHashMap<ApiEndpoint, Boolean>();
+
+    private final static ResponseParser<UploadResponse> PARSER                 = new ResponseParser<UploadResponse>() {
+
+        @Override
+        public UploadResponse parse(final Reader reader) {
+            return UploadResponse.fromJson(reader);
+        }
+    };
+
+    private final RequestFactory                        mRequestFactory;
+    private final File                                  mFile;
+    private final String                                mToken;
+
+    private final long                                  mPartSize;
+    private final int                                   mPartCount;
+    private final boolean[]                             mAcknowledged;
+
+    private int                                         mParallelParts         = DEFAULT_PARALLEL_PARTS;
+    private UploadResponse                              mFirstResponse;
+
+    /**
+     * Creates an upload of the specified file that uses parts of the default size.
+     * @param requestFactory The factory used to create and send the requests.
+     * @param file The file to upload.
+     */
+    public ChunkedUpload(final RequestFactory requestFactory, final File file) {
+        this(requestFactory, file, DEFAULT_PART_SIZE);
+    }
+
+    /**
+     * Creates an upload of the specified file that uses parts of the specified size.
+     * @param requestFactory The factory used to create and send the requests.
+     * @param file The file to upload.
+     * @param partSize The size of a part, in bytes.
+     */
+    public ChunkedUpload(final RequestFactory requestFactory, final File file, final long partSize) {
+
+        if (partSize < 1) {
+            throw new IllegalArgumentException("The part size must be positive: " + partSize);
+        }
+
+        this.mRequestFactory = requestFactory;
+        this.mFile = file;
+        this.mToken = UUID.randomUUID().toString();
+
+        this.mPartSize = partSize;
+        this.mPartCount = (int) Math.max(1, (file.length() + partSize - 1) / partSize);
+        this.mAcknowledged = new boolean[this.mPartCount];
+    }
+
+    /**
+     * Returns whether the specified endpoint is known to not support partial uploads.
+     * @param endpoint The endpoint to check.
+     * @return <code>false</code> if an upload to the endpoint failed because partial uploads are
+     * not supported, <code>true</code> otherwise.
+     */
+    public static boolean isSupported(final ApiEndpoint endpoint) {
+        return !Boolean.FALSE.equals(SUPPORTED.get(endpoint));
+    }
+
+    /**
+     * Returns whether the specified file should be uploaded in parts to the specified endpoint.
+     * @param endpoint The endpoint the file is uploaded to.
+     * @param file The file to upload.
+     * @return <code>true</code> if partial uploads are enabled for the endpoint, the file is
+     * larger than a single part and the endpoint is not known to not support partial uploads;
+     * otherwise, <code>false</code>.
+     */
+    public static boolean isEligible(final ApiEndpoint endpoint, final File file) {
+        return endpoint.isChunkedUpload() && file.length() > DEFAULT_PART_SIZE && isSupported(endpoint);
+    }
+
+    /**
+     * @param parallelParts The number of parts that are uploaded at the same time.
+     */
+    public void setParallelParts(final int parallelParts) {
+        this.mParallelParts = Math.max(1, parallelParts);
+    }
+
+    /**
+     * @return The number of parts the file is split into.
+     */
+    public int getPartCount() {
+        return this.mPartCount;
+    }
+
+    /**
+     * @return The number of parts that have been acknowledged by the server.
+     */
+    public synchronized int getAcknowledgedCount() {
+
+        int count = 0;
+        for (final boolean acknowledged : this.mAcknowledged) {
+            if (acknowledged) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Uploads all parts that have not been acknowledged by the server yet.
+     * @return The response to the last part, or <code>null</code> if the server does not
+     * support partial uploads.
+     * @throws IOException if a part could not be uploaded after several attempts.
+     * @throws URISyntaxException
+     * @throws InterruptedException
+     */
+    public UploadResponse upload() throws IOException, URISyntaxException, InterruptedException {
+
+        final ApiEndpoint endpoint = this.mRequestFactory.getEndpoint();
+        final int last = this.mPartCount - 1;
+
+        try {
+            if (!this.isAcknowledged(0) && !this.uploadFirstPart()) {
+                SUPPORTED.put(endpoint, Boolean.FALSE);
+                return null;
+            }
+
+            if (last == 0) {
+                return this.mFirstResponse;
+            }
+
+            this.uploadParallel(1, last);
+            final UploadResponse response = this.uploadPart(last);
+
+            // A server that ignores Content-Range stores the last part as a file of its own
+            if (!this.isComplete(response)) {
+                SUPPORTED.put(endpoint, Boolean.FALSE);
+                return null;
+            }
+            SUPPORTED.put(endpoint, Boolean.TRUE);
+            return response;
+
+        } catch (final InterruptedIOException e) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException(e.getMessage());
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Sends the first part alone, it is retried like any other part. The server does not support
+     * partial uploads if it responds with a file that consists of the part only.
+     */
+    private boolean uploadFirstPart() throws IOException, URISyntaxException, InterruptedException {
+
+        final UploadResponse response = this.uploadPart(0);
+
+        if (this.mPartCount > 1 && !response.results.isEmpty() && response.results.get(0).size == this.getLength(0)) {
+            synchronized (this) {
+                this.mAcknowledged[0] = false;
+            }
+            return false;
+        }
+
+        this.mFirstResponse = response;
+        return true;
+    }
+
+    /**
+     * @return <code>true</code> if the response contains a file of the size of the uploaded file.
+     */
+    private boolean isComplete(final UploadResponse response) {
+        return !response.results.isEmpty() && response.results.get(0).size == this.mFile.length();
+    }
+
+    /**
+     * Uploads the specified parts, at most {@link #setParallelParts(int)} at once, on the threads
+     * of the endpoint's pool. A part that fails is sent again after the parts that are already in
+     * progress.
+     */
+    private void uploadParallel(final int first, final int end) throws IOException, URISyntaxException, InterruptedException {
+
+        final LinkedList<Part> pending = new LinkedList<Part>();
+        int next = first;
+
+        try {
+            while (next < end || !pending.isEmpty()) {
+                while (next < end && pending.size() < this.mParallelParts) {
+                    if (!this.isAcknowledged(next)) {
+                        pending.add(new Part(next, 1, this.sendPart(next)));
+                    }
+                    next++;
+                }
+
+                if (pending.isEmpty()) {
+                    continue;
+                }
+
+                final Part part = pending.removeFirst();
+
+                try {
+                    this.receive(part.index, part.future);
+
+                } catch (final InterruptedIOException e) {
+                    throw e;
+
+                } catch (final IOException e) {
+                    if (part.attempt >= MAX_ATTEMPTS) {
+                        throw e;
+                    }
+                    Thread.sleep(RETRY_DELAY * part.attempt);
+                    pending.add(new Part(part.index, part.attempt + 1, this.sendPart(part.index)));
+                }
+            }
+
+        } finally {
+            for (final Part part : pending) {
+                part.future.cancel(true);
+            }
+        }
+    }
+
+    private UploadResponse uploadPart(final int index) throws IOException, URISyntaxException, InterruptedException {
+
+        for (int attempt = 1;; attempt++) {
+            try {
+                return this.receive(index, this.sendPart(index));
+
+            } catch (final InterruptedIOException e) {
+                throw e;
+
+            } catch (final IOException e) {
+                if (attempt >= MAX_ATTEMPTS) {
+                    throw e;
+                }
+                Thread.sleep(RETRY_DELAY * attempt);
+            }
+        }
+    }
+
+    private ResponseFuture<UploadResponse> sendPart(final int index) {
+
+        final long offset = index * this.mPartSize;
+        final Request request = this.mRequestFactory.createUploadPartRequest(this.mToken, this.mFile, offset, this.getLength(index));
+        return this.mRequestFactory.sendAsync(request, PARSER);
+    }
+
+    /**
+     * Waits for the response to a part and acknowledges the part if it has been accepted.
+     */
+    private UploadResponse receive(final int index, final ResponseFuture<UploadResponse> future) throws IOException, URISyntaxException {
+
+        final UploadResponse response;
+
+        try {
+            response = future.await();
+        } catch (final JsonParseException e) {
+            throw new IOException(String.format("Invalid response to part %d of %d", index + 1, this.mPartCount), e);
+        }
+
+        if (response == null) {
+            throw new IOException(String.format("Empty response to part %d of %d", index + 1, this.mPartCount));
+        }
+
+        if (response.status != 0) {
+            throw new IOException(String.format("Part %d of %d rejected: %s", index + 1, this.mPartCount, response.message));
+        }
+
+        this.setAcknowledged(index);
+        return response;
+    }
+
+    private long getLength(final int index) {
+        return Math.min(this.mPartSize, this.mFile.length() - index * this.mPartSize);
+    }
+
+    private synchronized boolean isAcknowledged(final int index) {
+        return this.mAcknowledged[index];
+    }
+
+    private synchronized void setAcknowledged(final int index) {
+        this.mAcknowledged[index] = true;
+    }
+
+    /**
+     * A part that has been sent.
+     */
+    private static class Part {
+
+        final int                            index;
+        final int                            attempt;
+        final ResponseFuture<UploadResponse> future;
+
+        Part(final int index, final int attempt, final ResponseFuture<UploadResponse> future) {
+            this.index = index;
+            this.attempt = attempt;
+            this.future = future;
+        }
+    }
+}
@@ -0,0 +1,325 @@
+package org.jenkinsci.plugins.relution.net;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.HttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.impl.conn.PoolingClientConnectionManager;
+import org.apache.http.impl.conn.SchemeRegistryFactory;
+import org.apache.http.params.CoreProtocolPNames;
+import org.apache.http.protocol.HttpContext;
+import org.jenkinsci.plugins.relution.entities.ApiEndpoint;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+ * Holds one long-lived, thread-safe {@link HttpClient} per {@link ApiEndpoint}.
+ * <p/>
+ * All {@link RequestFactory} instances in the same JVM that talk to the same endpoint share the
+ * connections of its pool, so consecutive requests of a publish (upload, analyze, save) reuse
+ * an already established (TLS) connection instead of opening a new one for every request.
+ * Connections that have been idle for longer than the keep-alive timeout are evicted by a
+ * background thread. The pools of endpoints that are no longer configured are closed by the same
+ * thread once their last request has completed.
+ * <p/>
+ * Each pool also owns the threads that send the asynchronous requests of the endpoint, one for
+ * every connection the pool may open, so asynchronous requests never wait for a thread while a
+ * connection is available.
+ * <p/>
+ * Responses are requested gzip compressed. JSON request bodies are compressed as well if enabled
+ * in the configuration, until the server rejects a compressed request.
+ */
+public final class ClientPool {
+
+    /**
+     * The default maximum number of concurrent connections per route.
+     */
+    public final static int                           DEFAULT_MAX_CONNECTIONS = 4;
+
+    /**
+     * The default time, in seconds, a connection is kept alive if the server does not specify one.
+     */
+    public final static int                           DEFAULT_KEEP_ALIVE      = 30;
+
+    private final static long                         EVICTION_INTERVAL       = 5;
+    private final static long                         THREAD_KEEP_ALIVE       = 60;
+
+    private final static Map<ApiEndpoint, ClientPool> POOLS                   = new HashMap<ApiEndpoint, ClientPool>();
+    private final static List<ClientPool>             RETIRED                 = new ArrayList<ClientPool>();
+
+    private static int                                sMaxConnections         = DEFAULT_MAX_CONNECTIONS;
+    private static int                                sKeepAlive              = DEFAULT_KEEP_ALIVE;
+    private static boolean                            sCompressRequests;
+
+    private static ScheduledExecutorService           sEvictor;
+
+    private final PoolingClientConnectionManager      mConnectionManager;
+    private final DefaultHttpClient                   mClient;
+    private final ThreadPoolExecutor                  mExecutor;
+
+    private volatile boolean                          mCompressRequests       = sCompressRequests;
+
+    private ClientPool() {
+        this.mConnectionManager = new PoolingClientConnectionManager(SchemeRegistryFactory.createDefault());
+        this.mConnectionManager.setDefaultMaxPerRoute(sMaxConnections);
+        this.mConnectionManager.setMaxTotal(sMaxConnections * 2);
+
+        this.mClient = new DefaultHttpClient(this.mConnectionManager);
+        this.mClient.getParams().setParameter(CoreProtocolPNames.PROTOCOL_VERSION, HttpVersion.HTTP_1_1);
+        this.mClient.setKeepAliveStrategy(new KeepAliveStrategy());
+
+        final GzipInterceptor gzip = new GzipInterceptor();
+        this.mClient.addRequestInterceptor(gzip);
+        this.mClient.addResponseInterceptor(gzip);
+
+        this.mExecutor = new ThreadPoolExecutor(
+                sMaxConnections,
+                sMaxConnections,
+                THREAD_KEEP_ALIVE,
+                TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(),
+                new RequestThreadFactory());
+        this.mExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Returns the pool for the specified endpoint, creating it if necessary.
+     * @param endpoint The {@link ApiEndpoint} for which to return the pool.
+     * @return The {@link ClientPool} of the endpoint.
+     */
+    public static synchronized ClientPool get(final ApiEndpoint endpoint) {
+
+        if (endpoint == null) {
+            throw new IllegalArgumentException("The specified argument cannot be null: endpoint");
+        }
+
+        ClientPool pool = POOLS.get(endpoint);
+
+        if (pool == null) {
+            pool = new ClientPool();
+            POOLS.put(endpoint, pool);
+            startEvictor();
+        }
+        return pool;
+    }
+
+    /**
+     * Applies the specified connection settings to all existing and future pools.
+     * @param maxConnections The maximum number of concurrent connections per route.
+     * @param keepAlive The time, in seconds, an idle connection is kept alive if the server does
+     * not specify a timeout.
+     * @param compressRequests Whether JSON request bodies are gzip compressed.
+     */
+    public static synchronized void configure(final int maxConnections, final int keepAlive, final boolean compressRequests) {
+
+        sMaxConnections = (maxConnections > 0) ? maxConnections : DEFAULT_MAX_CONNECTIONS;
+        sKeepAlive = (keepAlive > 0) ? keepAlive : DEFAULT_KEEP_ALIVE;
+        sCompressRequests = compressRequests;
+
+        for (final ClientPool pool : POOLS.values()) {
+            pool.mConnectionManager.setDefaultMaxPerRoute(sMaxConnections);
+            pool.mConnectionManager.setMaxTotal(sMaxConnections * 2);
+            pool.resizeExecutor(sMaxConnections);
+            pool.mCompressRequests = compressRequests;
+        }
+    }
+
+    /**
+     * Retires the pools of all endpoints except the specified ones, e.g. after an endpoint has
+     * been removed or its URL, organization or user name has been changed. A retired pool is
+     * closed as soon as it has no more requests in progress.
+     * @param endpoints The endpoints whose pools are kept.
+     */
+    public static synchronized void retain(final Collection<ApiEndpoint> endpoints) {
+
+        final Iterator<Map.Entry<ApiEndpoint, ClientPool>> iterator = POOLS.entrySet().iterator();
+
+        while (iterator.hasNext()) {
+            final Map.Entry<ApiEndpoint, ClientPool> entry = iterator.next();
+
+            if (!endpoints.contains(entry.getKey())) {
+                RETIRED.add(entry.getValue());
+                iterator.remove();
+            }
+        }
+        closeRetired();
+    }
+
+    /**
+     * Closes all connections of all pools and stops the eviction of idle connections.
+     */
+    public static synchronized void shutdown() {
+
+        for (final ClientPool pool : POOLS.values()) {
+            pool.close();
+        }
+        POOLS.clear();
+
+        for (final ClientPool pool : RETIRED) {
+            pool.close();
+        }
+        RETIRED.clear();
+
+        if (sEvictor != null) {
+            sEvictor.shutdownNow();
+            sEvictor = null;
+        }
+    }
+
+    /**
+     * @return The shared {@link HttpClient} of these pool.
+     */
+    public HttpClient getClient() {
+        return this.mClient;
+    }
+
+    /**
+     * @return The executor that sends the asynchronous requests of these pool.
+     */
+    public Executor getExecutor() {
+        return this.mExecutor;
+    }
+
+    /**
+     * @return The maximum number of requests that are sent to the endpoint at the same time.
+     */
+    public int getMaxConnections() {
+        return this.mExecutor.getMaximumPoolSize();
+    }
+
+    /**
+     * @return <code>true</code> if JSON request bodies sent to the endpoint should be compressed.
+     */
+    public boolean isCompressRequests() {
+        return this.mCompressRequests;
+    }
+
+    /**
+     * Stops compressing request bodies sent to the endpoint, because the server does not accept
+     * compressed requests.
+     */
+    public void disableRequestCompression() {
+        this.mCompressRequests = false;
+    }
+
+    /**
+     * @return <code>true</code> if no request of the pool is in progress or waiting to be sent.
+     */
+    private boolean isIdle() {
+        return this.mConnectionManager.getTotalStats().getLeased() == 0
+                && this.mExecutor.getActiveCount() == 0
+                && this.mExecutor.getQueue().isEmpty();
+    }
+
+    private void close() {
+        this.mExecutor.shutdownNow();
+        this.mConnectionManager.shutdown();
+    }
+
+    private void resizeExecutor(final int threads) {
+
+        if (threads > this.mExecutor.getMaximumPoolSize()) {
+            this.mExecutor.setMaximumPoolSize(threads);
+            this.mExecutor.setCorePoolSize(threads);
+        } else {
+            this.mExecutor.setCorePoolSize(threads);
+            this.mExecutor.setMaximumPoolSize(threads);
+        }
+    }
+
+    private static void startEvictor() {
+
+        if (sEvictor != null) {
+            return;
+        }
+
+        sEvictor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+
+            @Override
+            public Thread newThread(final Runnable runnable) {
+                final Thread thread = new Thread(runnable, "Relution connection evictor");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        sEvictor.scheduleWithFixedDelay(new Runnable() {
+
+            @Override
+            public void run() {
+                evictConnections();
+            }
+        }, EVICTION_INTERVAL, EVICTION_INTERVAL, TimeUnit.SECONDS);
+    }
+
+    private static synchronized void evictConnections() {
+
+        for (final ClientPool pool : POOLS.values()) {
+            pool.mConnectionManager.closeExpiredConnections();
+            pool.mConnectionManager.closeIdleConnections(sKeepAlive, TimeUnit.SECONDS);
+        }
+        closeRetired();
+    }
+
+    private static void closeRetired() {
+
+        final Iterator<ClientPool> iterator = RETIRED.iterator();
+
+        while (iterator.hasNext()) {
+            final ClientPool pool = iterator.next();
+
+            if (pool.isIdle()) {
+                pool.close();
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Creates the daemon threads that send asynchronous requests.
+     */
+    private static class RequestThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger mCount = new AtomicInteger();
+
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            final Thread thread = new Thread(runnable, "Relution request " + this.mCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+    /**
+     * Keeps connections alive for the duration specified by the server or, if the server does
+     * not specify a duration, for the configured keep-alive timeout.
+     */
+    private static class KeepAliveStrategy extends DefaultConnectionKeepAliveStrategy {
+
+        @Override
+        public long getKeepAliveDuration(final HttpResponse response, final HttpContext context) {
+
+            final long duration = super.getKeepAliveDuration(response, context);
+
+            if (duration > 0) {
+                return duration;
+            }
+            return TimeUnit.SECONDS.toMillis(sKeepAlive);
+        }
+    }
+}
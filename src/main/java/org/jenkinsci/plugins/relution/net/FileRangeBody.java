@@ -0,0 +1,136 @@
+package org.jenkinsci.plugins.relution.net;
+
+import org.apache.http.entity.mime.MIME;
+import org.apache.http.entity.mime.content.AbstractContentBody;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+
+/**
+ * A multipart body that contains a file, or a contiguous range of bytes of a file, used to upload
+ * a file at once or in several parts.
+ * <p/>
+ * The file is read through a {@link FileChannel} with positional reads into buffers that are
+ * shared by all uploads, so concurrent uploads of large files do not allocate a new buffer for
+ * every body.
+ * <p/>
+ * The body is always written to the {@link OutputStream} of a connection, which does not expose
+ * a channel, so the bytes cannot be transferred with {@link FileChannel#transferTo}.
+ */
+public class FileRangeBody extends AbstractContentBody {
+
+    private final static int               BUFFER_SIZE = 64 * 1024;
+    private final static int               MAX_BUFFERS = 16;
+
+    private final static Queue<ByteBuffer> BUFFERS     = new ConcurrentLinkedQueue<ByteBuffer>();
+
+    private final File                     mFile;
+    private final long                     mOffset;
+    private final long                     mLength;
+
+    /**
+     * Creates a body that contains the whole specified file.
+     * @param file The file that contains the data.
+     */
+    public FileRangeBody(final File file) {
+        this(file, 0, file.length());
+    }
+
+    /**
+     * Creates a body for the specified range of the specified file.
+     * @param file The file that contains the data.
+     * @param offset The offset of the first byte of the range.
+     * @param length The number of bytes in the range.
+     */
+    public FileRangeBody(final File file, final long offset, final long length) {
+        super("application/octet-stream");
+
+        this.mFile = file;
+        this.mOffset = offset;
+        this.mLength = length;
+    }
+
+    @Override
+    public String getFilename() {
+        return this.mFile.getName();
+    }
+
+    @Override
+    public String getCharset() {
+        return null;
+    }
+
+    @Override
+    public String getTransferEncoding() {
+        return MIME.ENC_BINARY;
+    }
+
+    @Override
+    public long getContentLength() {
+        return this.mLength;
+    }
+
+    @Override
+    public void writeTo(final OutputStream out) throws IOException {
+
+        final FileInputStream stream = new FileInputStream(this.mFile);
+
+        try {
+            this.copy(stream.getChannel(), out);
+            out.flush();
+
+        } finally {
+            stream.close();
+        }
+    }
+
+    private void copy(final FileChannel channel, final OutputStream out) throws IOException {
+
+        final ByteBuffer buffer = acquire();
+
+        try {
+            long position = this.mOffset;
+            final long end = this.mOffset + this.mLength;
+
+            while (position < end) {
+                buffer.clear();
+                buffer.limit((int) Math.min(buffer.capacity(), end - position));
+
+                final int read = channel.read(buffer, position);
+
+                if (read == -1) {
+                    throw new IOException("Unexpected end of file: " + this.mFile.getAbsolutePath());
+                }
+                out.write(buffer.array(), 0, read);
+                position += read;
+            }
+
+        } finally {
+            release(buffer);
+        }
+    }
+
+    private static ByteBuffer acquire() {
+
+        final ByteBuffer buffer = BUFFERS.poll();
+
+        if (buffer != null) {
+            return buffer;
+        }
+        return ByteBuffer.allocate(BUFFER_SIZE);
+    }
+
+    private static void release(final ByteBuffer buffer) {
+
+        if (BUFFERS.size() < MAX_BUFFERS) {
+            BUFFERS.offer(buffer);
+        }
+    }
+}
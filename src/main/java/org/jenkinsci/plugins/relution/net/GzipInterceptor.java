@@ -0,0 +1,116 @@
+package org.jenkinsci.plugins.relution.net;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpException;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpRequestInterceptor;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpResponseInterceptor;
+import org.apache.http.entity.HttpEntityWrapper;
+import org.apache.http.protocol.HttpContext;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.GZIPInputStream;
+
+
+/**
+ * Advertises support for gzip compressed responses and transparently decompresses them. The
+ * size of every response body, on the wire and decompressed, is accounted to the
+ * {@link TransferStatistics} of the request's context, if any.
+ */
+public class GzipInterceptor implements HttpRequestInterceptor, HttpResponseInterceptor {
+
+    private final static String GZIP = "gzip";
+
+    @Override
+    public void process(final HttpRequest request, final HttpContext context) throws HttpException, IOException {
+
+        if (!request.containsHeader("Accept-Encoding")) {
+            request.addHeader("Accept-Encoding", GZIP);
+        }
+    }
+
+    @Override
+    public void process(final HttpResponse response, final HttpContext context) throws HttpException, IOException {
+
+        final HttpEntity entity = response.getEntity();
+
+        if (entity == null) {
+            return;
+        }
+
+        final Header encoding = entity.getContentEncoding();
+        final boolean compressed = encoding != null && GZIP.equalsIgnoreCase(encoding.getValue().trim());
+
+        if (compressed) {
+            response.removeHeaders("Content-Encoding");
+            response.removeHeaders("Content-Length");
+            response.removeHeaders("Content-MD5");
+        }
+
+        final TransferStatistics statistics = (TransferStatistics) context.getAttribute(TransferStatistics.ATTRIBUTE);
+        response.setEntity(new DecodingEntity(entity, compressed, statistics));
+    }
+
+    private static class DecodingEntity extends HttpEntityWrapper {
+
+        private final boolean            mCompressed;
+        private final TransferStatistics mStatistics;
+
+        public DecodingEntity(final HttpEntity entity, final boolean compressed, final TransferStatistics statistics) {
+            super(entity);
+
+            this.mCompressed = compressed;
+            this.mStatistics = statistics;
+        }
+
+        @Override
+        public InputStream getContent() throws IOException {
+
+            InputStream in = this.wrappedEntity.getContent();
+
+            if (this.mStatistics != null) {
+                in = this.mStatistics.countResponseWire(in);
+            }
+
+            if (this.mCompressed) {
+                in = new GZIPInputStream(in);
+            }
+
+            if (this.mStatistics != null) {
+                in = this.mStatistics.countResponse(in);
+            }
+            return in;
+        }
+
+        @Override
+        public Header getContentEncoding() {
+            return this.mCompressed ? null : super.getContentEncoding();
+        }
+
+        @Override
+        public long getContentLength() {
+            return this.mCompressed ? -1 : super.getContentLength();
+        }
+
+        @Override
+        public void writeTo(final OutputStream out) throws IOException {
+
+            final InputStream in = this.getContent();
+
+            try {
+                final byte[] buffer = new byte[4096];
+                int read;
+
+                while ((read = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, read);
+                }
+            } finally {
+                in.close();
+            }
+        }
+    }
+}
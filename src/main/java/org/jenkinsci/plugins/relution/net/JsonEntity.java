@@ -0,0 +1,131 @@
+package org.jenkinsci.plugins.relution.net;
+
+import com.google.gson.Gson;
+
+import org.apache.http.entity.AbstractHttpEntity;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.zip.GZIPOutputStream;
+
+
+/**
+ * An entity that serializes an object to JSON directly to the stream of the request, without
+ * creating an intermediate String. The body is sent using chunked transfer encoding, since its
+ * length is not known in advance, and can optionally be gzip compressed.
+ */
+public class JsonEntity extends AbstractHttpEntity {
+
+    private final static Charset     CHARSET = Charset.forName("UTF-8");
+
+    private final Gson               mGson;
+    private final Object             mObject;
+
+    private final boolean            mCompressed;
+    private final TransferStatistics mStatistics;
+
+    /**
+     * Creates an entity that serializes the specified object with the specified {@link Gson}.
+     * @param gson The {@link Gson} used to serialize the object.
+     * @param object The object to send.
+     */
+    public JsonEntity(final Gson gson, final Object object) {
+        this(gson, object, false, null);
+    }
+
+    /**
+     * Creates an entity that serializes the specified object with the specified {@link Gson}.
+     * @param gson The {@link Gson} used to serialize the object.
+     * @param object The object to send.
+     * @param compressed Whether the body is gzip compressed.
+     * @param statistics The statistics the size of the body is accounted to, or <code>null</code>.
+     */
+    public JsonEntity(final Gson gson, final Object object, final boolean compressed, final TransferStatistics statistics) {
+        this.mGson = gson;
+        this.mObject = object;
+
+        this.mCompressed = compressed;
+        this.mStatistics = statistics;
+
+        this.setContentType("application/json; charset=UTF-8");
+        this.setChunked(true);
+
+        if (compressed) {
+            this.setContentEncoding("gzip");
+        }
+    }
+
+    /**
+     * @return <code>true</code> if the body is gzip compressed.
+     */
+    public boolean isCompressed() {
+        return this.mCompressed;
+    }
+
+    /**
+     * @return An entity that sends the same object without compression.
+     */
+    public JsonEntity uncompressed() {
+        return new JsonEntity(this.mGson, this.mObject, false, this.mStatistics);
+    }
+
+    @Override
+    public boolean isRepeatable() {
+        return true;
+    }
+
+    @Override
+    public boolean isStreaming() {
+        return false;
+    }
+
+    @Override
+    public long getContentLength() {
+        return -1;
+    }
+
+    @Override
+    public InputStream getContent() throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        this.writeTo(out);
+        return new ByteArrayInputStream(out.toByteArray());
+    }
+
+    @Override
+    public void writeTo(final OutputStream out) throws IOException {
+
+        if (out == null) {
+            throw new IllegalArgumentException("The specified argument cannot be null: out");
+        }
+
+        OutputStream stream = out;
+
+        if (this.mStatistics != null) {
+            stream = this.mStatistics.countRequestWire(stream);
+        }
+
+        GZIPOutputStream gzip = null;
+        if (this.mCompressed) {
+            gzip = new GZIPOutputStream(stream);
+            stream = gzip;
+        }
+
+        if (this.mStatistics != null) {
+            stream = this.mStatistics.countRequest(stream);
+        }
+
+        final Writer writer = new OutputStreamWriter(stream, CHARSET);
+        this.mGson.toJson(this.mObject, writer);
+        writer.flush();
+
+        if (gzip != null) {
+            gzip.finish();
+        }
+    }
+}
@@ -27,6 +27,7 @@ package org.jenkinsci.plugins.relution.net;
 import org.apache.http.HttpEntity;
 import org.apache.http.client.methods.HttpDelete;
 import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPatch;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.methods.HttpPut;
 import org.apache.http.client.methods.HttpRequestBase;
@@ -44,10 +45,12 @@ public class Request {
     private final String              mUrl;
     private final Map<String, String> mHeaders     = new HashMap<String, String>();
     private HttpEntity                mHttpEntity;
+    private boolean                   mCacheable;
+    private volatile int              mStatusCode;
 
     /**
      * Create an new Request Object
-     * @param method 0: GET, 1: POST, 2: PUT, 3: DELETE
+     * @param method 0: GET, 1: POST, 2: PUT, 3: DELETE, 4: PATCH
      * @param url specific url to which the request response
      */
     public Request(final int method, final String url) {
@@ -78,6 +81,13 @@ public class Request {
 
             case Method.DELETE:
                 return new HttpDelete();
+
+            case Method.PATCH:
+                final HttpPatch patch = new HttpPatch();
+                if (entity != null) {
+                    patch.setEntity(entity);
+                }
+                return patch;
         }
     }
 
@@ -122,6 +132,43 @@ public class Request {
         this.mHttpEntity = entity;
     }
 
+    /**
+     * @return <code>true</code> if the response may be stored in and revalidated against the
+     * {@link ResponseCache}.
+     */
+    public boolean isCacheable() {
+        return this.mCacheable && this.mMethod == Method.GET;
+    }
+
+    /**
+     * @param cacheable Whether the response may be stored in the {@link ResponseCache}.
+     */
+    public void setCacheable(final boolean cacheable) {
+        this.mCacheable = cacheable;
+    }
+
+    /**
+     * @return The HTTP status code of the last response to the request, or <code>0</code> if it
+     * has not been answered yet.
+     */
+    public int getStatusCode() {
+        return this.mStatusCode;
+    }
+
+    /**
+     * @param statusCode The HTTP status code of the response to the request.
+     */
+    void setStatusCode(final int statusCode) {
+        this.mStatusCode = statusCode;
+    }
+
+    /**
+     * @return The URL of the request, including its query.
+     */
+    public String url() {
+        return this.getUrl();
+    }
+
     private String getUrl() {
         if (this.mQueryFields.size() == 0) {
             return this.mUrl;
@@ -130,9 +177,9 @@ public class Request {
     }
 
     /**
-     * creation of a new Request (HttpGet, HttpPost, HttpPut, HttpDelete) 
+     * creation of a new Request (HttpGet, HttpPost, HttpPut, HttpDelete, HttpPatch) 
      * with a (possibly) number of header values. 
-     * @return new Request (HttpGet, HttpPost, HttpPut, HttpDelete).
+     * @return new Request (HttpGet, HttpPost, HttpPut, HttpDelete, HttpPatch).
      * @throws URISyntaxException
      */
     public HttpRequestBase createHttpRequest() throws URISyntaxException {
@@ -155,5 +202,6 @@ public class Request {
         public final static int POST   = 1;
         public final static int PUT    = 2;
         public final static int DELETE = 3;
+        public final static int PATCH  = 4;
     }
 }
\ No newline at end of file
@@ -25,46 +25,63 @@
 
 package org.jenkinsci.plugins.relution.net;
 
+import com.google.gson.JsonObject;
+import org.apache.commons.lang.StringUtils;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
 import org.apache.http.HttpHost;
-import org.apache.http.HttpVersion;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
 import org.apache.http.ParseException;
 import org.apache.http.client.ClientProtocolException;
+import org.apache.http.client.HttpClient;
 import org.apache.http.client.methods.HttpRequestBase;
 import org.apache.http.conn.params.ConnRoutePNames;
-import org.apache.http.entity.StringEntity;
+import org.apache.http.entity.BufferedHttpEntity;
+import org.apache.http.entity.ContentType;
 import org.apache.http.entity.mime.MultipartEntity;
-import org.apache.http.entity.mime.content.FileBody;
-import org.apache.http.impl.client.BasicCookieStore;
-import org.apache.http.impl.client.DefaultHttpClient;
-import org.apache.http.params.CoreProtocolPNames;
+import org.apache.http.protocol.HttpContext;
 import org.apache.http.util.EntityUtils;
 import org.jenkinsci.plugins.relution.entities.ApiEndpoint;
 import org.jenkinsci.plugins.relution.json.ApiApp;
+import org.jenkinsci.plugins.relution.json.ApiResponse;
 import org.jenkinsci.plugins.relution.json.ApiVersion;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStreamReader;
 import java.io.PrintStream;
+import java.io.Reader;
+import java.io.StringReader;
 import java.net.URISyntaxException;
 import java.nio.charset.Charset;
+import java.util.concurrent.Callable;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 
 public class RequestFactory {
 
+    private final static Logger  LOGGER                    = Logger.getLogger(RequestFactory.class.getName());
+
     private final static Charset CHARSET                   = Charset.forName("UTF-8");
     private final static String  URL_APP_STORE_ITEMS       = "apps";
     private final static String  URL_APP_STORE_APP_VERSION = "versions";
     private final static String  URL_TEMP_FILE             = "files";
     private final static String  URL_RESOURCE_ANALYZER     = "apps/fromFile";
 
-    private BasicCookieStore     relutionCookieStore;
     private HttpHost             relutionProxyHost;
     private ApiEndpoint          endpoint;
 
     private PrintStream          logger;
 
+    private final TransferStatistics statistics = new TransferStatistics();
+
     /**
-     * send the request with org.apache.http
+     * send the request with org.apache.http over the pooled connections of the endpoint.
+     * The calling thread waits for the response, if it is interrupted the request is aborted.
      * @param request request should be send
      * @return response after executing request
      * @throws URISyntaxException
@@ -73,25 +90,265 @@ public class RequestFactory {
      * @throws IOException
      */
     public String send(final Request request) throws URISyntaxException, ParseException, ClientProtocolException, IOException {
-        final DefaultHttpClient client = new DefaultHttpClient();
+        return this.sendAsync(request).await();
+    }
 
-        try {
-            if (this.relutionProxyHost != null) {
-                client.getParams().setParameter(ConnRoutePNames.DEFAULT_PROXY, this.relutionProxyHost);
+    /**
+     * send the request with org.apache.http over the pooled connections of the endpoint and
+     * decode the response while it is received. The calling thread waits for the response, if
+     * it is interrupted the request is aborted.
+     * @param request request should be send
+     * @param parser decodes the response from the stream it is received on
+     * @return the decoded response
+     * @throws URISyntaxException
+     * @throws ClientProtocolException
+     * @throws IOException
+     */
+    public <T> T send(final Request request, final ResponseParser<T> parser) throws URISyntaxException, ClientProtocolException, IOException {
+        return this.sendAsync(request, parser).await();
+    }
+
+    /**
+     * send the request on a thread of the endpoint's pool and return immediately.
+     * @param request request should be send
+     * @return the pending response, cancelling it aborts the request
+     */
+    public ResponseFuture<String> sendAsync(final Request request) {
+        return this.submit(new ResponseTask<String>() {
+
+            @Override
+            public String call() throws Exception {
+                final HttpResponse httpResponse = RequestFactory.this.execute(request, this.future);
+                final String response = EntityUtils.toString(httpResponse.getEntity(), CHARSET);
+                RequestFactory.this.log("Response <<< %s", response);
+                return response;
             }
-            client.getParams().setParameter(CoreProtocolPNames.PROTOCOL_VERSION, HttpVersion.HTTP_1_1);
-            client.setCookieStore(this.relutionCookieStore);
+        });
+    }
 
-            final HttpRequestBase httpRequest = request.createHttpRequest();
-            this.log("Request >>> %s", httpRequest.toString());
+    /**
+     * send the request on a thread of the endpoint's pool and return immediately. The response
+     * is decoded on that thread while it is received.
+     * @param request request should be send
+     * @param parser decodes the response from the stream it is received on
+     * @return the pending response, cancelling it aborts the request
+     */
+    public <T> ResponseFuture<T> sendAsync(final Request request, final ResponseParser<T> parser) {
+        return this.submit(new ResponseTask<T>() {
 
-            final String response = EntityUtils.toString(client.execute(httpRequest).getEntity(), CHARSET);
-            this.log("Response <<< %s", response);
-            return response;
+            @Override
+            public T call() throws Exception {
 
+                if (request.isCacheable()) {
+                    return RequestFactory.this.receiveCached(request, this.future, parser);
+                }
+                return RequestFactory.this.receive(RequestFactory.this.execute(request, this.future), parser);
+            }
+        });
+    }
+
+    private <T> ResponseFuture<T> submit(final ResponseTask<T> task) {
+        final ResponseFuture<T> future = new ResponseFuture<T>(task);
+        task.future = future;
+
+        ClientPool.get(this.endpoint).getExecutor().execute(future);
+        return future;
+    }
+
+    private <T> T receive(final HttpResponse httpResponse, final ResponseParser<T> parser) throws IOException {
+        this.log("Response <<< %s", httpResponse.getStatusLine());
+
+        final HttpEntity entity = httpResponse.getEntity();
+        if (entity == null) {
+            return parser.parse(new StringReader(""));
+        }
+
+        final Charset charset = ContentType.getOrDefault(entity).getCharset();
+        final Reader reader = new InputStreamReader(entity.getContent(), charset != null ? charset : CHARSET);
+
+        try {
+            return parser.parse(reader);
         } finally {
-            client.getConnectionManager().shutdown();
+            reader.close();
+        }
+    }
+
+    /**
+     * Sends the request as a conditional request if a response to it has been cached. If the
+     * server responds with <code>304 Not Modified</code>, the cached response is decoded instead.
+     * Otherwise, the response is decoded while it is received and cached if it has a validator.
+     */
+    private <T> T receiveCached(final Request request, final ResponseFuture<?> future, final ResponseParser<T> parser)
+            throws URISyntaxException, ClientProtocolException, IOException {
+
+        final ResponseCache cache = ResponseCache.getInstance();
+        final String key = this.getCacheKey(request);
+        final ResponseCache.Entry cached = cache.get(key);
+
+        if (cached != null && cached.etag != null) {
+            request.addHeader("If-None-Match", cached.etag);
+        }
+
+        if (cached != null && cached.lastModified != null) {
+            request.addHeader("If-Modified-Since", cached.lastModified);
+        }
+
+        final HttpResponse httpResponse = this.execute(request, future);
+        final int status = httpResponse.getStatusLine().getStatusCode();
+
+        if (cached != null && status == HttpStatus.SC_NOT_MODIFIED) {
+            EntityUtils.consume(httpResponse.getEntity());
+            cache.hit(cached);
+            this.log("Response <<< %s, %d bytes served from cache", httpResponse.getStatusLine(), cached.body.length);
+
+            final Charset charset = cached.contentType != null ? ContentType.parse(cached.contentType).getCharset() : null;
+            return parser.parse(new InputStreamReader(new ByteArrayInputStream(cached.body), charset != null ? charset : CHARSET));
+        }
+        cache.miss();
+
+        final HttpEntity entity = httpResponse.getEntity();
+        final Header etag = httpResponse.getFirstHeader("ETag");
+        final Header lastModified = httpResponse.getFirstHeader("Last-Modified");
+
+        if (status != HttpStatus.SC_OK || entity == null || (etag == null && lastModified == null)) {
+            return this.receive(httpResponse, parser);
+        }
+        this.log("Response <<< %s", httpResponse.getStatusLine());
+
+        final Charset charset = ContentType.getOrDefault(entity).getCharset();
+        final ResponseCache.RecordingInputStream stream = new ResponseCache.RecordingInputStream(entity.getContent());
+        final Reader reader = new InputStreamReader(stream, charset != null ? charset : CHARSET);
+
+        try {
+            final T result = parser.parse(reader);
+            stream.drain();
+
+            final byte[] body = stream.getRecorded();
+
+            if (body != null) {
+                final String contentType = entity.getContentType() != null ? entity.getContentType().getValue() : null;
+                cache.put(key, new ResponseCache.Entry(
+                        etag != null ? etag.getValue() : null,
+                        lastModified != null ? lastModified.getValue() : null,
+                        contentType,
+                        body));
+            }
+            return result;
+
+        } finally {
+            reader.close();
+        }
+    }
+
+    private String getCacheKey(final Request request) {
+        return String.format("%s@%s %s", this.endpoint.getUsername(), this.endpoint.getOrganization(), request.url());
+    }
+
+    private HttpRequestBase createHttpRequest(final Request request) throws URISyntaxException {
+        final HttpRequestBase httpRequest = request.createHttpRequest();
+
+        if (this.relutionProxyHost != null) {
+            httpRequest.getParams().setParameter(ConnRoutePNames.DEFAULT_PROXY, this.relutionProxyHost);
+        }
+        return httpRequest;
+    }
+
+    /**
+     * Executes the request within the login session of the endpoint. If the server rejects the
+     * request because the session expired, the session is renewed and the request is sent again.
+     */
+    private HttpResponse execute(final Request request, final ResponseFuture<?> future) throws URISyntaxException, ClientProtocolException, IOException {
+        final HttpClient client = ClientPool.get(this.endpoint).getClient();
+        final SessionManager session = SessionManager.get(this.endpoint);
+
+        HttpRequestBase httpRequest = this.createHttpRequest(request);
+        final int generation = session.authenticate(client, httpRequest);
+
+        this.log("Request >>> %s", httpRequest.toString());
+        future.attach(httpRequest);
+        HttpResponse response = client.execute(httpRequest, this.createContext(session));
+
+        if (this.isCompressionRejected(request, response)) {
+            EntityUtils.consume(response.getEntity());
+            this.log("Compressed requests are not supported by the server, sending uncompressed...");
+
+            ClientPool.get(this.endpoint).disableRequestCompression();
+            request.setEntity(((JsonEntity) request.entity()).uncompressed());
+
+            httpRequest = this.createHttpRequest(request);
+            session.authenticate(client, httpRequest);
+            future.attach(httpRequest);
+            response = client.execute(httpRequest, this.createContext(session));
+        }
+
+        if (response.getStatusLine().getStatusCode() == HttpStatus.SC_UNAUTHORIZED
+                && (request.entity() == null || request.entity().isRepeatable())
+                && session.invalidate(generation)) {
+
+            EntityUtils.consume(response.getEntity());
+            this.log("Session expired, logging in again...");
+
+            httpRequest = this.createHttpRequest(request);
+            session.authenticate(client, httpRequest);
+            future.attach(httpRequest);
+            response = client.execute(httpRequest, this.createContext(session));
+        }
+
+        request.setStatusCode(response.getStatusLine().getStatusCode());
+        return response;
+    }
+
+    private HttpContext createContext(final SessionManager session) {
+        final HttpContext context = session.createContext();
+        context.setAttribute(TransferStatistics.ATTRIBUTE, this.statistics);
+        return context;
+    }
+
+    /**
+     * Returns whether the server rejected the compressed body of the request, either with
+     * <code>415 Unsupported Media Type</code> or with <code>400 Bad Request</code> and an error
+     * that refers to the encoding. Any other bad request is returned to the caller unchanged.
+     */
+    private boolean isCompressionRejected(final Request request, final HttpResponse response) throws IOException {
+
+        if (!(request.entity() instanceof JsonEntity) || !((JsonEntity) request.entity()).isCompressed()) {
+            return false;
+        }
+
+        final int status = response.getStatusLine().getStatusCode();
+
+        if (status == HttpStatus.SC_UNSUPPORTED_MEDIA_TYPE) {
+            return true;
+        }
+
+        if (status != HttpStatus.SC_BAD_REQUEST || response.getEntity() == null) {
+            return false;
         }
+
+        // Buffer the error, so it can still be read by the caller if it is unrelated
+        response.setEntity(new BufferedHttpEntity(response.getEntity()));
+        final String body = StringUtils.lowerCase(EntityUtils.toString(response.getEntity(), CHARSET));
+        return StringUtils.contains(body, "gzip") || StringUtils.contains(body, "encoding");
+    }
+
+    private JsonEntity createJsonEntity(final Object object) {
+        final boolean compress = ClientPool.get(this.endpoint).isCompressRequests();
+        return new JsonEntity(ApiResponse.COMPACT, object, compress, this.statistics);
+    }
+
+    /**
+     * @return The number of bytes sent and received by the requests of this factory.
+     */
+    public TransferStatistics getStatistics() {
+        return this.statistics;
+    }
+
+    /**
+     * A request that knows the future it is executed by, so the future can abort it.
+     */
+    private abstract static class ResponseTask<T> implements Callable<T> {
+
+        ResponseFuture<T> future;
     }
 
     public void setLogger(final PrintStream logger) {
@@ -122,7 +379,6 @@ public class RequestFactory {
         final String url = this.getUrl(path, subs);
         final Request request = new Request(method, url);
         request.addHeader("Accept", "application/json");
-        request.addHeader("Authorization", "Basic " + this.endpoint.getAuthorizationToken());
 
         return request;
     }
@@ -134,6 +390,40 @@ public class RequestFactory {
     public Request createAppStoreItemsRequest() {
         final Request request = this.getBaseRequest(Request.Method.GET, URL_APP_STORE_ITEMS);
         request.queryFields().add("locale", "de");
+        request.setCacheable(true);
+        return request;
+    }
+
+    /**
+     * Creates a request for a page of the store's applications.
+     * @param offset The index of the first application of the page.
+     * @param limit The maximum number of applications of the page.
+     * @return The request.
+     */
+    public Request createAppStoreItemsRequest(final int offset, final int limit) {
+        return this.createAppStoreItemsRequest(null, offset, limit);
+    }
+
+    /**
+     * Creates a request for a page of the store's applications that match the specified query.
+     * Only pages of unfiltered queries are cached.
+     * @param query The projection, filter and sort order of the applications, may be
+     * <code>null</code> to request complete applications.
+     * @param offset The index of the first application of the page.
+     * @param limit The maximum number of applications of the page.
+     * @return The request.
+     */
+    public Request createAppStoreItemsRequest(final CatalogQuery query, final int offset, final int limit) {
+        final Request request = this.createAppStoreItemsRequest();
+
+        if (query != null) {
+            query.applyTo(request.queryFields());
+
+            // Only complete listings are read again unchanged, filtered results are rarely reused
+            request.setCacheable(!query.isFiltered());
+        }
+        request.queryFields().add("offset", String.valueOf(offset));
+        request.queryFields().add("limit", String.valueOf(limit));
         return request;
     }
 
@@ -146,13 +436,34 @@ public class RequestFactory {
     public Request createUploadRequest(final String uploadToken, final File file) {
         final Request request = this.getBaseRequest(Request.Method.POST, URL_TEMP_FILE, uploadToken);
         final MultipartEntity entity = new MultipartEntity();
-        entity.addPart("file", new FileBody(file));
+        entity.addPart("file", new FileRangeBody(file));
         request.setEntity(entity);
 
         this.log("createUploadRequest: uploadToken=%s, file=%s", uploadToken, file.getAbsolutePath());
         return request;
     }
 
+    /**
+     * Creates a request that uploads one part of a file that is uploaded in several parts.
+     * @param uploadToken token that identifies the upload all parts belong to
+     * @param file file the part is read from
+     * @param offset offset of the first byte of the part
+     * @param length number of bytes in the part
+     * @return request that uploads the part, the response to the last part contains the
+     * persisted APIObject File.
+     */
+    public Request createUploadPartRequest(final String uploadToken, final File file, final long offset, final long length) {
+        final Request request = this.getBaseRequest(Request.Method.POST, URL_TEMP_FILE, uploadToken);
+        request.addHeader("Content-Range", "bytes %d-%d/%d", offset, offset + length - 1, file.length());
+
+        final MultipartEntity entity = new MultipartEntity();
+        entity.addPart("file", new FileRangeBody(file, offset, length));
+        request.setEntity(entity);
+
+        this.log("createUploadPartRequest: uploadToken=%s, offset=%d, length=%d", uploadToken, offset, length);
+        return request;
+    }
+
     /**
      * Creates an request which could be send against the relution.
      * @param uploadToken empty String
@@ -169,11 +480,10 @@ public class RequestFactory {
     public Request createUploadedApplicationInformationRequest(final ApiApp app) {
         final Request request = this.getBaseRequest(Request.Method.POST, URL_APP_STORE_ITEMS);
         request.addHeader("Content-Type", "application/json");
+        request.setEntity(this.createJsonEntity(app));
 
-        final StringEntity entity = new StringEntity(app.toString(), CHARSET);
-        request.setEntity(entity);
-
-        this.log("createUploadedApplicationInformationRequest: appObject=%s", app.toString());
+        this.log("createUploadedApplicationInformationRequest: internalName=%s", app.internalName);
+        this.debug("createUploadedApplicationInformationRequest: appObject=%s", app);
         return request;
     }
 
@@ -185,11 +495,59 @@ public class RequestFactory {
     public Request createUploadedVersionInformationRequest(final ApiVersion version) {
         final Request request = this.getBaseRequest(Request.Method.POST, URL_APP_STORE_ITEMS, version.appUuid, URL_APP_STORE_APP_VERSION);
         request.addHeader("Content-Type", "application/json");
+        request.setEntity(this.createJsonEntity(version));
 
-        final StringEntity entity = new StringEntity(version.toString(), CHARSET);
-        request.setEntity(entity);
+        this.log("createUploadedVersionInformationRequest: appUuid=%s, versionCode=%d", version.appUuid, version.versionCode);
+        this.debug("createUploadedVersionInformationRequest: versionObject=%s", version);
+        return request;
+    }
+
+    /**
+     * Creates a request that updates an existing version of an application, e.g. to change its
+     * release status. The file of the version is referenced, not uploaded again.
+     * @param version The version to update, its <code>appUuid</code> and <code>uuid</code> must
+     * be set.
+     * @return The request.
+     */
+    public Request createVersionUpdateRequest(final ApiVersion version) {
+        final Request request = this.getBaseRequest(Request.Method.PUT, URL_APP_STORE_ITEMS, version.appUuid, URL_APP_STORE_APP_VERSION, version.uuid);
+        request.addHeader("Content-Type", "application/json");
+        request.setEntity(this.createJsonEntity(version));
+
+        this.log("createVersionUpdateRequest: appUuid=%s, versionCode=%d, releaseStatus=%s", version.appUuid, version.versionCode,
+                version.releaseStatus);
+        this.debug("createVersionUpdateRequest: versionObject=%s", version);
+        return request;
+    }
+
+    /**
+     * Creates a request that updates only the specified properties of an existing version.
+     * @param version The version to update, its <code>appUuid</code> and <code>uuid</code> must
+     * be set.
+     * @param changes The changed properties of the version, see {@link ApiVersion#getChanges()}.
+     * @return The request.
+     */
+    public Request createVersionPatchRequest(final ApiVersion version, final JsonObject changes) {
+        final Request request = this.getBaseRequest(Request.Method.PATCH, URL_APP_STORE_ITEMS, version.appUuid, URL_APP_STORE_APP_VERSION, version.uuid);
+        request.addHeader("Content-Type", "application/json");
+        request.setEntity(this.createJsonEntity(changes));
+
+        this.log("createVersionPatchRequest: appUuid=%s, versionCode=%d, properties=%s", version.appUuid, version.versionCode,
+                changes.entrySet().size());
+        this.debug("createVersionPatchRequest: changes=%s", changes);
+        return request;
+    }
 
-        this.log("createUploadedApplicationInformationRequest: appObject=%s", version.toString());
+    /**
+     * Creates a request that deletes a version of an application, including its file.
+     * @param appUuid The UUID of the application.
+     * @param versionUuid The UUID of the version.
+     * @return The request.
+     */
+    public Request createVersionDeleteRequest(final String appUuid, final String versionUuid) {
+        final Request request = this.getBaseRequest(Request.Method.DELETE, URL_APP_STORE_ITEMS, appUuid, URL_APP_STORE_APP_VERSION, versionUuid);
+
+        this.log("createVersionDeleteRequest: appUuid=%s, versionUuid=%s", appUuid, versionUuid);
         return request;
     }
 
@@ -250,13 +608,6 @@ public class RequestFactory {
         this.relutionProxyHost = relutionProxyHost;
     }
 
-    /**
-     * @param relutionCookieStore BasicCookieStore to set.
-     */
-    public void setRelutionCookieStore(final BasicCookieStore relutionCookieStore) {
-        this.relutionCookieStore = relutionCookieStore;
-    }
-
     /**
      * @return Username sed to login to relution.
      */
@@ -293,4 +644,15 @@ public class RequestFactory {
             this.logger.println(message);
         }
     }
+
+    /**
+     * Logs the message only if debug logging is enabled, since its arguments (e.g. pretty printed
+     * request bodies) are expensive to format.
+     */
+    private void debug(final String format, final Object... args) {
+
+        if (LOGGER.isLoggable(Level.FINE)) {
+            this.log(format, args);
+        }
+    }
 }
@@ -0,0 +1,448 @@
+package org.jenkinsci.plugins.relution.net;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+
+/**
+ * Stores the responses to cacheable requests together with their validators (<code>ETag</code>
+ * and <code>Last-Modified</code>), so the request can be sent as a conditional request and a
+ * <code>304 Not Modified</code> response can be served from the cache.
+ * <p/>
+ * Responses are kept in memory and on disk. Both stores are limited in size, the least recently
+ * used responses are evicted first. The disk store is kept in the root directory of Jenkins and
+ * survives restarts, it is not used until that directory has been {@link #configure configured}.
+ * <p/>
+ * Only the memory store is locked by the cache, the disk store is read and written without
+ * blocking other requests.
+ */
+public class ResponseCache {
+
+    /**
+     * The maximum number of bytes of responses kept in memory.
+     */
+    public final static long         MAX_MEMORY_SIZE = 16 * 1024 * 1024;
+
+    /**
+     * The maximum number of bytes of responses kept on disk.
+     */
+    public final static long         MAX_DISK_SIZE   = 128 * 1024 * 1024;
+
+    /**
+     * The maximum size of a single response that is cached.
+     */
+    public final static int          MAX_ENTRY_SIZE  = 16 * 1024 * 1024;
+
+    private final static Logger      LOGGER          = Logger.getLogger(ResponseCache.class.getName());
+
+    private final static String      DIRECTORY_NAME  = "relution-cache";
+    private final static String      FILE_EXTENSION  = ".response";
+
+    private static File              sDirectory;
+    private static ResponseCache     sInstance;
+
+    private final File               mDirectory;
+    private final Map<String, Entry> mMemory         = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+    private long                     mMemorySize;
+
+    private final Object             mDiskLock       = new Object();
+    private long                     mDiskSize       = -1;
+
+    private final AtomicLong         mHits           = new AtomicLong();
+    private final AtomicLong         mMisses         = new AtomicLong();
+    private final AtomicLong         mBytesSaved     = new AtomicLong();
+
+    private ResponseCache(final File directory) {
+        this.mDirectory = directory;
+    }
+
+    /**
+     * Sets the directory of the disk store, a <code>relution-cache</code> directory is created in
+     * the specified directory. Until then, responses are only kept in memory.
+     * @param rootDir The root directory of Jenkins.
+     */
+    public static synchronized void configure(final File rootDir) {
+
+        final File directory = new File(rootDir, DIRECTORY_NAME);
+
+        if (!directory.equals(sDirectory)) {
+            sDirectory = directory;
+            sInstance = null;
+        }
+    }
+
+    /**
+     * @return The shared {@link ResponseCache}.
+     */
+    public static synchronized ResponseCache getInstance() {
+
+        if (sInstance == null) {
+            sInstance = new ResponseCache(sDirectory);
+        }
+        return sInstance;
+    }
+
+    /**
+     * Returns the cached response for the specified key.
+     * @param key The key of the request.
+     * @return The cached {@link Entry}, or <code>null</code> if no response is cached.
+     */
+    public Entry get(final String key) {
+
+        synchronized (this) {
+            final Entry entry = this.mMemory.get(key);
+
+            if (entry != null) {
+                return entry;
+            }
+        }
+
+        final Entry entry = this.read(key);
+
+        if (entry != null) {
+            synchronized (this) {
+                this.putMemory(key, entry);
+            }
+        }
+        return entry;
+    }
+
+    /**
+     * Stores the specified response.
+     * @param key The key of the request.
+     * @param entry The response to store.
+     */
+    public void put(final String key, final Entry entry) {
+
+        if (entry.body.length > MAX_ENTRY_SIZE) {
+            return;
+        }
+
+        synchronized (this) {
+            this.putMemory(key, entry);
+        }
+        this.write(key, entry);
+    }
+
+    /**
+     * Records that a cached response has been served because the server did not modify it.
+     * @param entry The served response.
+     */
+    public void hit(final Entry entry) {
+        this.mHits.incrementAndGet();
+        this.mBytesSaved.addAndGet(entry.body.length);
+    }
+
+    /**
+     * Records that a response had to be received from the server.
+     */
+    public void miss() {
+        this.mMisses.incrementAndGet();
+    }
+
+    public long getHits() {
+        return this.mHits.get();
+    }
+
+    public long getMisses() {
+        return this.mMisses.get();
+    }
+
+    public long getBytesSaved() {
+        return this.mBytesSaved.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ENGLISH, "%d hits, %d misses, %d bytes saved", this.getHits(), this.getMisses(), this.getBytesSaved());
+    }
+
+    private void putMemory(final String key, final Entry entry) {
+
+        final Entry previous = this.mMemory.put(key, entry);
+
+        if (previous != null) {
+            this.mMemorySize -= previous.body.length;
+        }
+        this.mMemorySize += entry.body.length;
+
+        final Iterator<Entry> iterator = this.mMemory.values().iterator();
+
+        while (this.mMemorySize > MAX_MEMORY_SIZE && iterator.hasNext()) {
+            this.mMemorySize -= iterator.next().body.length;
+            iterator.remove();
+        }
+    }
+
+    private File getFile(final String key) {
+        return new File(this.mDirectory, DigestUtils.sha1Hex(key) + FILE_EXTENSION);
+    }
+
+    private Entry read(final String key) {
+
+        if (this.mDirectory == null) {
+            return null;
+        }
+
+        final File file = this.getFile(key);
+
+        if (!file.isFile()) {
+            return null;
+        }
+
+        try {
+            final DataInputStream stream = new DataInputStream(new FileInputStream(file));
+
+            try {
+                if (!key.equals(stream.readUTF())) {
+                    return null;
+                }
+
+                final String etag = emptyToNull(stream.readUTF());
+                final String lastModified = emptyToNull(stream.readUTF());
+                final String contentType = emptyToNull(stream.readUTF());
+
+                final byte[] body = new byte[stream.readInt()];
+                stream.readFully(body);
+
+                file.setLastModified(System.currentTimeMillis());
+                return new Entry(etag, lastModified, contentType, body);
+
+            } finally {
+                stream.close();
+            }
+
+        } catch (final IOException e) {
+            FileUtils.deleteQuietly(file);
+            return null;
+        }
+    }
+
+    private void write(final String key, final Entry entry) {
+
+        if (this.mDirectory == null) {
+            return;
+        }
+
+        final File file = this.getFile(key);
+        File temp = null;
+
+        try {
+            FileUtils.forceMkdir(this.mDirectory);
+
+            // Concurrent writes of the same response must not share a temporary file
+            temp = File.createTempFile(file.getName(), ".tmp", this.mDirectory);
+            final DataOutputStream stream = new DataOutputStream(new FileOutputStream(temp));
+
+            try {
+                stream.writeUTF(key);
+                stream.writeUTF(nullToEmpty(entry.etag));
+                stream.writeUTF(nullToEmpty(entry.lastModified));
+                stream.writeUTF(nullToEmpty(entry.contentType));
+                stream.writeInt(entry.body.length);
+                stream.write(entry.body);
+
+            } finally {
+                stream.close();
+            }
+
+            final long replaced = file.length();
+
+            if (!temp.renameTo(file)) {
+                FileUtils.copyFile(temp, file);
+            }
+            this.written(file.length() - replaced);
+
+        } catch (final IOException e) {
+            LOGGER.log(Level.WARNING, "[Relution Publisher] Failed to cache response in " + file, e);
+
+        } finally {
+            FileUtils.deleteQuietly(temp);
+        }
+    }
+
+    /**
+     * Accounts for the bytes written to the disk store and evicts responses if it is full. The
+     * directory is only listed once to measure the store and again when it has to be evicted.
+     */
+    private void written(final long bytes) {
+
+        synchronized (this.mDiskLock) {
+            if (this.mDiskSize < 0) {
+                this.mDiskSize = this.evictDisk();
+            } else {
+                this.mDiskSize += bytes;
+            }
+
+            if (this.mDiskSize > MAX_DISK_SIZE) {
+                this.mDiskSize = this.evictDisk();
+            }
+        }
+    }
+
+    /**
+     * Deletes the least recently used responses until the disk store fits its maximum size.
+     * @return The size of the disk store.
+     */
+    private long evictDisk() {
+
+        final File[] files = this.mDirectory.listFiles();
+
+        if (files == null) {
+            return 0;
+        }
+
+        long size = 0;
+        for (final File file : files) {
+            size += file.length();
+        }
+
+        if (size <= MAX_DISK_SIZE) {
+            return size;
+        }
+
+        Arrays.sort(files, new Comparator<File>() {
+
+            @Override
+            public int compare(final File lhs, final File rhs) {
+                return Long.valueOf(lhs.lastModified()).compareTo(rhs.lastModified());
+            }
+        });
+
+        for (int index = 0; index < files.length && size > MAX_DISK_SIZE; index++) {
+            size -= files[index].length();
+            FileUtils.deleteQuietly(files[index]);
+        }
+        return size;
+    }
+
+    private static String emptyToNull(final String value) {
+        return value.length() > 0 ? value : null;
+    }
+
+    private static String nullToEmpty(final String value) {
+        return value != null ? value : "";
+    }
+
+    /**
+     * A cached response.
+     */
+    public static class Entry {
+
+        public final String etag;
+        public final String lastModified;
+        public final String contentType;
+        public final byte[] body;
+
+        public Entry(final String etag, final String lastModified, final String contentType, final byte[] body) {
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.contentType = contentType;
+            this.body = body;
+        }
+    }
+
+    /**
+     * Records the bytes read from a response, so the response can be cached once it has been
+     * read completely. Recording stops if the response exceeds {@link #MAX_ENTRY_SIZE}.
+     */
+    public static class RecordingInputStream extends FilterInputStream {
+
+        private ByteArrayOutputStream mRecorded = new ByteArrayOutputStream();
+        private boolean               mComplete;
+
+        public RecordingInputStream(final InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+
+            final int read = super.read();
+
+            if (read == -1) {
+                this.mComplete = true;
+            } else {
+                this.record(new byte[] { (byte) read }, 0, 1);
+            }
+            return read;
+        }
+
+        @Override
+        public int read(final byte[] buffer, final int offset, final int length) throws IOException {
+
+            final int read = super.read(buffer, offset, length);
+
+            if (read == -1) {
+                this.mComplete = true;
+            } else {
+                this.record(buffer, offset, read);
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(final long n) throws IOException {
+
+            // Skipped bytes would be missing from the recording
+            this.mRecorded = null;
+            return super.skip(n);
+        }
+
+        /**
+         * Reads the remainder of the response, e.g. after the parser stopped early.
+         * @throws IOException
+         */
+        public void drain() throws IOException {
+
+            final byte[] buffer = new byte[8192];
+            while (this.read(buffer, 0, buffer.length) != -1) {
+                // Read to the end
+            }
+        }
+
+        /**
+         * @return The recorded response, or <code>null</code> if it has not been read completely
+         * or exceeded the maximum size.
+         */
+        public byte[] getRecorded() {
+
+            if (!this.mComplete || this.mRecorded == null) {
+                return null;
+            }
+            return this.mRecorded.toByteArray();
+        }
+
+        private void record(final byte[] buffer, final int offset, final int length) {
+
+            if (this.mRecorded == null) {
+                return;
+            }
+
+            if (this.mRecorded.size() + length > MAX_ENTRY_SIZE) {
+                this.mRecorded = null;
+                return;
+            }
+            this.mRecorded.write(buffer, offset, length);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package org.jenkinsci.plugins.relution.net;
+
+import org.apache.http.client.methods.HttpRequestBase;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URISyntaxException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+
+/**
+ * The pending response to a request that is sent asynchronously by a {@link RequestFactory}.
+ * <p/>
+ * Cancelling the future aborts the HTTP request that is currently in progress, which closes its
+ * connection and unblocks the thread that sends it. Use {@link #await()} to wait for the response
+ * from a build: if the waiting thread is interrupted, because the build has been aborted, the
+ * request is cancelled as well.
+ * @param <T> The type of the decoded response.
+ */
+public class ResponseFuture<T> extends FutureTask<T> {
+
+    private volatile HttpRequestBase mRequest;
+
+    ResponseFuture(final Callable<T> callable) {
+        super(callable);
+    }
+
+    /**
+     * Waits for the response and returns it. If the current thread is interrupted while waiting,
+     * the request is cancelled.
+     * @return The decoded response.
+     * @throws URISyntaxException
+     * @throws IOException if the request failed, or an {@link InterruptedIOException} if it was
+     * cancelled.
+     */
+    public T await() throws URISyntaxException, IOException {
+        return await(this);
+    }
+
+    /**
+     * Waits for the specified response and returns it. If the current thread is interrupted while
+     * waiting, the request is cancelled.
+     * @param future The pending response.
+     * @return The decoded response.
+     * @throws URISyntaxException
+     * @throws IOException if the request failed, or an {@link InterruptedIOException} if it was
+     * cancelled.
+     */
+    public static <T> T await(final Future<T> future) throws URISyntaxException, IOException {
+
+        try {
+            return future.get();
+
+        } catch (final InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Request cancelled");
+
+        } catch (final CancellationException e) {
+            throw new InterruptedIOException("Request cancelled");
+
+        } catch (final ExecutionException e) {
+            final Throwable cause = e.getCause();
+
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof URISyntaxException) {
+                throw (URISyntaxException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    @Override
+    public boolean cancel(final boolean mayInterruptIfRunning) {
+
+        final boolean cancelled = super.cancel(mayInterruptIfRunning);
+        final HttpRequestBase request = this.mRequest;
+
+        if (cancelled && request != null) {
+            request.abort();
+        }
+        return cancelled;
+    }
+
+    /**
+     * Sets the HTTP request that is about to be executed for this response. The request is
+     * aborted immediately if the future has already been cancelled.
+     * @param request The HTTP request.
+     */
+    void attach(final HttpRequestBase request) {
+        this.mRequest = request;
+
+        if (this.isCancelled()) {
+            request.abort();
+        }
+    }
+}
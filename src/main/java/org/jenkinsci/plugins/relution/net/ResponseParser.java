@@ -0,0 +1,22 @@
+package org.jenkinsci.plugins.relution.net;
+
+import java.io.IOException;
+import java.io.Reader;
+
+
+/**
+ * Decodes the body of a response directly from the stream it is received on, without buffering
+ * the whole body in memory first.
+ * @param <T> The type of the decoded object.
+ */
+public interface ResponseParser<T> {
+
+    /**
+     * Decodes the body of a response.
+     * @param reader The reader that provides the body of the response. The reader is closed by
+     * the caller; a parser may return before the end of the body has been reached.
+     * @return The decoded object.
+     * @throws IOException
+     */
+    T parse(Reader reader) throws IOException;
+}
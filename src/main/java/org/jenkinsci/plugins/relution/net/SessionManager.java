@@ -0,0 +1,204 @@
+package org.jenkinsci.plugins.relution.net;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.NameValuePair;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.entity.UrlEncodedFormEntity;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.client.protocol.ClientContext;
+import org.apache.http.impl.client.BasicCookieStore;
+import org.apache.http.message.BasicNameValuePair;
+import org.apache.http.protocol.BasicHttpContext;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.util.EntityUtils;
+import org.jenkinsci.plugins.relution.entities.ApiEndpoint;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * Manages the login session of an {@link ApiEndpoint}.
+ * <p/>
+ * The session is established once through the <code>/gofer/security-login</code> form login and
+ * its cookie is shared by all builds and concurrent publications to the endpoint, so the server
+ * does not have to authenticate every request. If the session expires, the next request that is
+ * rejected with <code>401 Unauthorized</code> renews it. If the server does not accept the form
+ * login (responds with <code>404 Not Found</code> or <code>405 Method Not Allowed</code>), requests
+ * are authenticated with a Basic <code>Authorization</code> header instead. Any other failure is
+ * retried by the next request.
+ * <p/>
+ * Only one thread of an endpoint logs in at a time, the state of the session is not locked while
+ * the login request is in progress.
+ */
+public class SessionManager {
+
+    private final static Charset                          CHARSET            = Charset.forName("UTF-8");
+
+    private final static String                           LOGIN_API_V1       = "/gofer/security-login";
+    private final static String                           USERNAME_PARAM     = "j_username";
+    private final static String                           ORGANIZATION_PARAM = "j_organization";
+    private final static String                           PASSWORD_PARAM     = "j_password";
+    private final static String                           LOGIN_SUCCESS      = "success";
+
+    private final static Map<ApiEndpoint, SessionManager> SESSIONS           = new HashMap<ApiEndpoint, SessionManager>();
+
+    private final ApiEndpoint                             mEndpoint;
+    private final String                                  mPassword;
+    private final String                                  mAuthorization;
+
+    private final BasicCookieStore                        mCookieStore       = new BasicCookieStore();
+    private final Object                                  mLoginLock         = new Object();
+
+    private boolean                                       mLoggedIn;
+    private boolean                                       mLoginSupported    = true;
+    private int                                           mGeneration;
+
+    private SessionManager(final ApiEndpoint endpoint) {
+        this.mEndpoint = endpoint;
+        this.mPassword = endpoint.getPassword();
+        this.mAuthorization = "Basic " + endpoint.getAuthorizationToken();
+    }
+
+    /**
+     * Returns the session manager for the specified endpoint, creating it if necessary. A new
+     * session is started if the password of the endpoint has been changed.
+     * @param endpoint The {@link ApiEndpoint} for which to return the session manager.
+     * @return The {@link SessionManager} of the endpoint.
+     */
+    public static synchronized SessionManager get(final ApiEndpoint endpoint) {
+
+        SessionManager session = SESSIONS.get(endpoint);
+
+        if (session == null || !StringUtils.equals(session.mPassword, endpoint.getPassword())) {
+            session = new SessionManager(endpoint);
+            SESSIONS.put(endpoint, session);
+        }
+        return session;
+    }
+
+    /**
+     * Creates a context for a request to the endpoint that contains the cookies of the session.
+     * @return A new {@link HttpContext}.
+     */
+    public HttpContext createContext() {
+        final HttpContext context = new BasicHttpContext();
+        context.setAttribute(ClientContext.COOKIE_STORE, this.mCookieStore);
+        return context;
+    }
+
+    /**
+     * Logs in if no session has been established yet and authenticates the specified request,
+     * either through the session cookie or, if the server does not support the form login,
+     * through an <code>Authorization</code> header.
+     * @param client The client used to log in.
+     * @param request The request to authenticate, its parameters (e.g. the proxy) are also used
+     * for the login request.
+     * @return The generation of the session the request has been authenticated with.
+     * @throws IOException
+     */
+    public int authenticate(final HttpClient client, final HttpRequestBase request) throws IOException {
+
+        if (this.isLoginRequired()) {
+            synchronized (this.mLoginLock) {
+                if (this.isLoginRequired()) {
+                    final int status = this.login(client, request);
+
+                    synchronized (this) {
+                        this.mLoggedIn = (status == HttpStatus.SC_OK);
+                        this.mLoginSupported = (status != HttpStatus.SC_NOT_FOUND && status != HttpStatus.SC_METHOD_NOT_ALLOWED);
+                    }
+                }
+            }
+        }
+
+        synchronized (this) {
+            if (!this.mLoggedIn) {
+                request.setHeader("Authorization", this.mAuthorization);
+            }
+            return this.mGeneration;
+        }
+    }
+
+    /**
+     * Invalidates the session after the server rejected a request authenticated with it, so the
+     * next request logs in again. Has no effect if the session has already been renewed by
+     * another thread since the request was authenticated.
+     * @param generation The generation returned by {@link #authenticate}.
+     * @return <code>true</code> if a new session can be established, <code>false</code> if the
+     * request was not authenticated by a session.
+     */
+    public synchronized boolean invalidate(final int generation) {
+
+        if (generation != this.mGeneration) {
+            return true;
+        }
+
+        if (!this.mLoggedIn) {
+            return false;
+        }
+
+        this.mLoggedIn = false;
+        this.mGeneration++;
+        this.mCookieStore.clear();
+        return true;
+    }
+
+    private synchronized boolean isLoginRequired() {
+        return !this.mLoggedIn && this.mLoginSupported;
+    }
+
+    /**
+     * Posts the credentials to the form login of the endpoint, the password is sent in the body
+     * so it does not end up in access logs.
+     * @return The status code of the response, <code>200</code> if the login succeeded, or
+     * <code>404</code> if the endpoint does not support the form login.
+     */
+    private int login(final HttpClient client, final HttpRequestBase template) throws IOException {
+
+        final Request request;
+
+        try {
+            request = new Request(Request.Method.POST, this.getLoginUrl());
+        } catch (final URISyntaxException e) {
+            return HttpStatus.SC_NOT_FOUND;
+        }
+
+        final List<NameValuePair> fields = new ArrayList<NameValuePair>();
+        fields.add(new BasicNameValuePair(USERNAME_PARAM, this.mEndpoint.getUsername()));
+        fields.add(new BasicNameValuePair(ORGANIZATION_PARAM, this.mEndpoint.getOrganization()));
+        fields.add(new BasicNameValuePair(PASSWORD_PARAM, this.mEndpoint.getPassword()));
+        request.setEntity(new UrlEncodedFormEntity(fields, CHARSET.name()));
+
+        try {
+            final HttpRequestBase httpRequest = request.createHttpRequest();
+            httpRequest.setParams(template.getParams());
+
+            final HttpResponse response = client.execute(httpRequest, this.createContext());
+            final int status = response.getStatusLine().getStatusCode();
+            final String body = EntityUtils.toString(response.getEntity(), CHARSET);
+
+            if (status == HttpStatus.SC_OK && !LOGIN_SUCCESS.equals(StringUtils.trim(body))) {
+                return HttpStatus.SC_UNAUTHORIZED;
+            }
+            return status;
+
+        } catch (final URISyntaxException e) {
+            return HttpStatus.SC_NOT_FOUND;
+        }
+    }
+
+    private String getLoginUrl() throws URISyntaxException {
+
+        final URI uri = new URI(this.mEndpoint.getUrl());
+        return new URI(uri.getScheme(), null, uri.getHost(), uri.getPort(), LOGIN_API_V1, null, null).toString();
+    }
+}
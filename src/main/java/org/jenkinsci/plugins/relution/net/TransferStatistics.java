@@ -0,0 +1,148 @@
+package org.jenkinsci.plugins.relution.net;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * Counts the bytes of request and response bodies, both as they are sent or received on the wire
+ * and before compression or after decompression respectively.
+ */
+public class TransferStatistics {
+
+    /**
+     * The name of the attribute of a request's context that holds the statistics the request is
+     * accounted to.
+     */
+    public final static String ATTRIBUTE          = "relution.transfer-statistics";
+
+    private final AtomicLong   mRequestBytes      = new AtomicLong();
+    private final AtomicLong   mRequestWireBytes  = new AtomicLong();
+    private final AtomicLong   mResponseBytes     = new AtomicLong();
+    private final AtomicLong   mResponseWireBytes = new AtomicLong();
+
+    /**
+     * @return The number of bytes of all request bodies before compression.
+     */
+    public long getRequestBytes() {
+        return this.mRequestBytes.get();
+    }
+
+    /**
+     * @return The number of bytes of all request bodies sent on the wire.
+     */
+    public long getRequestWireBytes() {
+        return this.mRequestWireBytes.get();
+    }
+
+    /**
+     * @return The number of bytes of all response bodies after decompression.
+     */
+    public long getResponseBytes() {
+        return this.mResponseBytes.get();
+    }
+
+    /**
+     * @return The number of bytes of all response bodies received on the wire.
+     */
+    public long getResponseWireBytes() {
+        return this.mResponseWireBytes.get();
+    }
+
+    /**
+     * Wraps a stream a request body is written to before it is compressed.
+     */
+    public OutputStream countRequest(final OutputStream out) {
+        return new CountingOutputStream(out, this.mRequestBytes);
+    }
+
+    /**
+     * Wraps a stream a request body is written to after it has been compressed.
+     */
+    public OutputStream countRequestWire(final OutputStream out) {
+        return new CountingOutputStream(out, this.mRequestWireBytes);
+    }
+
+    /**
+     * Wraps a stream a response body is read from after it has been decompressed.
+     */
+    public InputStream countResponse(final InputStream in) {
+        return new CountingInputStream(in, this.mResponseBytes);
+    }
+
+    /**
+     * Wraps a stream a response body is read from before it is decompressed.
+     */
+    public InputStream countResponseWire(final InputStream in) {
+        return new CountingInputStream(in, this.mResponseWireBytes);
+    }
+
+    @Override
+    public String toString() {
+
+        return String.format(
+                Locale.ENGLISH,
+                "sent %d bytes (%d uncompressed), received %d bytes (%d uncompressed)",
+                this.getRequestWireBytes(),
+                this.getRequestBytes(),
+                this.getResponseWireBytes(),
+                this.getResponseBytes());
+    }
+
+    private static class CountingOutputStream extends FilterOutputStream {
+
+        private final AtomicLong mCount;
+
+        public CountingOutputStream(final OutputStream out, final AtomicLong count) {
+            super(out);
+            this.mCount = count;
+        }
+
+        @Override
+        public void write(final int b) throws IOException {
+            this.out.write(b);
+            this.mCount.incrementAndGet();
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) throws IOException {
+            this.out.write(b, off, len);
+            this.mCount.addAndGet(len);
+        }
+    }
+
+    private static class CountingInputStream extends FilterInputStream {
+
+        private final AtomicLong mCount;
+
+        public CountingInputStream(final InputStream in, final AtomicLong count) {
+            super(in);
+            this.mCount = count;
+        }
+
+        @Override
+        public int read() throws IOException {
+            final int b = this.in.read();
+
+            if (b != -1) {
+                this.mCount.incrementAndGet();
+            }
+            return b;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+            final int read = this.in.read(b, off, len);
+
+            if (read > 0) {
+                this.mCount.addAndGet(read);
+            }
+            return read;
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package org.jenkinsci.plugins.relution.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+
+/**
+ * Stores, replaces and concurrently reads applications of a {@link CatalogFile}.
+ */
+public class CatalogFileTest {
+
+    private File        mDirectory;
+    private CatalogFile mFile;
+
+    @Before
+    public void setUp() throws IOException {
+        this.mDirectory = File.createTempFile("catalog", "");
+        this.mDirectory.delete();
+        this.mFile = CatalogFile.create(new File(this.mDirectory, "test.index"), new CompactCatalog.Builder().build());
+    }
+
+    @After
+    public void tearDown() {
+        this.mFile.delete();
+        FileUtils.deleteQuietly(this.mDirectory);
+    }
+
+    @Test
+    public void addsVersions() throws IOException {
+        assertTrue(this.mFile.put("app|ANDROID", "uuid-1", 1));
+        assertTrue(this.mFile.put("app|ANDROID", "uuid-1", 2));
+        assertFalse(this.mFile.put("app|ANDROID", "uuid-2", 3));
+
+        final AppIndex.Entry entry = this.mFile.get("app|ANDROID");
+        assertEquals("uuid-1", entry.getAppUuid());
+        assertTrue(entry.hasVersion(1));
+        assertTrue(entry.hasVersion(2));
+        assertFalse(entry.hasVersion(3));
+        assertNull(this.mFile.get("app|IOS"));
+    }
+
+    @Test
+    public void replacesVersions() throws IOException {
+        this.mFile.merge("app|", "uuid-1", new int[] { 1, 2, 3 });
+        this.mFile.merge("app|", "uuid-1", new int[] { 3 });
+
+        final AppIndex.Entry entry = this.mFile.get("app|");
+        assertEquals(1, entry.getVersionCodes().length);
+        assertEquals(3, entry.getLatestVersionCode());
+    }
+
+    @Test
+    public void removesVersionsOfAllKeys() throws IOException {
+        this.mFile.merge("app|ANDROID", "uuid-1", new int[] { 1, 2, 3 });
+        this.mFile.merge("app|IOS", "uuid-1", new int[] { 1, 2, 3 });
+        this.mFile.merge("other|", "uuid-2", new int[] { 2 });
+        this.mFile.put(CatalogFile.digestKey("abc"), "uuid-1", 2);
+
+        this.mFile.remove(Collections.singletonMap("uuid-1", Collections.singleton(2)));
+
+        assertFalse(this.mFile.get("app|ANDROID").hasVersion(2));
+        assertTrue(this.mFile.get("app|IOS").hasVersion(3));
+        assertFalse(this.mFile.get("app|IOS").hasVersion(2));
+        assertFalse(this.mFile.get(CatalogFile.digestKey("abc")).hasVersions());
+        assertTrue(this.mFile.get("other|").hasVersion(2));
+    }
+
+    /**
+     * Replacing the versions of the same applications over and over must not grow the file,
+     * replaced records are dropped when the file is full.
+     */
+    @Test
+    public void compactsReplacedRecords() throws IOException {
+
+        for (int round = 0; round < 2000; round++) {
+            for (int app = 0; app < 50; app++) {
+                this.mFile.merge("app" + app + "|", "uuid-" + app, codes(round, 1 + (round % 40)));
+            }
+        }
+
+        for (int app = 0; app < 50; app++) {
+            assertNotNull(this.mFile.get("app" + app + "|"));
+        }
+        assertEquals(50, this.mFile.size());
+        assertTrue("Index grew to " + FileUtils.sizeOfDirectory(this.mDirectory) + " bytes",
+                FileUtils.sizeOfDirectory(this.mDirectory) < 1024 * 1024);
+    }
+
+    /**
+     * Readers must never see a record that is only partially written.
+     */
+    @Test
+    public void readsConsistentRecords() throws Exception {
+
+        final AtomicBoolean running = new AtomicBoolean(true);
+        final AtomicReference<String> failure = new AtomicReference<String>();
+        this.mFile.merge("app|", "uuid", codes(0, 1));
+
+        final Thread[] readers = new Thread[4];
+
+        for (int index = 0; index < readers.length; index++) {
+            readers[index] = new Thread() {
+
+                @Override
+                public void run() {
+                    while (running.get()) {
+                        final AppIndex.Entry entry = CatalogFileTest.this.mFile.get("app|");
+                        final int[] codes = entry.getVersionCodes();
+
+                        for (final int code : codes) {
+                            if (code != codes[0] || !"uuid".equals(entry.getAppUuid())) {
+                                failure.set("Inconsistent record: " + entry.getAppUuid() + " " + Arrays.toString(codes));
+                            }
+                        }
+                    }
+                }
+            };
+            readers[index].start();
+        }
+
+        for (int round = 1; round < 20000; round++) {
+            this.mFile.merge("app|", "uuid", codes(round, 1 + (round % 16)));
+            this.mFile.merge("other" + (round % 500) + "|", "uuid", codes(round, 1));
+        }
+
+        running.set(false);
+        for (final Thread reader : readers) {
+            reader.join();
+        }
+        assertNull(failure.get());
+    }
+
+    private static int[] codes(final int code, final int count) {
+        final int[] codes = new int[count];
+        Arrays.fill(codes, code);
+        return codes;
+    }
+}
@@ -0,0 +1,121 @@
+package org.jenkinsci.plugins.relution.cache;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+import org.jenkinsci.plugins.relution.json.ApiApp;
+import org.jenkinsci.plugins.relution.json.ApiResponse;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+
+/**
+ * Looks up applications of a {@link CompactCatalog}, and compares its heap usage with the
+ * {@link ApiApp} objects it replaces. The comparison only runs if the
+ * <code>relution.benchmark</code> system property is set to <code>true</code>.
+ */
+public class CompactCatalogTest {
+
+    private final static String BENCHMARK  = "relution.benchmark";
+    private final static Logger LOGGER     = Logger.getLogger(CompactCatalogTest.class.getName());
+
+    private final static int    LARGE_APPS = 20000;
+    private final static int    VERSIONS   = 5;
+
+    @Test
+    public void findsApplications() {
+        final CompactCatalog catalog = new CompactCatalog.Builder()
+                .add(app(1, 3))
+                .add(app(2, 1))
+                .add(ApiResponse.COMPACT.fromJson("{\"uuid\":\"any\",\"internalName\":\"com.example.any\",\"versions\":[]}", ApiApp.class))
+                .build();
+
+        final int app = catalog.find("com.example.app1", "android");
+        assertEquals("app-1", catalog.getAppUuid(app));
+        assertArrayEquals(new int[] { 1, 2, 3 }, catalog.getVersionCodes(app));
+        assertEquals("Name 1 (3)", catalog.getName(app, "en"));
+        assertEquals(3, catalog.getVersionCode(catalog.getLatestVersion(app)));
+
+        assertEquals(CompactCatalog.NOT_FOUND, catalog.find("com.example.app1", "IOS"));
+        assertEquals("any", catalog.getAppUuid(catalog.find("com.example.any", "IOS")));
+        assertEquals(CompactCatalog.NOT_FOUND, catalog.getLatestVersion(catalog.find("com.example.any", null)));
+    }
+
+    /**
+     * Reports the heap retained by {@value #LARGE_APPS} applications with {@value #VERSIONS}
+     * versions each, as decoded {@link ApiApp} objects and as a {@link CompactCatalog}. The sizes
+     * are measured with the garbage collector and are approximate. Run with
+     * <code>mvn test -Drelution.benchmark=true</code>.
+     */
+    @Test
+    public void comparesHeapUsageWithModel() throws InterruptedException {
+        assumeTrue(Boolean.getBoolean(BENCHMARK));
+
+        final long baseline = usedHeap();
+        List<ApiApp> apps = new ArrayList<ApiApp>(LARGE_APPS);
+
+        for (int index = 0; index < LARGE_APPS; index++) {
+            apps.add(app(index, VERSIONS));
+        }
+        final long model = usedHeap() - baseline;
+        assertEquals(LARGE_APPS, apps.size());
+        apps = null;
+
+        final long emptied = usedHeap();
+        final CompactCatalog.Builder builder = new CompactCatalog.Builder();
+
+        // The catalog is built while the store is traversed, only one application is decoded at a time
+        for (int index = 0; index < LARGE_APPS; index++) {
+            builder.add(app(index, VERSIONS));
+        }
+        final CompactCatalog catalog = builder.build();
+        final long compact = usedHeap() - emptied;
+        assertEquals(LARGE_APPS, catalog.size());
+
+        LOGGER.info(String.format("%d applications with %d versions: ApiApp %d KiB, CompactCatalog %d KiB", LARGE_APPS, VERSIONS,
+                model / 1024, compact / 1024));
+    }
+
+    /**
+     * @return An application with the specified number of versions, as decoded from a listing of
+     * the store, with localized properties and files.
+     */
+    private static ApiApp app(final int index, final int versions) {
+        final StringBuilder json = new StringBuilder();
+
+        json.append(String.format("{'uuid':'app-%d','type':'NATIVE','internalName':'com.example.app%d','platforms':['ANDROID'],", index,
+                index));
+        json.append("'rating':4.5,'ratingCount':10,'downloadCount':99,'createdBy':'jenkins','creationDate':1400000000000,");
+        json.append("'modifiedBy':'admin','modificationDate':1400000002000,'versions':[");
+
+        for (int code = 1; code <= versions; code++) {
+            json.append(code > 1 ? "," : "");
+            json.append(String.format("{'uuid':'version-%d-%d','versionName':'1.0.%d','versionCode':%d,'releaseStatus':'DEVELOPMENT',",
+                    index, code, code, code));
+            json.append(String.format("'file':{'uuid':'file-%d-%d','name':'app.apk','contentType':'application/vnd.android',", index,
+                    code));
+            json.append("'size':123456,'modificationDate':1400000000000},");
+            json.append(String.format("'name':{'en':'Name %d (%d)','de':'Name %d (%d)'},", index, code, index, code));
+            json.append(String.format("'description':{'en':'Description of %d','de':'Beschreibung von %d'},", index, index));
+            json.append(String.format("'changelog':{'en':'Changes of %d.%d'},", index, code));
+            json.append("'developerName':'Developer','creationDate':1400000000000,'modificationDate':1400000001000}");
+        }
+        json.append("]}");
+
+        return ApiResponse.COMPACT.fromJson(json.toString().replace('\'', '"'), ApiApp.class);
+    }
+
+    private static long usedHeap() throws InterruptedException {
+        final Runtime runtime = Runtime.getRuntime();
+
+        for (int round = 0; round < 4; round++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,169 @@
+package org.jenkinsci.plugins.relution.json;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+
+import org.junit.Test;
+
+import java.util.logging.Logger;
+
+
+/**
+ * Compares the adapters of {@link ApiTypeAdapterFactory} with Gson's reflective adapters, which
+ * they replace and must remain compatible with. The throughput of both is only compared if the
+ * <code>relution.benchmark</code> system property is set to <code>true</code>.
+ */
+public class ApiTypeAdapterFactoryTest {
+
+    private final static String BENCHMARK  = "relution.benchmark";
+    private final static Logger LOGGER     = Logger.getLogger(ApiTypeAdapterFactoryTest.class.getName());
+
+    private final static int    LARGE_APPS = 2000;
+    private final static int    ROUNDS     = 5;
+
+    private final static String FILE       = "{'uuid':'f1','name':'app.apk','link':'/files/f1','contentType':'application/vnd.android',"
+                                                   + "'size':123456,'modificationDate':1400000000000,'downloadCount':7}";
+
+    private final static String VERSION    = "{'uuid':'v1','appUuid':'a1','versionName':'1.0.2','versionCode':12,"
+                                                   + "'releaseStatus':'REVIEW','downloadCount':3,'installCount':2,'link':'/v1',"
+                                                   + "'file':" + FILE + ",'icon':" + FILE + ",'screenshots':[" + FILE + "," + FILE + "],"
+                                                   + "'constraints':[{'uuid':'c1','name':'minOs','value':'4.0','type':'STRING'},"
+                                                   + "{'uuid':'c2','name':'size','value':12.5,'type':'NUMBER'}],"
+                                                   + "'name':{'en':'App','de':'Anwendung'},'keywords':{'en':'test'},"
+                                                   + "'description':{'en':'An app'},'changelog':{'en':'Fixes'},"
+                                                   + "'copyright':'(c) Test','developerName':'Dev','developerWeb':'http://dev',"
+                                                   + "'developerEmail':'dev@example.com','createdBy':'jenkins','creationDate':1400000000000,"
+                                                   + "'modifiedBy':'admin','modificationDate':1400000001000,'unknown':{'nested':[1,2,3]}}";
+
+    private final static String APP        = "{'uuid':'a1','type':'NATIVE','internalName':'com.example.app',"
+                                                   + "'platforms':['ANDROID'],'categories':[{'uuid':'k1','name':{'en':'Tools'},"
+                                                   + "'description':{'en':'Useful'}}],'versions':[" + VERSION + "," + VERSION + "],"
+                                                   + "'rating':4.5,'ratingCount':10,'downloadCount':99,"
+                                                   + "'acl':{'read':['users','admins'],'write':['admins']},"
+                                                   + "'createdBy':'jenkins','creationDate':1400000000000,"
+                                                   + "'modifiedBy':'admin','modificationDate':1400000002000,'unknown':true}";
+
+    private final static String RESPONSE   = "{'status':0,'message':'OK','errors':{},'total':2,'results':[" + APP + "," + APP + "]}";
+
+    private final static String SPARSE_APP = "{'uuid':'a2','versions':[{'versionCode':1,'file':null}],'rating':null}";
+
+    private final Gson          mReflective      = new Gson();
+    private final Gson          mReflectiveNulls = new GsonBuilder().serializeNulls().create();
+    private final Gson          mAdapters        = ApiResponse.COMPACT;
+    private final Gson          mAdaptersNulls   = new GsonBuilder().registerTypeAdapterFactory(new ApiTypeAdapterFactory()).serializeNulls()
+                                                         .create();
+
+    @Test
+    public void roundTripsVersion() {
+        this.assertRoundTrip(VERSION, ApiVersion.class);
+    }
+
+    @Test
+    public void roundTripsApp() {
+        this.assertRoundTrip(APP, ApiApp.class);
+        this.assertRoundTrip(SPARSE_APP, ApiApp.class);
+    }
+
+    @Test
+    public void roundTripsResponse() {
+        this.assertRoundTrip(RESPONSE, ApiResponse.class);
+        this.assertRoundTrip("{'status':1,'message':'Failed','results':[]}", ApiResponse.class);
+    }
+
+    /**
+     * Reports the throughput of both kinds of adapters when decoding and encoding a listing of
+     * {@value #LARGE_APPS} applications. There is no assertion on the timings, they depend on the
+     * machine. Run with <code>mvn test -Drelution.benchmark=true</code>.
+     */
+    @Test
+    public void comparesThroughputWithReflection() {
+        assumeTrue(Boolean.getBoolean(BENCHMARK));
+
+        final StringBuilder results = new StringBuilder();
+        for (int app = 0; app < LARGE_APPS; app++) {
+            results.append(app > 0 ? "," : "").append(APP);
+        }
+
+        final String json = ("{'status':0,'message':'OK','total':" + LARGE_APPS + ",'results':[" + results + "]}").replace('\'', '"');
+        final ApiResponse response = this.mAdapters.fromJson(json, ApiResponse.class);
+
+        // Warm up both paths, so the first measured round is not dominated by class loading
+        measureDecode(this.mReflective, json);
+        measureDecode(this.mAdapters, json);
+
+        LOGGER.info(String.format("Decoding %d KiB: reflection %d MiB/s, adapters %d MiB/s", json.length() / 1024,
+                throughput(json.length(), measureDecode(this.mReflective, json)),
+                throughput(json.length(), measureDecode(this.mAdapters, json))));
+
+        LOGGER.info(String.format("Encoding %d applications: reflection %d MiB/s, adapters %d MiB/s", LARGE_APPS,
+                throughput(json.length(), measureEncode(this.mReflective, response)),
+                throughput(json.length(), measureEncode(this.mAdapters, response))));
+    }
+
+    /**
+     * Decodes the JSON with both kinds of adapters and asserts that the results are equal, and
+     * that either kind of adapter encodes an object to the same JSON, with and without
+     * <code>null</code> values.
+     */
+    private <T> void assertRoundTrip(final String json, final Class<T> clazz) {
+
+        final String normalized = json.replace('\'', '"');
+        final T decoded = this.mAdapters.fromJson(normalized, clazz);
+        final T reference = this.mReflective.fromJson(normalized, clazz);
+
+        // Reflection replaces the maps of the model, so only the order of their entries may differ
+        assertEquals(tree(this.mReflective.toJson(reference)), tree(this.mReflective.toJson(decoded)));
+
+        // Encoding must produce the same properties in the same order, regardless of the decoder
+        assertEquals(this.mReflective.toJson(decoded), this.mAdapters.toJson(decoded));
+        assertEquals(this.mReflectiveNulls.toJson(decoded), this.mAdaptersNulls.toJson(decoded));
+        assertEquals(this.mReflective.toJson(reference), this.mAdapters.toJson(reference));
+
+        // Properties unknown to the model are dropped, everything else is preserved
+        final T again = this.mAdapters.fromJson(this.mAdapters.toJson(decoded), clazz);
+        assertEquals(this.mAdapters.toJson(decoded), this.mAdapters.toJson(again));
+    }
+
+    /**
+     * @return The fastest time, in nanoseconds, it took to decode the JSON.
+     */
+    private static long measureDecode(final Gson gson, final String json) {
+        long fastest = Long.MAX_VALUE;
+
+        for (int round = 0; round < ROUNDS; round++) {
+            final long start = System.nanoTime();
+            final ApiResponse response = gson.fromJson(json, ApiResponse.class);
+            fastest = Math.min(fastest, System.nanoTime() - start);
+
+            assertEquals(LARGE_APPS, response.results.size());
+        }
+        return fastest;
+    }
+
+    /**
+     * @return The fastest time, in nanoseconds, it took to encode the response.
+     */
+    private static long measureEncode(final Gson gson, final ApiResponse response) {
+        long fastest = Long.MAX_VALUE;
+
+        for (int round = 0; round < ROUNDS; round++) {
+            final long start = System.nanoTime();
+            gson.toJson(response);
+            fastest = Math.min(fastest, System.nanoTime() - start);
+        }
+        return fastest;
+    }
+
+    private static long throughput(final long bytes, final long nanos) {
+        return (bytes * 1000000000L) / (Math.max(nanos, 1) * 1024 * 1024);
+    }
+
+    private static JsonElement tree(final String json) {
+        return new JsonParser().parse(json);
+    }
+}
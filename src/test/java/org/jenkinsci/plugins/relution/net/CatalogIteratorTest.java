@@ -0,0 +1,135 @@
+package org.jenkinsci.plugins.relution.net;
+
+import static org.junit.Assert.assertEquals;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.jenkinsci.plugins.relution.entities.ApiEndpoint;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+
+/**
+ * Pages through a local stand-in for the store's <code>apps</code> endpoint.
+ */
+public class CatalogIteratorTest {
+
+    private final static int     PAGE_SIZE = 10;
+    private final static Pattern OFFSET    = Pattern.compile("offset=(\\d+)");
+
+    private HttpServer           mServer;
+    private ExecutorService      mExecutor;
+
+    private int                  mApps     = 35;
+    private boolean              mHonourOffset;
+    private final AtomicInteger  mRequests = new AtomicInteger();
+
+    @Before
+    public void setUp() throws IOException {
+        this.mServer = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        this.mExecutor = Executors.newFixedThreadPool(2);
+        this.mServer.setExecutor(this.mExecutor);
+        this.mServer.createContext("/", new HttpHandler() {
+
+            @Override
+            public void handle(final HttpExchange exchange) throws IOException {
+                CatalogIteratorTest.this.handle(exchange);
+            }
+        });
+        this.mServer.start();
+    }
+
+    @After
+    public void tearDown() {
+        this.mServer.stop(0);
+        this.mExecutor.shutdownNow();
+    }
+
+    @Test
+    public void iteratesAllPages() {
+        this.mHonourOffset = true;
+
+        assertEquals(35, this.count());
+        assertEquals(4, this.mRequests.get());
+    }
+
+    /**
+     * A server that ignores the offset and does not report a total returns the first page over
+     * and over, the iteration must stop instead of requesting it forever.
+     */
+    @Test
+    public void stopsIfOffsetIsIgnored() {
+        this.mHonourOffset = false;
+
+        assertEquals(PAGE_SIZE, this.count());
+        assertEquals(2, this.mRequests.get());
+    }
+
+    private int count() {
+        final CatalogIterator apps = new CatalogIterator(this.createFactory(), null, PAGE_SIZE);
+        int count = 0;
+
+        try {
+            while (apps.hasNext()) {
+                apps.next();
+                count++;
+            }
+        } finally {
+            apps.close();
+        }
+        return count;
+    }
+
+    private RequestFactory createFactory() {
+        final String url = String.format("http://localhost:%d/api/v1", this.mServer.getAddress().getPort());
+        final ApiEndpoint endpoint = new ApiEndpoint(url, "organization", "user", "password", "DEVELOPMENT");
+
+        final RequestFactory factory = new RequestFactory();
+        factory.setEndpoint(endpoint);
+        return factory;
+    }
+
+    /**
+     * Responds with a page of applications without a total, starting at the requested offset if
+     * the server honours it, otherwise at the first application.
+     */
+    private void handle(final HttpExchange exchange) throws IOException {
+
+        if (!exchange.getRequestURI().getPath().startsWith("/api/v1/apps")) {
+            respond(exchange, 404, "");
+            return;
+        }
+        this.mRequests.incrementAndGet();
+
+        final Matcher offset = OFFSET.matcher(exchange.getRequestURI().getRawQuery());
+        final int first = (this.mHonourOffset && offset.find()) ? Integer.parseInt(offset.group(1)) : 0;
+        final StringBuilder results = new StringBuilder();
+
+        for (int app = first; app < Math.min(first + PAGE_SIZE, this.mApps); app++) {
+            results.append(results.length() > 0 ? "," : "").append(String.format("{\"uuid\":\"app-%d\"}", app));
+        }
+        respond(exchange, 200, String.format("{\"status\":0,\"results\":[%s]}", results));
+    }
+
+    private static void respond(final HttpExchange exchange, final int status, final String body) throws IOException {
+        final byte[] bytes = body.getBytes("UTF-8");
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length > 0 ? bytes.length : -1);
+
+        if (bytes.length > 0) {
+            exchange.getResponseBody().write(bytes);
+        }
+        exchange.close();
+    }
+}
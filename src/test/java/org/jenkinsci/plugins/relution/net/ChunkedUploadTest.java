@@ -0,0 +1,253 @@
+package org.jenkinsci.plugins.relution.net;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.jenkinsci.plugins.relution.entities.ApiEndpoint;
+import org.jenkinsci.plugins.relution.json.UploadResponse;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+
+/**
+ * Uploads a file in parts to a local stand-in for the store's <code>files/{token}</code> endpoint.
+ */
+public class ChunkedUploadTest {
+
+    private final static int     PART_SIZE     = 1024;
+    private final static Pattern CONTENT_RANGE = Pattern.compile("bytes (\\d+)-(\\d+)/(\\d+)");
+
+    private HttpServer           mServer;
+    private ExecutorService      mExecutor;
+    private File                 mFile;
+    private byte[]               mContent;
+
+    private boolean              mHonourRange  = true;
+    private int                  mFailures;
+    private String               mFailingRange = "bytes 2048-";
+
+    private byte[]               mAssembled;
+    private final AtomicInteger  mRequests     = new AtomicInteger();
+
+    @Before
+    public void setUp() throws IOException {
+        this.mContent = new byte[5 * PART_SIZE + 100];
+        new Random(42).nextBytes(this.mContent);
+
+        this.mFile = File.createTempFile("chunked", ".apk");
+        final OutputStream stream = new FileOutputStream(this.mFile);
+
+        try {
+            stream.write(this.mContent);
+        } finally {
+            stream.close();
+        }
+
+        this.mServer = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        this.mExecutor = Executors.newFixedThreadPool(4);
+        this.mServer.setExecutor(this.mExecutor);
+        this.mServer.createContext("/", new HttpHandler() {
+
+            @Override
+            public void handle(final HttpExchange exchange) throws IOException {
+                ChunkedUploadTest.this.handle(exchange);
+            }
+        });
+        this.mServer.start();
+    }
+
+    @After
+    public void tearDown() {
+        this.mServer.stop(0);
+        this.mExecutor.shutdownNow();
+        this.mFile.delete();
+    }
+
+    @Test
+    public void assemblesParts() throws Exception {
+        final ChunkedUpload upload = new ChunkedUpload(this.createFactory(), this.mFile, PART_SIZE);
+        assertEquals(6, upload.getPartCount());
+
+        final UploadResponse response = upload.upload();
+
+        assertNotNull(response);
+        assertEquals(this.mContent.length, response.results.get(0).size);
+        assertArrayEquals(this.mContent, this.mAssembled);
+        assertEquals(6, upload.getAcknowledgedCount());
+        assertEquals(6, this.mRequests.get());
+    }
+
+    @Test
+    public void retriesFailedPart() throws Exception {
+        this.mFailures = 2;
+
+        final UploadResponse response = new ChunkedUpload(this.createFactory(), this.mFile, PART_SIZE).upload();
+
+        assertNotNull(response);
+        assertArrayEquals(this.mContent, this.mAssembled);
+        assertEquals(8, this.mRequests.get());
+    }
+
+    /**
+     * A transient failure of the first part must not be mistaken for a server that does not
+     * support partial uploads.
+     */
+    @Test
+    public void retriesFailedFirstPart() throws Exception {
+        this.mFailures = 2;
+        this.mFailingRange = "bytes 0-";
+        final RequestFactory factory = this.createFactory();
+
+        final UploadResponse response = new ChunkedUpload(factory, this.mFile, PART_SIZE).upload();
+
+        assertNotNull(response);
+        assertArrayEquals(this.mContent, this.mAssembled);
+        assertTrue(ChunkedUpload.isSupported(factory.getEndpoint()));
+        assertEquals(8, this.mRequests.get());
+    }
+
+    @Test
+    public void detectsIgnoredContentRange() throws Exception {
+        this.mHonourRange = false;
+        final RequestFactory factory = this.createFactory();
+
+        assertNull(new ChunkedUpload(factory, this.mFile, PART_SIZE).upload());
+        assertFalse(ChunkedUpload.isSupported(factory.getEndpoint()));
+        assertEquals(1, this.mRequests.get());
+    }
+
+    @Test
+    public void requiresOptIn() throws Exception {
+        final ApiEndpoint endpoint = this.createFactory().getEndpoint();
+        final File large = new File(this.mFile.getParentFile(), this.mFile.getName()) {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            public long length() {
+                return ChunkedUpload.DEFAULT_PART_SIZE + 1;
+            }
+        };
+
+        assertTrue(ChunkedUpload.isSupported(endpoint));
+        endpoint.setChunkedUpload(false);
+        assertFalse(ChunkedUpload.isEligible(endpoint, large));
+        endpoint.setChunkedUpload(true);
+        assertTrue(ChunkedUpload.isEligible(endpoint, large));
+    }
+
+    private RequestFactory createFactory() {
+        final String url = String.format("http://localhost:%d/api/v1", this.mServer.getAddress().getPort());
+        final ApiEndpoint endpoint = new ApiEndpoint(url, "organization", "user", "password", "DEVELOPMENT");
+        endpoint.setChunkedUpload(true);
+
+        final RequestFactory factory = new RequestFactory();
+        factory.setEndpoint(endpoint);
+        return factory;
+    }
+
+    /**
+     * Stores the part in the assembled file if the server honours <code>Content-Range</code>,
+     * otherwise the part is stored as a file of its own.
+     */
+    private void handle(final HttpExchange exchange) throws IOException {
+
+        final byte[] body = read(exchange.getRequestBody());
+
+        if (!exchange.getRequestURI().getPath().startsWith("/api/v1/files/")) {
+            respond(exchange, 404, "");
+            return;
+        }
+        this.mRequests.incrementAndGet();
+
+        synchronized (this) {
+            if (this.mFailures > 0 && exchange.getRequestHeaders().getFirst("Content-Range").startsWith(this.mFailingRange)) {
+                this.mFailures--;
+
+                if (this.mFailures % 2 == 0) {
+                    respond(exchange, 500, "{\"status\":-1,\"message\":\"Internal error\",\"results\":[]}");
+                } else {
+                    respond(exchange, 502, "<html><body>Bad Gateway</body></html>");
+                }
+                return;
+            }
+        }
+
+        final byte[] part = extractPart(exchange.getRequestHeaders().getFirst("Content-Type"), body);
+        final Matcher range = CONTENT_RANGE.matcher(exchange.getRequestHeaders().getFirst("Content-Range"));
+        assertTrue(range.matches());
+
+        long size = part.length;
+
+        if (this.mHonourRange) {
+            final int offset = Integer.parseInt(range.group(1));
+            final int total = Integer.parseInt(range.group(3));
+
+            synchronized (this) {
+                if (this.mAssembled == null) {
+                    this.mAssembled = new byte[total];
+                }
+                System.arraycopy(part, 0, this.mAssembled, offset, part.length);
+            }
+            size = Integer.parseInt(range.group(2)) + 1 == total ? total : 0;
+        }
+
+        respond(exchange, 200, String.format("{\"status\":0,\"total\":1,\"results\":[{\"uuid\":\"file\",\"size\":%d}]}", size));
+    }
+
+    private static byte[] extractPart(final String contentType, final byte[] body) throws IOException {
+
+        final String boundary = contentType.substring(contentType.indexOf("boundary=") + 9);
+        final String text = new String(body, "ISO-8859-1");
+
+        final int start = text.indexOf("\r\n\r\n") + 4;
+        final int end = text.indexOf("\r\n--" + boundary, start);
+
+        return text.substring(start, end).getBytes("ISO-8859-1");
+    }
+
+    private static byte[] read(final InputStream stream) throws IOException {
+        final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        final byte[] bytes = new byte[8192];
+        int count;
+
+        while ((count = stream.read(bytes)) != -1) {
+            buffer.write(bytes, 0, count);
+        }
+        return buffer.toByteArray();
+    }
+
+    private static void respond(final HttpExchange exchange, final int status, final String body) throws IOException {
+        final byte[] bytes = body.getBytes("UTF-8");
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length > 0 ? bytes.length : -1);
+
+        if (bytes.length > 0) {
+            exchange.getResponseBody().write(bytes);
+        }
+        exchange.close();
+    }
+}
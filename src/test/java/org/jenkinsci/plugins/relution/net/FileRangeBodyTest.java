@@ -0,0 +1,159 @@
+package org.jenkinsci.plugins.relution.net;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
+
+import org.apache.http.entity.mime.content.ContentBody;
+import org.apache.http.entity.mime.content.FileBody;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.logging.Logger;
+
+
+/**
+ * Writes files and ranges of files, and compares the throughput with the {@link FileBody} it
+ * replaces. The comparison only runs if the <code>relution.benchmark</code> system property is
+ * set to <code>true</code>.
+ */
+public class FileRangeBodyTest {
+
+    private final static String BENCHMARK  = "relution.benchmark";
+    private final static Logger LOGGER     = Logger.getLogger(FileRangeBodyTest.class.getName());
+
+    private final static int    LARGE_SIZE = 32 * 1024 * 1024;
+    private final static int    ROUNDS     = 5;
+
+    private File                mFile;
+    private byte[]              mContent;
+
+    @Before
+    public void setUp() throws IOException {
+        this.mContent = new byte[3 * 64 * 1024 + 123];
+        new Random(42).nextBytes(this.mContent);
+        this.mFile = this.createFile(this.mContent);
+    }
+
+    @After
+    public void tearDown() {
+        this.mFile.delete();
+    }
+
+    @Test
+    public void writesWholeFile() throws IOException {
+        final FileRangeBody body = new FileRangeBody(this.mFile);
+
+        assertEquals(this.mContent.length, body.getContentLength());
+        assertArrayEquals(this.mContent, write(body));
+    }
+
+    @Test
+    public void writesRange() throws IOException {
+        final int offset = 64 * 1024 - 7;
+        final int length = 2 * 64 * 1024 + 11;
+        final FileRangeBody body = new FileRangeBody(this.mFile, offset, length);
+
+        assertEquals(length, body.getContentLength());
+        assertArrayEquals(Arrays.copyOfRange(this.mContent, offset, offset + length), write(body));
+    }
+
+    @Test
+    public void failsOnTruncatedFile() throws IOException {
+        final FileRangeBody body = new FileRangeBody(this.mFile, this.mContent.length - 10, 20);
+
+        try {
+            write(body);
+            fail("Range beyond the end of the file was written");
+        } catch (final IOException e) {
+            // Expected
+        }
+    }
+
+    /**
+     * Reports the throughput of both bodies when written to a stream, the way the connection
+     * consumes them. There is no assertion on the timings, they depend on the machine. Run with
+     * <code>mvn test -Drelution.benchmark=true</code>.
+     */
+    @Test
+    public void comparesThroughputWithFileBody() throws IOException {
+        assumeTrue(Boolean.getBoolean(BENCHMARK));
+
+        final byte[] content = new byte[LARGE_SIZE];
+        new Random(7).nextBytes(content);
+        final File file = this.createFile(content);
+
+        try {
+            final long fileBody = measure(new FileBody(file));
+            final long rangeBody = measure(new FileRangeBody(file));
+
+            LOGGER.info(String.format("FileBody: %d MiB/s, FileRangeBody: %d MiB/s", throughput(fileBody), throughput(rangeBody)));
+
+        } finally {
+            file.delete();
+        }
+    }
+
+    private File createFile(final byte[] content) throws IOException {
+        final File file = File.createTempFile("range", ".bin");
+        final OutputStream stream = new FileOutputStream(file);
+
+        try {
+            stream.write(content);
+        } finally {
+            stream.close();
+        }
+        return file;
+    }
+
+    private static byte[] write(final ContentBody body) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        body.writeTo(out);
+        return out.toByteArray();
+    }
+
+    /**
+     * @return The fastest time, in nanoseconds, it took to write the body.
+     */
+    private static long measure(final ContentBody body) throws IOException {
+        long fastest = Long.MAX_VALUE;
+
+        for (int round = 0; round < ROUNDS; round++) {
+            final CountingOutputStream out = new CountingOutputStream();
+            final long start = System.nanoTime();
+            body.writeTo(out);
+            fastest = Math.min(fastest, System.nanoTime() - start);
+
+            assertEquals(LARGE_SIZE, out.mCount);
+        }
+        return fastest;
+    }
+
+    private static long throughput(final long nanos) {
+        return (LARGE_SIZE * 1000000000L) / (Math.max(nanos, 1) * 1024 * 1024);
+    }
+
+    private static class CountingOutputStream extends OutputStream {
+
+        private long mCount;
+
+        @Override
+        public void write(final int b) {
+            this.mCount++;
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) {
+            this.mCount += len;
+        }
+    }
+}